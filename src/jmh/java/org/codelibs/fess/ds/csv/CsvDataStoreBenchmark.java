@@ -0,0 +1,243 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.ds.callback.IndexUpdateCallback;
+import org.codelibs.fess.entity.DataStoreParams;
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+import org.codelibs.fess.opensearch.config.exentity.DataConfig;
+import org.codelibs.fess.script.ScriptEngine;
+import org.codelibs.fess.script.ScriptEngineFactory;
+import org.codelibs.fess.script.groovy.GroovyEngine;
+import org.codelibs.fess.util.ComponentUtil;
+import org.lastaflute.di.core.factory.SingletonLaContainerFactory;
+import org.lastaflute.di.core.meta.impl.LaContainerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * JMH benchmark for the per-row work of {@link CsvDataStore#processCsv}.
+ * Each invocation parses a generated CSV file and reports its rows to a stub callback,
+ * so the score is rows/sec and {@code -prof gc} reports the allocation per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dfess.log.level=info")
+public class CsvDataStoreBenchmark {
+
+    /** Number of data rows in the generated file. */
+    private static final int ROWS = 10000;
+
+    /** Script type of the stub engine that only resolves {@code cellN.toUpperCase()}. */
+    private static final String STUB_SCRIPT_TYPE = "benchmark";
+
+    /** Number of columns per row. */
+    @Param({ "10", "50", "100" })
+    public int columns;
+
+    /** Number of characters per cell. */
+    @Param({ "8", "64" })
+    public int cellWidth;
+
+    /** Whether the file has a header line. */
+    @Param({ "true", "false" })
+    public boolean header;
+
+    /** Number of script mappings evaluated per row. */
+    @Param({ "0", "5", "30" })
+    public int scripts;
+
+    /** Script engine used for the mappings: the stub engine or Groovy. */
+    @Param({ STUB_SCRIPT_TYPE, "groovy" })
+    public String scriptType;
+
+    /** Form of the mappings: a method call like {@code cellN.toUpperCase()}, or a concatenation like {@code cellN + ' ' + cellM}. */
+    @Param({ "method", "concat" })
+    public String scriptForm;
+
+    /** Parser engine that reads the file. */
+    @Param({ "orangesignal", "mmap", "vector" })
+    public String parserEngine;
+
+    private File csvFile;
+
+    private CsvDataStore dataStore;
+
+    private DataConfig dataConfig;
+
+    private DataStoreParams paramMap;
+
+    private Map<String, String> scriptMap;
+
+    private Map<String, Object> defaultDataMap;
+
+    private CsvConfig csvConfig;
+
+    private CountingCallback callback;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (!SingletonLaContainerFactory.hasContainer()) {
+            // components are resolved from ComponentUtil.register() through an empty container
+            SingletonLaContainerFactory.setContainer(new LaContainerImpl());
+        }
+        final CrawlerStatsHelper crawlerStatsHelper = new CrawlerStatsHelper() {
+            @Override
+            protected long getCurrentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+        crawlerStatsHelper.init();
+        ComponentUtil.register(crawlerStatsHelper, "crawlerStatsHelper");
+        final ScriptEngineFactory scriptEngineFactory = new ScriptEngineFactory();
+        scriptEngineFactory.add(STUB_SCRIPT_TYPE, new StubScriptEngine());
+        scriptEngineFactory.add("groovy", new GroovyEngine());
+        ComponentUtil.register(scriptEngineFactory, "scriptEngineFactory");
+
+        csvFile = File.createTempFile("csv_benchmark_", ".csv");
+        writeCsvFile(csvFile);
+
+        dataStore = new CsvDataStore();
+        dataConfig = new DataConfig();
+        paramMap = new DataStoreParams();
+        paramMap.put("files", csvFile.getAbsolutePath());
+        paramMap.put("has_header_line", Boolean.toString(header));
+        paramMap.put("script_type", scriptType);
+        paramMap.put("parser_engine", parserEngine);
+        scriptMap = new LinkedHashMap<>();
+        for (int i = 0; i < scripts; i++) {
+            final String key = "cell" + (i % columns + 1);
+            if ("concat".equals(scriptForm)) {
+                scriptMap.put("field" + i, key + " + ' ' + cell" + ((i + 1) % columns + 1));
+            } else {
+                scriptMap.put("field" + i, key + ".toUpperCase()");
+            }
+        }
+        defaultDataMap = new HashMap<>();
+        csvConfig = dataStore.buildCsvConfig(paramMap);
+        callback = new CountingCallback();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile.toPath());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long processCsv() {
+        dataStore.processCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, 0L,
+                dataStore.getCsvFileEncoding(paramMap), header);
+        return callback.getDocumentSize();
+    }
+
+    private void writeCsvFile(final File file) throws IOException {
+        final Random random = new Random(columns * 31L + cellWidth);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            if (header) {
+                for (int i = 0; i < columns; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write("col" + i);
+                }
+                writer.write('\n');
+            }
+            final char[] cell = new char[cellWidth];
+            for (int row = 0; row < ROWS; row++) {
+                for (int i = 0; i < columns; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    for (int j = 0; j < cellWidth; j++) {
+                        cell[j] = (char) ('a' + random.nextInt(26));
+                    }
+                    writer.write(cell);
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Script engine that evaluates {@code <key>.toUpperCase()} by a map lookup,
+     * so the benchmark measures the data store rather than the script language.
+     */
+    static class StubScriptEngine implements ScriptEngine {
+        @Override
+        public Object evaluate(final String template, final Map<String, Object> paramMap) {
+            final int pos = template.indexOf('.');
+            final Object value = paramMap.get(pos == -1 ? template : template.substring(0, pos));
+            return value != null ? value.toString().toUpperCase(Locale.ROOT) : null;
+        }
+    }
+
+    /**
+     * Index update callback that only counts the stored documents.
+     */
+    static class CountingCallback implements IndexUpdateCallback {
+        private long documentSize;
+
+        @Override
+        public void store(final DataStoreParams paramMap, final Map<String, Object> dataMap) {
+            documentSize++;
+        }
+
+        @Override
+        public long getDocumentSize() {
+            return documentSize;
+        }
+
+        @Override
+        public long getExecuteTime() {
+            return 0;
+        }
+
+        @Override
+        public void commit() {
+            // nothing
+        }
+    }
+}
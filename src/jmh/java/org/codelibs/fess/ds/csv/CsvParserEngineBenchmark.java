@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * JMH benchmark for the parser engines alone.
+ * Each invocation reads every value of a generated CSV file, so the score is rows/sec without the indexing work of
+ * {@link CsvDataStoreBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CsvParserEngineBenchmark {
+
+    /** Number of rows in the generated file. */
+    private static final int ROWS = 10000;
+
+    /** Number of columns per row. */
+    @Param({ "10", "50" })
+    public int columns;
+
+    /** Number of characters per cell. */
+    @Param({ "8", "64" })
+    public int cellWidth;
+
+    /** Whether the cells are quoted. */
+    @Param({ "false", "true" })
+    public boolean quoted;
+
+    /** Parser engine that reads the file. */
+    @Param({ "orangesignal", "mmap", "vector" })
+    public String parserEngine;
+
+    private File csvFile;
+
+    private CsvParserEngine engine;
+
+    private CsvConfig csvConfig;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        csvFile = File.createTempFile("csv_benchmark_", ".csv");
+        writeCsvFile(csvFile);
+        engine = new CsvDataStore().parserEngineMap.get(parserEngine);
+        csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(!quoted);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csvFile.toPath());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readValues(final Blackhole blackhole) throws IOException {
+        try (CsvRecordReader reader = engine.open(csvFile, "UTF-8", csvConfig, 0L, Long.MAX_VALUE)) {
+            List<String> list;
+            while ((list = reader.readValues()) != null) {
+                for (int i = 0; i < list.size(); i++) {
+                    blackhole.consume(list.get(i));
+                }
+            }
+        }
+    }
+
+    private void writeCsvFile(final File file) throws IOException {
+        final Random random = new Random(columns * 31L + cellWidth);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            final char[] cell = new char[cellWidth];
+            for (int row = 0; row < ROWS; row++) {
+                for (int i = 0; i < columns; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    for (int j = 0; j < cellWidth; j++) {
+                        cell[j] = (char) ('a' + random.nextInt(26));
+                    }
+                    if (quoted) {
+                        writer.write('"');
+                        writer.write(cell);
+                        writer.write('"');
+                    } else {
+                        writer.write(cell);
+                    }
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.lang.reflect.Constructor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Finds the next structural byte, such as a separator, a quote or a line break, in a byte array.
+ * <p>
+ * {@link #vector(int...)} compares many bytes at a time with the Vector API of jdk.incubator.vector.
+ * The vector scanner is only built by the vector profile, and the module is not resolved unless the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, so the scanner is loaded through reflection and falls back to {@link #scalar(int...)}
+ * when the class or the module is absent.
+ * </p>
+ */
+public abstract class ByteScanner {
+
+    private static final Logger logger = LogManager.getLogger(ByteScanner.class);
+
+    private static final String VECTOR_CLASS_NAME = "org.codelibs.fess.ds.csv.VectorByteScanner";
+
+    private static final Constructor<? extends ByteScanner> VECTOR_CONSTRUCTOR = loadVector();
+
+    /**
+     * Returns the index of the first target byte in [from, to).
+     *
+     * @param bytes the bytes to scan
+     * @param from the first index to scan
+     * @param to the end index (exclusive)
+     * @return the index of the first target byte, or to if there is none
+     */
+    public abstract int indexOf(byte[] bytes, int from, int to);
+
+    /**
+     * Creates a scanner that compares one byte at a time.
+     *
+     * @param targets the bytes to find, each less than 0x80
+     * @return the scanner
+     */
+    public static ByteScanner scalar(final int... targets) {
+        return new ScalarByteScanner(targets);
+    }
+
+    /**
+     * Creates a scanner that uses the Vector API, or a scalar scanner if the Vector API is not available.
+     *
+     * @param targets the bytes to find (up to 4), each less than 0x80
+     * @return the scanner
+     */
+    public static ByteScanner vector(final int... targets) {
+        if (VECTOR_CONSTRUCTOR != null && targets.length <= 4) {
+            try {
+                return VECTOR_CONSTRUCTOR.newInstance((Object) targets);
+            } catch (final ReflectiveOperationException e) {
+                logger.debug("Failed to create a vector scanner.", e);
+            }
+        }
+        return scalar(targets);
+    }
+
+    /**
+     * @return true if the Vector API is available
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR_CONSTRUCTOR != null;
+    }
+
+    private static Constructor<? extends ByteScanner> loadVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            final Constructor<? extends ByteScanner> constructor =
+                    Class.forName(VECTOR_CLASS_NAME).asSubclass(ByteScanner.class).getDeclaredConstructor(int[].class);
+            // links the Vector API, which fails on a JVM without it
+            constructor.newInstance((Object) new int[] { '\n' }).indexOf(new byte[1], 0, 1);
+            return constructor;
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            logger.debug("Vector API is not available.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Scanner that looks up each byte in a table.
+     */
+    static class ScalarByteScanner extends ByteScanner {
+        private final boolean[] table = new boolean[256];
+
+        ScalarByteScanner(final int[] targets) {
+            for (final int target : targets) {
+                table[target & 0xff] = true;
+            }
+        }
+
+        @Override
+        public int indexOf(final byte[] bytes, final int from, final int to) {
+            final boolean[] t = table;
+            for (int i = from; i < to; i++) {
+                if (t[bytes[i] & 0xff]) {
+                    return i;
+                }
+            }
+            return to;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groovy script mapping that copies values of the record without running the script.
+ * <p>
+ * The script is a key of the record, such as {@code name} or {@code cell2}, or a concatenation of keys and string literals,
+ * such as {@code name + " " + cell2}. A record without one of the keys, or with a value of a concatenated key that is not a string,
+ * is evaluated by the compiled script, so the result is always that of the script.
+ * </p>
+ */
+public class ColumnReferenceScript implements CsvScript {
+
+    private static final Set<String> KEYWORDS = Set.of("as", "assert", "break", "case", "catch", "class", "const", "continue", "def",
+            "default", "do", "else", "enum", "extends", "false", "finally", "for", "goto", "if", "implements", "import", "in",
+            "instanceof", "interface", "new", "null", "package", "return", "super", "switch", "this", "throw", "throws", "trait", "true",
+            "try", "var", "void", "while");
+
+    // keys of the record, or null for string literals
+    private final String[] keys;
+
+    private final String[] literals;
+
+    private final CsvScript script;
+
+    /**
+     * Creates a script of keys and string literals.
+     *
+     * @param keys the keys of the record, with null for a string literal
+     * @param literals the string literals, with null for a key
+     * @param script the compiled script for records that cannot be copied
+     */
+    protected ColumnReferenceScript(final String[] keys, final String[] literals, final CsvScript script) {
+        this.keys = keys;
+        this.literals = literals;
+        this.script = script;
+    }
+
+    /**
+     * Parses a Groovy script into keys and string literals.
+     * Keys are identifiers that start with a lowercase letter or an underscore, so that class names are not taken as keys.
+     * String literals are quoted with ' or " and have no backslash, and no $ in double quotes.
+     *
+     * @param template the script text
+     * @param script the compiled script for records that cannot be copied
+     * @return the script, or null if the script is not a key or a concatenation of keys and string literals
+     */
+    public static ColumnReferenceScript parse(final String template, final CsvScript script) {
+        final List<String> keyList = new ArrayList<>();
+        final List<String> literalList = new ArrayList<>();
+        final int length = template.length();
+        int pos = skipWhitespaces(template, 0);
+        while (true) {
+            if (pos >= length) {
+                return null;
+            }
+            final char c = template.charAt(pos);
+            if (c == '\'' || c == '"') {
+                final int end = template.indexOf(c, pos + 1);
+                if (end == -1) {
+                    return null;
+                }
+                final String literal = template.substring(pos + 1, end);
+                if (literal.indexOf('\\') != -1 || c == '"' && literal.indexOf('$') != -1) {
+                    return null;
+                }
+                keyList.add(null);
+                literalList.add(literal);
+                pos = end + 1;
+            } else if (c >= 'a' && c <= 'z' || c == '_') {
+                int end = pos + 1;
+                while (end < length && isIdentifierPart(template.charAt(end))) {
+                    end++;
+                }
+                final String key = template.substring(pos, end);
+                if (KEYWORDS.contains(key)) {
+                    return null;
+                }
+                keyList.add(key);
+                literalList.add(null);
+                pos = end;
+            } else {
+                return null;
+            }
+            pos = skipWhitespaces(template, pos);
+            if (pos >= length) {
+                break;
+            }
+            if (template.charAt(pos) != '+') {
+                return null;
+            }
+            pos = skipWhitespaces(template, pos + 1);
+        }
+        if (keyList.size() == 1 && keyList.get(0) == null) {
+            // a single literal is left to the script
+            return null;
+        }
+        return new ColumnReferenceScript(keyList.toArray(new String[keyList.size()]), literalList.toArray(new String[literalList.size()]),
+                script);
+    }
+
+    private static int skipWhitespaces(final String template, final int pos) {
+        int i = pos;
+        while (i < template.length() && Character.isWhitespace(template.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierPart(final char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    @Override
+    public Object evaluate(final Map<String, Object> paramMap) {
+        if (keys.length == 1) {
+            final Object value = paramMap.get(keys[0]);
+            if (value != null || paramMap.containsKey(keys[0])) {
+                return value;
+            }
+            return script.evaluate(paramMap);
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                buf.append(literals[i]);
+            } else if (paramMap.get(keys[i]) instanceof final String value) {
+                buf.append(value);
+            } else {
+                return script.evaluate(paramMap);
+            }
+        }
+        return buf.toString();
+    }
+}
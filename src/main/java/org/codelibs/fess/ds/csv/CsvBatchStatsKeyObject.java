@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.codelibs.fess.helper.CrawlerStatsHelper.StatsKeyObject;
+
+/**
+ * Crawler stats key of a batch of documents of a CSV file, whose id is file#first-last with the line numbers of the first and last rows.
+ * The id is built when the stats helper asks for it, so batches whose stats are not recorded do not pay for it.
+ */
+public class CsvBatchStatsKeyObject extends StatsKeyObject {
+
+    private final String path;
+
+    private final long firstLineNumber;
+
+    private final long lastLineNumber;
+
+    private String id;
+
+    /**
+     * Creates a key.
+     *
+     * @param path the path of the CSV file
+     * @param firstLineNumber the line number of the first row of the batch
+     * @param lastLineNumber the line number of the last row of the batch
+     */
+    public CsvBatchStatsKeyObject(final String path, final long firstLineNumber, final long lastLineNumber) {
+        super(null);
+        this.path = path;
+        this.firstLineNumber = firstLineNumber;
+        this.lastLineNumber = lastLineNumber;
+    }
+
+    @Override
+    public String getId() {
+        // a racy build creates equal strings
+        String value = id;
+        if (value == null) {
+            value = path + "#" + firstLineNumber + "-" + lastLineNumber;
+            id = value;
+        }
+        return value;
+    }
+
+    @Override
+    protected String getUrl() {
+        // the url defaults to the id, which is not passed to the super class
+        final String url = super.getUrl();
+        return url != null ? url : getId();
+    }
+
+    /**
+     * @return the path of the CSV file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the line number of the first row of the batch
+     */
+    public long getFirstLineNumber() {
+        return firstLineNumber;
+    }
+
+    /**
+     * @return the line number of the last row of the batch
+     */
+    public long getLastLineNumber() {
+        return lastLineNumber;
+    }
+}
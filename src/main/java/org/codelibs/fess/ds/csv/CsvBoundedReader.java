@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that bounds the characters read for a record, for CSV readers that cannot check the size of a record while they tokenize it.
+ * <p>
+ * {@link #startRecord()} starts the count of a record. When a record has read maxChars characters, this reader returns the end
+ * of the stream until {@link #skipLine()} discards the characters to the next physical line, so the memory of a record
+ * stays bounded whatever the input contains. The CSV reader must not read ahead of its records,
+ * so that a new CSV reader can continue after the skipped line.
+ * </p>
+ */
+public class CsvBoundedReader extends Reader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+
+    private final long maxChars;
+
+    // characters read ahead from in, which are not counted until they are read from this reader
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int bufferPos;
+
+    private int bufferLimit;
+
+    private long count;
+
+    private long lineCount;
+
+    private boolean exceeded;
+
+    // the last character was CR, so LF that follows belongs to its line break
+    private boolean cr;
+
+    private boolean lineStart = true;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in the reader to read
+     * @param maxChars the maximum number of characters of a record
+     */
+    public CsvBoundedReader(final Reader in, final long maxChars) {
+        this.in = in;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Starts the count of the characters of a record.
+     */
+    public void startRecord() {
+        count = 0;
+    }
+
+    /**
+     * @return true if the current record has read maxChars characters
+     */
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    /**
+     * @return the number of line breaks read, where CRLF is one line break
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Discards the characters to the end of the current physical line, unless the last character read ended a line,
+     * and starts the count of the next record.
+     *
+     * @throws IOException if the characters cannot be read
+     */
+    public void skipLine() throws IOException {
+        exceeded = false;
+        count = 0;
+        while (!lineStart) {
+            if (bufferPos >= bufferLimit && !fill()) {
+                return;
+            }
+            countChar(buffer[bufferPos++]);
+        }
+        if (cr) {
+            cr = false;
+            if ((bufferPos < bufferLimit || fill()) && buffer[bufferPos] == '\n') {
+                bufferPos++;
+            }
+        }
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (exceeded || count >= maxChars) {
+            exceeded = true;
+            return -1;
+        }
+        if (bufferPos >= bufferLimit && !fill()) {
+            return -1;
+        }
+        final int n = (int) Math.min(Math.min(len, bufferLimit - bufferPos), maxChars - count);
+        for (int i = 0; i < n; i++) {
+            final char c = buffer[bufferPos++];
+            countChar(c);
+            cbuf[off + i] = c;
+        }
+        count += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        final int n = in.read(buffer, 0, BUFFER_SIZE);
+        if (n <= 0) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferLimit = n;
+        return true;
+    }
+
+    private void countChar(final char c) {
+        if (c == '\r') {
+            lineCount++;
+            cr = true;
+            lineStart = true;
+        } else if (c == '\n') {
+            if (!cr) {
+                lineCount++;
+            }
+            cr = false;
+            lineStart = true;
+        } else {
+            cr = false;
+            lineStart = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Progress of a CSV file, saved to a state file so that an interrupted crawl resumes where it stopped.
+ * <p>
+ * The progress is kept per byte range that a reader processes: the whole file, or the chunks of a split file.
+ * A range records the file position and the line number after its last indexed record,
+ * and the state file is only saved after the indexed records are committed.
+ * The state file is ignored when the size or the modification time of the CSV file changes.
+ * </p>
+ */
+public class CsvCheckpoint {
+
+    private static final Logger logger = LogManager.getLogger(CsvCheckpoint.class);
+
+    /**
+     * Progress of a byte range.
+     *
+     * @param start the first byte of the range
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE for the rest of the file
+     * @param position the file position after the last indexed record, or -1 if the reader does not know it
+     * @param lineNumber the line number of the last indexed record
+     * @param completed whether all records of the range are indexed
+     */
+    public record Range(long start, long end, long position, long lineNumber, boolean completed) {
+    }
+
+    private final File stateFile;
+
+    private final File csvFile;
+
+    private final long fileSize;
+
+    private final long lastModified;
+
+    private final Map<Long, Range> rangeMap = new LinkedHashMap<>();
+
+    private List<String> headerList;
+
+    private boolean completed;
+
+    /**
+     * Creates an empty checkpoint of a CSV file.
+     *
+     * @param stateFile the file that the checkpoint is saved to
+     * @param csvFile the CSV file
+     */
+    public CsvCheckpoint(final File stateFile, final File csvFile) {
+        this.stateFile = stateFile;
+        this.csvFile = csvFile;
+        fileSize = csvFile.length();
+        lastModified = csvFile.lastModified();
+    }
+
+    /**
+     * Loads the checkpoint of a CSV file.
+     *
+     * @param stateFile the file that the checkpoint is saved to
+     * @param csvFile the CSV file
+     * @return the saved checkpoint, or an empty checkpoint if there is none or the CSV file has changed
+     */
+    public static CsvCheckpoint load(final File stateFile, final File csvFile) {
+        final CsvCheckpoint checkpoint = new CsvCheckpoint(stateFile, csvFile);
+        if (!stateFile.isFile()) {
+            return checkpoint;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+            properties.load(in);
+            if (!csvFile.getAbsolutePath().equals(properties.getProperty("file"))
+                    || checkpoint.fileSize != Long.parseLong(properties.getProperty("size", "-1"))
+                    || checkpoint.lastModified != Long.parseLong(properties.getProperty("last_modified", "-1"))) {
+                logger.info("Checkpoint {} is ignored: {} has changed.", stateFile.getAbsolutePath(), csvFile.getAbsolutePath());
+                return checkpoint;
+            }
+            checkpoint.completed = Boolean.parseBoolean(properties.getProperty("completed"));
+            final String headerSize = properties.getProperty("header.size");
+            if (headerSize != null) {
+                final List<String> list = new ArrayList<>();
+                for (int i = 0; i < Integer.parseInt(headerSize); i++) {
+                    list.add(properties.getProperty("header." + i));
+                }
+                checkpoint.headerList = list;
+            }
+            for (int i = 0; properties.containsKey("range." + i + ".start"); i++) {
+                final String prefix = "range." + i + ".";
+                final Range range = new Range(Long.parseLong(properties.getProperty(prefix + "start")),
+                        Long.parseLong(properties.getProperty(prefix + "end")), Long.parseLong(properties.getProperty(prefix + "position")),
+                        Long.parseLong(properties.getProperty(prefix + "line")),
+                        Boolean.parseBoolean(properties.getProperty(prefix + "completed")));
+                checkpoint.rangeMap.put(range.start(), range);
+            }
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Failed to load checkpoint {}.", stateFile.getAbsolutePath(), e);
+            return new CsvCheckpoint(stateFile, csvFile);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Returns the progress of a byte range.
+     *
+     * @param start the first byte of the range
+     * @param end the end of the range (exclusive)
+     * @return the progress, or null if the range has no progress
+     */
+    public synchronized Range getRange(final long start, final long end) {
+        final Range range = rangeMap.get(start);
+        return range != null && range.end() == end ? range : null;
+    }
+
+    /**
+     * Records the progress of a byte range.
+     *
+     * @param range the progress
+     */
+    public synchronized void setRange(final Range range) {
+        rangeMap.put(range.start(), range);
+    }
+
+    /**
+     * @return the header values, or null if they are not recorded
+     */
+    public synchronized List<String> getHeaderList() {
+        return headerList;
+    }
+
+    /**
+     * @param headerList the header values
+     */
+    public synchronized void setHeaderList(final List<String> headerList) {
+        this.headerList = headerList != null ? new ArrayList<>(headerList) : null;
+    }
+
+    /**
+     * @return true if all records of the file are indexed
+     */
+    public synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Marks all records of the file as indexed.
+     */
+    public synchronized void complete() {
+        completed = true;
+    }
+
+    /**
+     * Saves the checkpoint.
+     * The progress is taken before the records are committed, so the saved progress never includes records that are not committed.
+     *
+     * @param committer commits the records indexed so far
+     * @throws IOException if the state file cannot be written
+     */
+    public synchronized void save(final Runnable committer) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("file", csvFile.getAbsolutePath());
+        properties.setProperty("size", Long.toString(fileSize));
+        properties.setProperty("last_modified", Long.toString(lastModified));
+        properties.setProperty("completed", Boolean.toString(completed));
+        if (headerList != null) {
+            properties.setProperty("header.size", Integer.toString(headerList.size()));
+            for (int i = 0; i < headerList.size(); i++) {
+                if (headerList.get(i) != null) {
+                    properties.setProperty("header." + i, headerList.get(i));
+                }
+            }
+        }
+        int i = 0;
+        for (final Range range : rangeMap.values()) {
+            final String prefix = "range." + i++ + ".";
+            properties.setProperty(prefix + "start", Long.toString(range.start()));
+            properties.setProperty(prefix + "end", Long.toString(range.end()));
+            properties.setProperty(prefix + "position", Long.toString(range.position()));
+            properties.setProperty(prefix + "line", Long.toString(range.lineNumber()));
+            properties.setProperty(prefix + "completed", Boolean.toString(range.completed()));
+        }
+
+        committer.run();
+
+        final File parentFile = stateFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.isDirectory()) {
+            Files.createDirectories(parentFile.toPath());
+        }
+        final File tempFile = new File(parentFile, stateFile.getName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the state file.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(stateFile.toPath());
+        } catch (final IOException e) {
+            logger.warn("Failed to delete checkpoint {}.", stateFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return the file that the checkpoint is saved to
+     */
+    public File getStateFile() {
+        return stateFile;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.core.lang.StringUtil;
+
+/**
+ * Keys of the columns of a CSV file, computed once per file.
+ * <p>
+ * A column has a cellN key and, if the header value of the column is not blank, a header key.
+ * A key of several columns, such as a duplicated header value or a header value like "cell2", resolves to the last column
+ * that the record has. Keys of columns beyond the layout are computed on demand.
+ * </p>
+ */
+public class CsvColumnLayout {
+
+    /** Minimum number of columns whose cellN keys are computed in advance. */
+    protected static final int MIN_COLUMNS = 256;
+
+    private static final int MAX_CELL_DIGITS = 9;
+
+    private final String[] headerKeys;
+
+    private final String[] cellKeys;
+
+    // key -> ascending column indexes
+    private final Map<String, int[]> columnMap;
+
+    /**
+     * Creates the layout of a file.
+     *
+     * @param headerList the header values, or null if the file has no header line
+     */
+    public CsvColumnLayout(final List<String> headerList) {
+        final int headerSize = headerList != null ? headerList.size() : 0;
+        headerKeys = new String[headerSize];
+        cellKeys = new String[Math.max(headerSize, MIN_COLUMNS)];
+        columnMap = new HashMap<>(cellKeys.length * 2 + headerSize * 2);
+        for (int i = 0; i < cellKeys.length; i++) {
+            if (i < headerSize) {
+                final String key = headerList.get(i);
+                if (StringUtil.isNotBlank(key)) {
+                    headerKeys[i] = key;
+                    addColumn(key, i);
+                }
+            }
+            cellKeys[i] = CsvDataStore.CELL_PREFIX + Integer.toString(i + 1);
+            addColumn(cellKeys[i], i);
+        }
+    }
+
+    private void addColumn(final String key, final int index) {
+        final int[] indexes = columnMap.get(key);
+        if (indexes == null) {
+            columnMap.put(key, new int[] { index });
+        } else if (indexes[indexes.length - 1] != index) {
+            final int[] newIndexes = Arrays.copyOf(indexes, indexes.length + 1);
+            newIndexes[indexes.length] = index;
+            columnMap.put(key, newIndexes);
+        }
+    }
+
+    /**
+     * Returns the header key of a column.
+     *
+     * @param index the index of the column
+     * @return the header key, or null if the header value is blank or missing
+     */
+    public String getHeaderKey(final int index) {
+        return index < headerKeys.length ? headerKeys[index] : null;
+    }
+
+    /**
+     * Returns the cellN key of a column.
+     *
+     * @param index the index of the column
+     * @return the cellN key
+     */
+    public String getCellKey(final int index) {
+        return index < cellKeys.length ? cellKeys[index] : CsvDataStore.CELL_PREFIX + Integer.toString(index + 1);
+    }
+
+    /**
+     * Finds the column of a key in a record.
+     *
+     * @param key the key
+     * @param size the number of values in the record
+     * @return the index of the last column of the key in the record, or -1 if the key is not a column of the record
+     */
+    public int getColumnIndex(final Object key, final int size) {
+        final int[] indexes = columnMap.get(key);
+        if (indexes != null) {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                if (indexes[i] < size) {
+                    return indexes[i];
+                }
+            }
+            return -1;
+        }
+        if (size > cellKeys.length && key instanceof final String name) {
+            final int index = getCellIndex(name);
+            if (index >= cellKeys.length && index < size) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static int getCellIndex(final String name) {
+        final int length = name.length();
+        final int prefixLength = CsvDataStore.CELL_PREFIX.length();
+        if (length <= prefixLength || length > prefixLength + MAX_CELL_DIGITS || !name.startsWith(CsvDataStore.CELL_PREFIX)
+                || name.charAt(prefixLength) == '0') {
+            return -1;
+        }
+        int number = 0;
+        for (int i = prefixLength; i < length; i++) {
+            final char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return number - 1;
+    }
+}
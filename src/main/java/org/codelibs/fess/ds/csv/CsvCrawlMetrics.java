@@ -0,0 +1,524 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Timing histograms and throughput of the stages of a crawl, per data config and per file.
+ * <p>
+ * The stages are {@link Stage#READ} (file I/O and tokenizing by the record reader), {@link Stage#CONVERT} (script mappings)
+ * and {@link Stage#STORE} (the index update callback). The readers of all files record their timings into
+ * {@link FileMetrics}, which also adds them to the histograms of the crawl; everything is lock-free.
+ * While the crawl runs, the metrics are registered as an MBean named
+ * org.codelibs.fess.ds.csv:type=CsvCrawlMetrics,name=&lt;data config&gt;.
+ * </p>
+ * <p>
+ * The progress of a file is the bytes of its records out of its size, and its ETA is the remaining bytes at the current byte rate.
+ * A progress report samples the current rates of the files and logs their progress at a fixed interval.
+ * </p>
+ */
+public class CsvCrawlMetrics implements CsvCrawlMetricsMBean {
+
+    private static final Logger logger = LogManager.getLogger(CsvCrawlMetrics.class);
+
+    /** Domain of the object names of the MBeans. */
+    public static final String DOMAIN = "org.codelibs.fess.ds.csv";
+
+    /**
+     * Stages of the ingestion of a record.
+     */
+    public enum Stage {
+        /** Reading a record from the file, which includes file I/O and tokenizing. */
+        READ,
+        /** Evaluating the script mappings of a record. */
+        CONVERT,
+        /** Passing a document to the index update callback. */
+        STORE
+    }
+
+    private final String name;
+
+    private final long startTime;
+
+    private final CsvLatencyHistogram[] histograms = newHistograms();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder completedFiles = new LongAdder();
+
+    private final Map<FileMetrics, Boolean> activeFileMap = new ConcurrentHashMap<>();
+
+    private ObjectName objectName;
+
+    private ScheduledExecutorService reportExecutor;
+
+    /**
+     * Creates the metrics of a crawl.
+     *
+     * @param name the name of the data config
+     */
+    public CsvCrawlMetrics(final String name) {
+        this.name = name;
+        startTime = nanoTime();
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server.
+     * If another crawl of the data config is running, the metrics are not registered.
+     *
+     * @return true if the metrics were registered
+     */
+    public synchronized boolean register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName mbeanName = new ObjectName(DOMAIN + ":type=CsvCrawlMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, mbeanName);
+            objectName = mbeanName;
+            return true;
+        } catch (final InstanceAlreadyExistsException e) {
+            logger.info("Metrics of {} are registered by another crawl.", name);
+        } catch (final JMException | RuntimeException e) {
+            logger.warn("Failed to register metrics of {}.", name, e);
+        }
+        return false;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (final JMException | RuntimeException e) {
+            logger.warn("Failed to unregister metrics of {}.", name, e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * Starts logging the progress of the active files at a fixed interval.
+     *
+     * @param intervalMillis the interval in milliseconds
+     */
+    public synchronized void startProgressReport(final long intervalMillis) {
+        if (reportExecutor != null || intervalMillis <= 0) {
+            return;
+        }
+        reportExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "csv-progress-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        reportExecutor.scheduleAtFixedRate(this::reportProgress, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops logging the progress of the active files.
+     */
+    public synchronized void stopProgressReport() {
+        if (reportExecutor != null) {
+            reportExecutor.shutdownNow();
+            reportExecutor = null;
+        }
+    }
+
+    /**
+     * Samples the current rates of the active files and logs their progress.
+     */
+    protected void reportProgress() {
+        for (final FileMetrics fileMetrics : activeFileMap.keySet()) {
+            fileMetrics.sample();
+            logger.info("Progress of {}", fileMetrics);
+        }
+    }
+
+    /**
+     * @return the object name of the MBean, or null if the metrics are not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Starts the metrics of a file.
+     *
+     * @param path the path of the file
+     * @param totalBytes the size of the file in bytes, or -1 if it is unknown
+     * @return the metrics of the file, which are finished by {@link FileMetrics#finish()}
+     */
+    public FileMetrics openFile(final String path, final long totalBytes) {
+        final FileMetrics fileMetrics = new FileMetrics(path, totalBytes);
+        activeFileMap.put(fileMetrics, Boolean.TRUE);
+        return fileMetrics;
+    }
+
+    /**
+     * Gets the histogram of a stage of all files.
+     *
+     * @param stage the stage
+     * @return the histogram
+     */
+    public CsvLatencyHistogram getHistogram(final Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime() - startTime);
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return perSecond(getRows(), startTime);
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes(), startTime);
+    }
+
+    @Override
+    public long getCompletedFiles() {
+        return completedFiles.sum();
+    }
+
+    @Override
+    public String[] getActiveFiles() {
+        return activeFileMap.keySet().stream().map(FileMetrics::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public String[] getStageSummaries() {
+        return getStageSummaries(histograms);
+    }
+
+    /**
+     * @return the current time in nanoseconds
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private double perSecond(final long value, final long since) {
+        final long elapsed = nanoTime() - since;
+        return elapsed > 0 ? value * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0.0;
+    }
+
+    private static CsvLatencyHistogram[] newHistograms() {
+        final CsvLatencyHistogram[] histograms = new CsvLatencyHistogram[Stage.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new CsvLatencyHistogram();
+        }
+        return histograms;
+    }
+
+    private static String[] getStageSummaries(final CsvLatencyHistogram[] histograms) {
+        final Stage[] stages = Stage.values();
+        final String[] summaries = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            summaries[i] = stages[i].name().toLowerCase(Locale.ROOT) + ": " + histograms[i];
+        }
+        return summaries;
+    }
+
+    /**
+     * Metrics of a file, which is shared by the readers of the file.
+     */
+    public class FileMetrics {
+
+        private final String path;
+
+        private final long fileStartTime;
+
+        private final CsvLatencyHistogram[] fileHistograms = newHistograms();
+
+        private final LongAdder fileRows = new LongAdder();
+
+        private final LongAdder fileBytes = new LongAdder();
+
+        private final LongAdder skippedBytes = new LongAdder();
+
+        private volatile long totalBytes;
+
+        // rows, bytes and time of the last sample, and the rates since the sample before it
+        private long sampleRows;
+
+        private long sampleBytes;
+
+        private long sampleTime;
+
+        private volatile double currentRowsPerSecond = -1.0;
+
+        private volatile double currentBytesPerSecond = -1.0;
+
+        /**
+         * Creates the metrics of a file.
+         *
+         * @param path the path of the file
+         * @param totalBytes the size of the file in bytes, or -1 if it is unknown
+         */
+        protected FileMetrics(final String path, final long totalBytes) {
+            this.path = path;
+            this.totalBytes = totalBytes;
+            fileStartTime = nanoTime();
+            sampleTime = fileStartTime;
+        }
+
+        /**
+         * Records the duration of a stage.
+         *
+         * @param stage the stage
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(final Stage stage, final long nanos) {
+            fileHistograms[stage.ordinal()].record(nanos);
+            histograms[stage.ordinal()].record(nanos);
+        }
+
+        /**
+         * Counts a record read from the file.
+         *
+         * @param size the size of the record in bytes, or 0 if it is unknown
+         */
+        public void addRow(final long size) {
+            fileRows.increment();
+            rows.increment();
+            if (size > 0) {
+                fileBytes.add(size);
+                bytes.add(size);
+            }
+        }
+
+        /**
+         * Counts bytes of the file that are done without reading records, such as the header or records indexed before a resume.
+         * They count toward the progress but not the throughput.
+         *
+         * @param size the number of bytes
+         */
+        public void skipBytes(final long size) {
+            if (size > 0) {
+                skippedBytes.add(size);
+            }
+        }
+
+        /**
+         * @param totalBytes the number of bytes to read, or -1 if it is unknown
+         */
+        public void setTotalBytes(final long totalBytes) {
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * @return the number of bytes to read, or -1 if it is unknown
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * @return the number of bytes done, which are the bytes of the records read and the skipped bytes
+         */
+        public long getProgressBytes() {
+            return getBytes() + skippedBytes.sum();
+        }
+
+        /**
+         * @return the ratio of the bytes done to the total bytes from 0 to 1, or -1 if the total is unknown
+         */
+        public double getProgress() {
+            final long total = totalBytes;
+            if (total <= 0) {
+                return -1.0;
+            }
+            return Math.min((double) getProgressBytes() / total, 1.0);
+        }
+
+        /**
+         * Samples the rows and bytes, and updates the current rates to the rates since the last sample.
+         */
+        public synchronized void sample() {
+            final long now = nanoTime();
+            final long numOfRows = getRows();
+            final long numOfBytes = getBytes();
+            if (now > sampleTime) {
+                final double seconds = (double) (now - sampleTime) / TimeUnit.SECONDS.toNanos(1);
+                currentRowsPerSecond = (numOfRows - sampleRows) / seconds;
+                currentBytesPerSecond = (numOfBytes - sampleBytes) / seconds;
+            }
+            sampleRows = numOfRows;
+            sampleBytes = numOfBytes;
+            sampleTime = now;
+        }
+
+        /**
+         * @return the records read per second since the last two samples, or since the file was opened if it is not sampled yet
+         */
+        public double getCurrentRowsPerSecond() {
+            final double rate = currentRowsPerSecond;
+            return rate >= 0 ? rate : getRowsPerSecond();
+        }
+
+        /**
+         * @return the bytes read per second since the last two samples, or since the file was opened if it is not sampled yet
+         */
+        public double getCurrentBytesPerSecond() {
+            final double rate = currentBytesPerSecond;
+            return rate >= 0 ? rate : getBytesPerSecond();
+        }
+
+        /**
+         * @return the estimated milliseconds until the file is read at the current byte rate, or -1 if it is unknown
+         */
+        public long getEtaMillis() {
+            final long total = totalBytes;
+            if (total <= 0) {
+                return -1L;
+            }
+            final long remaining = Math.max(total - getProgressBytes(), 0L);
+            if (remaining == 0L) {
+                return 0L;
+            }
+            final double rate = getCurrentBytesPerSecond();
+            return rate > 0 ? (long) (remaining * 1000.0 / rate) : -1L;
+        }
+
+        /**
+         * Finishes the metrics of the file.
+         */
+        public void finish() {
+            if (activeFileMap.remove(this) != null) {
+                completedFiles.increment();
+            }
+        }
+
+        /**
+         * @return the path of the file
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the histogram of a stage of the file.
+         *
+         * @param stage the stage
+         * @return the histogram
+         */
+        public CsvLatencyHistogram getHistogram(final Stage stage) {
+            return fileHistograms[stage.ordinal()];
+        }
+
+        /**
+         * @return the number of records read from the file
+         */
+        public long getRows() {
+            return fileRows.sum();
+        }
+
+        /**
+         * @return the number of bytes of the records read from the file
+         */
+        public long getBytes() {
+            return fileBytes.sum();
+        }
+
+        /**
+         * @return the records read per second since the file was opened
+         */
+        public double getRowsPerSecond() {
+            return perSecond(getRows(), fileStartTime);
+        }
+
+        /**
+         * @return the bytes read per second since the file was opened
+         */
+        public double getBytesPerSecond() {
+            return perSecond(getBytes(), fileStartTime);
+        }
+
+        /**
+         * @return the milliseconds since the file was opened
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanoTime() - fileStartTime);
+        }
+
+        /**
+         * @return the timing summaries of the stages of the file
+         */
+        public String[] getStageSummaries() {
+            return CsvCrawlMetrics.getStageSummaries(fileHistograms);
+        }
+
+        /**
+         * @return the path, rows, bytes, progress, current throughput and ETA of the file
+         */
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(path).append(": ").append(getRows()).append(" rows, ");
+            final long total = totalBytes;
+            if (total > 0) {
+                buf.append(String.format(Locale.ROOT, "%d of %d bytes (%.1f%%)", getProgressBytes(), total, getProgress() * 100));
+            } else {
+                buf.append(getBytes()).append(" bytes");
+            }
+            buf.append(String.format(Locale.ROOT, " in %d ms (%.1f rows/s, %.1f bytes/s)", getElapsedMillis(), getCurrentRowsPerSecond(),
+                    getCurrentBytesPerSecond()));
+            final long eta = getEtaMillis();
+            if (eta >= 0) {
+                buf.append(", ETA ").append(eta).append(" ms");
+            }
+            return buf.toString();
+        }
+    }
+}
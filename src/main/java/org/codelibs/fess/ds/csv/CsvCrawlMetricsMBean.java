@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+/**
+ * Management interface of {@link CsvCrawlMetrics}, which is registered to the platform MBean server while a crawl runs.
+ */
+public interface CsvCrawlMetricsMBean {
+
+    /**
+     * @return the name of the data config
+     */
+    String getName();
+
+    /**
+     * @return the milliseconds since the crawl started
+     */
+    long getElapsedMillis();
+
+    /**
+     * @return the number of records read
+     */
+    long getRows();
+
+    /**
+     * @return the number of bytes of the records read, or 0 if the parser engine does not know positions
+     */
+    long getBytes();
+
+    /**
+     * @return the records read per second since the crawl started
+     */
+    double getRowsPerSecond();
+
+    /**
+     * @return the bytes read per second since the crawl started
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return the number of files that have finished
+     */
+    long getCompletedFiles();
+
+    /**
+     * @return the rows, bytes, progress, current throughput and ETA of the files that are being read
+     */
+    String[] getActiveFiles();
+
+    /**
+     * @return the timing summaries of the stages of all files
+     */
+    String[] getStageSummaries();
+}
@@ -19,14 +19,29 @@ import static org.codelibs.core.stream.StreamUtil.stream;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import org.apache.commons.text.StringEscapeUtils;
@@ -47,10 +62,11 @@ import org.codelibs.fess.helper.CrawlerStatsHelper;
 import org.codelibs.fess.helper.CrawlerStatsHelper.StatsAction;
 import org.codelibs.fess.helper.CrawlerStatsHelper.StatsKeyObject;
 import org.codelibs.fess.opensearch.config.exentity.DataConfig;
+import org.codelibs.fess.script.ScriptEngine;
 import org.codelibs.fess.util.ComponentUtil;
+import org.opensearch.index.query.QueryBuilders;
 
 import com.orangesignal.csv.CsvConfig;
-import com.orangesignal.csv.CsvReader;
 
 /**
  * CSV Data Store for Fess that reads CSV files and indexes them for search.
@@ -108,17 +124,253 @@ public class CsvDataStore extends AbstractDataStore {
     /** Parameter name for indicating header line presence. */
     protected static final String HAS_HEADER_LINE_PARAM = "has_header_line";
 
+    /** Parameter name for the number of files processed concurrently. */
+    protected static final String FILE_THREADS_PARAM = "file_threads";
+
+    /** Parameter name for the number of threads that parse a large CSV file. */
+    protected static final String SPLIT_THREADS_PARAM = "split_threads";
+
+    /** Parameter name for the number of threads that convert the records of a reader into documents in a pipeline. */
+    protected static final String TRANSFORM_THREADS_PARAM = "transform_threads";
+
+    /** Parameter name for the maximum number of records in flight in a pipeline. */
+    protected static final String PIPELINE_QUEUE_SIZE_PARAM = "pipeline_queue_size";
+
+    /** Parameter name for running the tasks of records on virtual threads. */
+    protected static final String VIRTUAL_THREADS_PARAM = "virtual_threads";
+
+    /** Parameter name for the maximum number of tasks running on virtual threads. */
+    protected static final String MAX_CONCURRENCY_PARAM = "max_concurrency";
+
+    /** Parameter name for the number of documents of a reader that are passed to the callback together. */
+    protected static final String STORE_BATCH_SIZE_PARAM = "store_batch_size";
+
+    /** Parameter name for the maximum size in characters of the documents passed to the callback together. */
+    protected static final String STORE_BATCH_BYTES_PARAM = "store_batch_bytes";
+
+    /** Parameter name for how the crawler stats of rows are recorded: row, sample or file. */
+    protected static final String STATS_MODE_PARAM = "stats_mode";
+
+    /** Parameter name for the number of rows per recorded row in the sample stats mode. */
+    protected static final String STATS_SAMPLE_RATE_PARAM = "stats_sample_rate";
+
+    /** Stats mode that records the stats of every row. */
+    protected static final String ROW_STATS_MODE = "row";
+
+    /** Stats mode that records the stats of 1 in stats_sample_rate rows. */
+    protected static final String SAMPLE_STATS_MODE = "sample";
+
+    /** Stats mode that records one aggregated entry per file. */
+    protected static final String FILE_STATS_MODE = "file";
+
+    /** Parameter name for the interval in milliseconds between progress reports of the files. */
+    protected static final String PROGRESS_INTERVAL_PARAM = "progress_interval";
+
+    /** Parameter name for the maximum size in bytes of a record, or 0 for no limit. */
+    protected static final String MAX_RECORD_BYTES_PARAM = "max_record_bytes";
+
+    /** Parameter name for the maximum size in bytes of a field, or 0 for no limit. */
+    protected static final String MAX_FIELD_BYTES_PARAM = "max_field_bytes";
+
+    /** Parameter name for the maximum number of fields of a record, or 0 for no limit. */
+    protected static final String MAX_COLUMNS_PARAM = "max_columns";
+
+    /** Parameter name for the size in bytes of a chunk of a large CSV file. */
+    protected static final String SPLIT_SIZE_PARAM = "split_size";
+
+    /** Parameter name for the parser engine that reads CSV files. */
+    protected static final String PARSER_ENGINE_PARAM = "parser_engine";
+
+    /** Parameter name of Fess for deleting the documents that a crawl does not index again, which keeps them only if it is "false". */
+    protected static final String DELETE_OLD_DOCS_PARAM = "delete_old_docs";
+
+    /** Parameter name for the number of records between checkpoints of a CSV file. */
+    protected static final String CHECKPOINT_INTERVAL_PARAM = "checkpoint_interval";
+
+    /** Parameter name for the directory of checkpoint files. */
+    protected static final String CHECKPOINT_DIR_PARAM = "checkpoint_dir";
+
+    /** Suffix of checkpoint files. */
+    protected static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /** Parameter name for skipping files that are unchanged since the last crawl. */
+    protected static final String INCREMENTAL_PARAM = "incremental";
+
+    /** Parameter name for the manifest file of incremental crawls. */
+    protected static final String MANIFEST_FILE_PARAM = "manifest_file";
+
+    /** Parameter name for comparing the content checksums of files in incremental crawls. */
+    protected static final String FINGERPRINT_CHECKSUM_PARAM = "fingerprint_checksum";
+
+    /** Parameter name for the key columns of rows, which enable delta indexing. */
+    protected static final String DELTA_KEY_COLUMNS_PARAM = "delta_key_columns";
+
+    /** Parameter name for the directory of row hash files. */
+    protected static final String DELTA_DIR_PARAM = "delta_dir";
+
+    /** Suffix of row hash files. */
+    protected static final String DELTA_SUFFIX = ".delta";
+
+    /** Parameter name for reading only the records appended to CSV files since the last crawl. */
+    protected static final String FOLLOW_PARAM = "follow";
+
+    /** Parameter name for the interval in milliseconds between reads of a continuous follow crawl. */
+    protected static final String FOLLOW_INTERVAL_PARAM = "follow_interval";
+
+    /** Parameter name for the directory of follow state files. */
+    protected static final String FOLLOW_DIR_PARAM = "follow_dir";
+
+    /** Suffix of follow state files. */
+    protected static final String FOLLOW_SUFFIX = ".follow";
+
+    /** Parameter name for walking the subdirectories of the directories. */
+    protected static final String RECURSIVE_PARAM = "recursive";
+
+    /** Parameter name for the glob patterns of files to include. */
+    protected static final String INCLUDE_GLOBS_PARAM = "include_globs";
+
+    /** Parameter name for the glob patterns of files and directories to exclude. */
+    protected static final String EXCLUDE_GLOBS_PARAM = "exclude_globs";
+
+    /** Parameter name for the maximum number of documents per second. */
+    protected static final String MAX_DOCS_PER_SECOND_PARAM = "max_docs_per_second";
+
+    /** Parameter name for the maximum number of bytes per second read from CSV files. */
+    protected static final String MAX_BYTES_PER_SECOND_PARAM = "max_bytes_per_second";
+
+    /** Parameter name for lowering the document rate when storing documents slows down. */
+    protected static final String ADAPTIVE_THROTTLE_PARAM = "adaptive_throttle";
+
+    /** Name of the parser engine backed by the OrangeSignal CSV reader. */
+    protected static final String DEFAULT_PARSER_ENGINE = "orangesignal";
+
+    /** Name of the parser engine that tokenizes memory-mapped files on bytes. */
+    protected static final String MMAP_PARSER_ENGINE = "mmap";
+
+    /** Name of the parser engine that tokenizes memory-mapped files with the Vector API. */
+    protected static final String VECTOR_PARSER_ENGINE = "vector";
+
     /** Prefix for cell field names. */
     protected static final String CELL_PREFIX = "cell";
 
     /** Supported CSV file suffixes. */
     public String[] csvFileSuffixs = { ".csv", ".tsv" };
 
+    /** Default chunk size for splitting a large CSV file (64MB). */
+    public long csvFileSplitSize = 64L * 1024 * 1024;
+
+    /** Number of files found in directories that are processed together. */
+    public int csvFileBatchSize = 1000;
+
+    /** Default maximum number of records in flight in a pipeline. */
+    public int pipelineQueueSize = 1000;
+
+    /** Default maximum number of tasks running on virtual threads. */
+    public int maxConcurrency = 1000;
+
+    /** Default maximum size in characters of the documents passed to the callback together (10M). */
+    public long storeBatchBytes = 10L * 1024 * 1024;
+
+    /** Default number of rows per recorded row in the sample stats mode. */
+    public int statsSampleRate = 100;
+
+    /** Default interval in milliseconds between progress reports of the files (1 minute). */
+    public long progressInterval = 60L * 1000;
+
+    /** Default maximum size in bytes of a record (64MB). */
+    public int maxRecordBytes = 64 * 1024 * 1024;
+
+    /** Default maximum size in bytes of a field, or 0 for no limit other than the record limit. */
+    public int maxFieldBytes = 0;
+
+    /** Default maximum number of fields of a record, or 0 for no limit. */
+    public int maxColumns = 0;
+
+    /** Number of URLs per delete request for rows that disappeared. */
+    public int deltaDeleteBatchSize = 1000;
+
+    /** Maximum number of compiled scripts kept across crawls. */
+    public int scriptCacheSize = 1000;
+
+    /** Fields of the default data map that change every crawl, which are not part of the configuration of the manifest. */
+    public String[] crawlTimeFields = { "created", "expires", "segment" };
+
+    /** Parser engines by name. */
+    protected Map<String, CsvParserEngine> parserEngineMap = new ConcurrentHashMap<>();
+
+    /** Decompressors by file suffix. */
+    protected Map<String, CsvDecompressor> decompressorMap = new ConcurrentHashMap<>();
+
+    /** Script compilers by script type. */
+    protected Map<String, CsvScriptCompiler> scriptCompilerMap = new ConcurrentHashMap<>();
+
+    /** Manifests of the running incremental crawls by their parameters. */
+    protected Map<DataStoreParams, CsvFileManifest> manifestMap = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /** Rate limiters of the running throttled crawls by their parameters. */
+    protected Map<DataStoreParams, CsvRateLimiter> rateLimiterMap = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /** Metrics of the running crawls, keyed by the identity of their data store parameters. */
+    protected Map<DataStoreParams, CsvCrawlMetrics> metricsMap = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /** Compiled scripts by script type and script text, in access order. */
+    protected Map<String, CachedScript> scriptCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Compiled script in the script cache.
+     *
+     * @param scriptEngine the script engine that the script was compiled for
+     * @param script the compiled script
+     */
+    protected record CachedScript(ScriptEngine scriptEngine, CsvScript script) {
+    }
+
     /**
      * Creates a new CSV Data Store instance.
      */
     public CsvDataStore() {
         super();
+        addParserEngine(DEFAULT_PARSER_ENGINE, new OrangeSignalParserEngine());
+        addParserEngine(MMAP_PARSER_ENGINE, new MappedParserEngine());
+        addParserEngine(VECTOR_PARSER_ENGINE, new MappedParserEngine(true));
+        addScriptCompiler("groovy", new GroovyScriptCompiler());
+        addDecompressor(".gz", new GzipDecompressor());
+        addDecompressor(".zip", new ZipDecompressor());
+        final ZstdDecompressor zstdDecompressor = ZstdDecompressor.create();
+        if (zstdDecompressor != null) {
+            addDecompressor(".zst", zstdDecompressor);
+        }
+    }
+
+    /**
+     * Registers a parser engine, which is selected by the parser_engine parameter.
+     *
+     * @param name the engine name
+     * @param parserEngine the parser engine
+     */
+    public void addParserEngine(final String name, final CsvParserEngine parserEngine) {
+        parserEngineMap.put(name.toLowerCase(Locale.ROOT), parserEngine);
+    }
+
+    /**
+     * Registers a decompressor for files with a suffix, such as .gz.
+     * A compressed file is a CSV file if its name without the suffix has a CSV file suffix, and an archive is always a CSV file.
+     *
+     * @param suffix the file suffix
+     * @param decompressor the decompressor
+     */
+    public void addDecompressor(final String suffix, final CsvDecompressor decompressor) {
+        decompressorMap.put(suffix.toLowerCase(Locale.ROOT), decompressor);
+    }
+
+    /**
+     * Registers a script compiler for a script type.
+     *
+     * @param scriptType the script type
+     * @param scriptCompiler the script compiler
+     */
+    public void addScriptCompiler(final String scriptType, final CsvScriptCompiler scriptCompiler) {
+        scriptCompilerMap.put(scriptType.toLowerCase(Locale.ROOT), scriptCompiler);
     }
 
     @Override
@@ -133,27 +385,55 @@ public class CsvDataStore extends AbstractDataStore {
      * @return list of CSV files to process
      */
     protected List<File> getCsvFileList(final DataStoreParams paramMap) {
-        String value = paramMap.getAsString(CSV_FILES_PARAM);
         final List<File> fileList = new ArrayList<>();
+        walkCsvFiles(paramMap, fileList::addAll);
+        return fileList;
+    }
+
+    /**
+     * Finds the CSV files to process, and passes them to the consumer in batches of csvFileBatchSize files.
+     * The files of directories are streamed while the directories are walked,
+     * and the files in a batch are sorted by their modification time.
+     *
+     * @param paramMap the data store parameters
+     * @param consumer receives the batches of CSV files, and returns false to stop finding files
+     * @return the number of files passed to the consumer
+     */
+    protected int walkCsvFiles(final DataStoreParams paramMap, final Predicate<List<File>> consumer) {
+        String value = paramMap.getAsString(CSV_FILES_PARAM);
+        int count = 0;
         if (StringUtil.isBlank(value)) {
             value = paramMap.getAsString(CSV_DIRS_PARAM);
             if (StringUtil.isBlank(value)) {
                 throw new DataStoreException(CSV_FILES_PARAM + " and " + CSV_DIRS_PARAM + " are blank.");
             }
             logger.info("{}={}", CSV_DIRS_PARAM, value);
+            final CsvFileWalker walker = createCsvFileWalker(paramMap);
+            final long scanTime = System.currentTimeMillis();
+            final boolean[] stopped = new boolean[1];
             final String[] values = value.split(",");
             for (final String path : values) {
                 final File dir = new File(path);
+                if (stopped[0]) {
+                    break;
+                }
                 if (dir.isDirectory()) {
-                    stream(dir.listFiles()).of(stream -> stream.filter(f -> isCsvFile(f.getParentFile(), f.getName(), paramMap))
-                            .sorted((f1, f2) -> (int) (f1.lastModified() - f2.lastModified()))
-                            .forEach(f -> fileList.add(f)));
+                    try {
+                        count += walker.walk(dir.toPath(), (file, attributes) -> isCsvFile(file, attributes, scanTime, paramMap),
+                                fileList -> {
+                                    stopped[0] = !consumer.test(fileList);
+                                    return !stopped[0];
+                                });
+                    } catch (final IOException e) {
+                        throw new DataStoreException("Failed to read " + path, e);
+                    }
                 } else {
                     logger.warn("{} is not a directory.", path);
                 }
             }
         } else {
             logger.info("{}={}", CSV_FILES_PARAM, value);
+            final List<File> fileList = new ArrayList<>();
             final String[] values = value.split(",");
             for (final String path : values) {
                 final File file = new File(path);
@@ -163,11 +443,66 @@ public class CsvDataStore extends AbstractDataStore {
                     logger.warn("{} is not found.", path);
                 }
             }
+            if (!fileList.isEmpty()) {
+                count = fileList.size();
+                consumer.test(fileList);
+            }
         }
-        if (fileList.isEmpty() && logger.isDebugEnabled()) {
+        if (count == 0 && logger.isDebugEnabled()) {
             logger.debug("No csv files in {}", value);
         }
-        return fileList;
+        return count;
+    }
+
+    /**
+     * Checks if a file found in a directory is a CSV file, by the attributes read by the walk.
+     * A regular file is checked by {@link #isCsvFile(File, String, DataStoreParams)}, so overriding that method also filters walks.
+     *
+     * @param file the file
+     * @param attributes the attributes of the file
+     * @param scanTime the time when the directories started to be walked
+     * @param paramMap the data store parameters
+     * @return true if the file is a CSV file
+     */
+    protected boolean isCsvFile(final Path file, final BasicFileAttributes attributes, final long scanTime,
+            final DataStoreParams paramMap) {
+        return attributes.isRegularFile() && isCsvFile(file.getParent().toFile(), file.getFileName().toString(), paramMap);
+    }
+
+    /**
+     * Creates the walker of the directories, with include_globs, exclude_globs and recursive.
+     *
+     * @param paramMap the data store parameters
+     * @return the walker
+     */
+    protected CsvFileWalker createCsvFileWalker(final DataStoreParams paramMap) {
+        return new CsvFileWalker(getGlobs(paramMap, INCLUDE_GLOBS_PARAM), getGlobs(paramMap, EXCLUDE_GLOBS_PARAM), isRecursive(paramMap),
+                csvFileBatchSize);
+    }
+
+    /**
+     * Checks if the directories are walked recursively.
+     *
+     * @param paramMap the data store parameters
+     * @return true if subdirectories are walked (defaults to false)
+     */
+    protected boolean isRecursive(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(RECURSIVE_PARAM));
+    }
+
+    /**
+     * Gets comma-separated glob patterns.
+     *
+     * @param paramMap the data store parameters
+     * @param name the parameter name
+     * @return the glob patterns
+     */
+    protected String[] getGlobs(final DataStoreParams paramMap, final String name) {
+        final String value = paramMap.getAsString(name);
+        if (StringUtil.isBlank(value)) {
+            return StringUtil.EMPTY_STRINGS;
+        }
+        return stream(value.split(",")).get(stream -> stream.map(String::trim).filter(StringUtil::isNotEmpty).toArray(String[]::new));
     }
 
     /**
@@ -179,7 +514,26 @@ public class CsvDataStore extends AbstractDataStore {
      * @return true if the file is a CSV file
      */
     protected boolean isCsvFile(final File parentFile, final String filename, final DataStoreParams paramMap) {
-        final String name = filename.toLowerCase(Locale.ROOT);
+        return hasCsvFileSuffix(filename);
+    }
+
+    /**
+     * Checks if a filename has one of the CSV file suffixes.
+     *
+     * @param filename the filename to check
+     * @return true if the filename has a CSV file suffix
+     */
+    protected boolean hasCsvFileSuffix(final String filename) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        for (final Map.Entry<String, CsvDecompressor> entry : decompressorMap.entrySet()) {
+            if (name.endsWith(entry.getKey())) {
+                if (entry.getValue().isArchive()) {
+                    return true;
+                }
+                name = name.substring(0, name.length() - entry.getKey().length());
+                break;
+            }
+        }
         for (final String suffix : csvFileSuffixs) {
             if (name.endsWith(suffix)) {
                 return true;
@@ -188,6 +542,22 @@ public class CsvDataStore extends AbstractDataStore {
         return false;
     }
 
+    /**
+     * Gets the decompressor of a file by its suffix.
+     *
+     * @param file the file
+     * @return the decompressor, or null if the file is not compressed
+     */
+    protected CsvDecompressor getDecompressor(final File file) {
+        final String name = file.getName().toLowerCase(Locale.ROOT);
+        for (final Map.Entry<String, CsvDecompressor> entry : decompressorMap.entrySet()) {
+            if (name.endsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * Gets the file encoding for CSV files.
      *
@@ -220,174 +590,2130 @@ public class CsvDataStore extends AbstractDataStore {
         }
     }
 
-    @Override
-    protected void storeData(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
-            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+    /**
+     * Gets the number of CSV files processed concurrently.
+     *
+     * @param paramMap the data store parameters
+     * @return the number of file threads (defaults to 1)
+     */
+    protected int getFileThreads(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(FILE_THREADS_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", FILE_THREADS_PARAM, e);
+            }
+        }
+        return 1;
+    }
 
-        final long readInterval = getReadInterval(paramMap);
+    /**
+     * Gets the number of threads that parse a single CSV file.
+     * A file larger than the split size is split into chunks if this is more than 1.
+     *
+     * @param paramMap the data store parameters
+     * @return the number of split threads (defaults to 1)
+     */
+    protected int getSplitThreads(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(SPLIT_THREADS_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", SPLIT_THREADS_PARAM, e);
+            }
+        }
+        return 1;
+    }
 
-        final List<File> csvFileList = getCsvFileList(paramMap);
-        if (csvFileList.isEmpty()) {
-            logger.warn("No CSV file.");
-            return;
+    /**
+     * Gets the number of threads that convert the records of a reader into documents.
+     * The records are processed in a pipeline of a reader, the transform threads and a store thread if this is more than 0.
+     *
+     * @param paramMap the data store parameters
+     * @return the number of transform threads (defaults to 0)
+     */
+    protected int getTransformThreads(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(TRANSFORM_THREADS_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 0);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", TRANSFORM_THREADS_PARAM, e);
+            }
         }
+        return 0;
+    }
 
-        final String csvFileEncoding = getCsvFileEncoding(paramMap);
-        final boolean hasHeaderLine = hasHeaderLine(paramMap);
-        final CsvConfig csvConfig = buildCsvConfig(paramMap);
+    /**
+     * Checks if the tasks of records run on virtual threads, limited by max_concurrency instead of a number of threads.
+     *
+     * @param paramMap the data store parameters
+     * @return true if virtual threads are used (defaults to false)
+     */
+    protected boolean isVirtualThreads(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(VIRTUAL_THREADS_PARAM));
+    }
 
-        for (final File csvFile : csvFileList) {
-            processCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, readInterval, csvFileEncoding,
-                    hasHeaderLine);
+    /**
+     * Gets the maximum number of tasks running on virtual threads.
+     *
+     * @param paramMap the data store parameters
+     * @return the maximum concurrency (defaults to maxConcurrency)
+     */
+    protected int getMaxConcurrency(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(MAX_CONCURRENCY_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", MAX_CONCURRENCY_PARAM, e);
+            }
         }
+        return maxConcurrency;
     }
 
     /**
-     * Processes a single CSV file and indexes its data.
+     * Creates the executor of the transform workers of a pipeline.
      *
-     * @param dataConfig the data configuration
-     * @param callback the index update callback
      * @param paramMap the data store parameters
-     * @param scriptMap the script mappings
-     * @param defaultDataMap the default data map
-     * @param csvConfig the CSV configuration
-     * @param csvFile the CSV file to process
-     * @param readInterval the read interval
-     * @param csvFileEncoding the file encoding
-     * @param hasHeaderLine whether the file has a header line
+     * @param transformThreads the number of transform threads
+     * @return the executor on virtual threads if virtual_threads is true, or a pool of transformThreads threads
      */
-    protected void processCsv(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
-            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvConfig csvConfig, final File csvFile,
-            final long readInterval, final String csvFileEncoding, final boolean hasHeaderLine) {
-        logger.info("Loading {}", csvFile.getAbsolutePath());
-        final CrawlerStatsHelper crawlerStatsHelper = ComponentUtil.getCrawlerStatsHelper();
-        final String scriptType = getScriptType(paramMap);
-        CsvReader csvReader = null;
-        try {
-            csvReader = new CsvReader(new BufferedReader(new InputStreamReader(new FileInputStream(csvFile), csvFileEncoding)), csvConfig);
-            List<String> headerList = null;
-            if (hasHeaderLine) {
-                headerList = csvReader.readValues();
-            }
-            List<String> list;
-            boolean loop = true;
-            while ((list = csvReader.readValues()) != null && loop && alive) {
-                final StatsKeyObject statsKey = new StatsKeyObject(csvFile.getAbsolutePath() + "#" + csvReader.getLineNumber());
-                paramMap.put(Constants.CRAWLER_STATS_KEY, statsKey);
-                final Map<String, Object> dataMap = new HashMap<>(defaultDataMap);
-                final Map<String, Object> resultMap = new LinkedHashMap<>();
-                try {
-                    crawlerStatsHelper.begin(statsKey);
-                    resultMap.putAll(paramMap.asMap());
-                    resultMap.put("csvfile", csvFile.getAbsolutePath());
-                    resultMap.put("csvfilename", csvFile.getName());
-                    resultMap.put("crawlingConfig", dataConfig);
-                    boolean foundValues = false;
-                    for (int i = 0; i < list.size(); i++) {
-                        String key = null;
-                        String value = list.get(i);
-                        if (value == null) {
-                            value = StringUtil.EMPTY;
-                        }
-                        if (StringUtil.isNotBlank(value)) {
-                            foundValues = true;
-                        }
-                        if (headerList != null && headerList.size() > i) {
-                            key = headerList.get(i);
-                            if (StringUtil.isNotBlank(key)) {
-                                resultMap.put(key, value);
-                            }
-                        }
-                        key = CELL_PREFIX + Integer.toString(i + 1);
-                        resultMap.put(key, value);
-                    }
-                    if (!foundValues) {
-                        logger.debug("No data in line: {}", resultMap);
-                        crawlerStatsHelper.discard(statsKey);
-                        continue;
-                    }
-
-                    crawlerStatsHelper.record(statsKey, StatsAction.PREPARED);
+    protected ExecutorService newTransformExecutor(final DataStoreParams paramMap, final int transformThreads) {
+        if (isVirtualThreads(paramMap)) {
+            return new CsvVirtualThreadExecutor("csv-transform", getMaxConcurrency(paramMap));
+        }
+        return Executors.newFixedThreadPool(transformThreads);
+    }
 
-                    if (logger.isDebugEnabled()) {
-                        for (final Map.Entry<String, Object> entry : resultMap.entrySet()) {
-                            logger.debug("{}={}", entry.getKey(), entry.getValue());
-                        }
-                    }
+    /**
+     * Gets the number of documents of a reader that are passed to the callback together, with one crawler stats entry per batch.
+     *
+     * @param paramMap the data store parameters
+     * @return the batch size, or 1 if each document is passed with its own crawler stats (defaults to 1)
+     */
+    protected int getStoreBatchSize(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(STORE_BATCH_SIZE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", STORE_BATCH_SIZE_PARAM, e);
+            }
+        }
+        return 1;
+    }
 
-                    final Map<String, Object> crawlingContext = new HashMap<>();
-                    crawlingContext.put("doc", dataMap);
-                    resultMap.put("crawlingContext", crawlingContext);
-                    for (final Map.Entry<String, String> entry : scriptMap.entrySet()) {
-                        final Object convertValue = convertValue(scriptType, entry.getValue(), resultMap);
-                        if (convertValue != null) {
-                            dataMap.put(entry.getKey(), convertValue);
-                        }
-                    }
+    /**
+     * Gets the maximum size in characters of the documents passed to the callback together.
+     *
+     * @param paramMap the data store parameters
+     * @return the batch size in characters (defaults to storeBatchBytes)
+     */
+    protected long getStoreBatchBytes(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(STORE_BATCH_BYTES_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 1L);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", STORE_BATCH_BYTES_PARAM, e);
+            }
+        }
+        return storeBatchBytes;
+    }
 
-                    crawlerStatsHelper.record(statsKey, StatsAction.EVALUATED);
+    /**
+     * Gets how the crawler stats of rows are recorded.
+     *
+     * @param paramMap the data store parameters
+     * @return row, sample or file (defaults to row)
+     */
+    protected String getStatsMode(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(STATS_MODE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            final String mode = value.trim().toLowerCase(Locale.ROOT);
+            if (ROW_STATS_MODE.equals(mode) || SAMPLE_STATS_MODE.equals(mode) || FILE_STATS_MODE.equals(mode)) {
+                return mode;
+            }
+            logger.warn("Unknown {}: {}", STATS_MODE_PARAM, value);
+        }
+        return ROW_STATS_MODE;
+    }
 
-                    if (logger.isDebugEnabled()) {
-                        for (final Map.Entry<String, Object> entry : dataMap.entrySet()) {
-                            logger.debug("{}={}", entry.getKey(), entry.getValue());
-                        }
-                    }
+    /**
+     * Gets the number of rows per recorded row in the sample stats mode.
+     *
+     * @param paramMap the data store parameters
+     * @return the sample rate (defaults to statsSampleRate)
+     */
+    protected int getStatsSampleRate(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(STATS_SAMPLE_RATE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", STATS_SAMPLE_RATE_PARAM, e);
+            }
+        }
+        return statsSampleRate;
+    }
 
-                    if (dataMap.get("url") instanceof final String url) {
-                        statsKey.setUrl(url);
-                    }
+    /**
+     * Gets the crawler stats helper of the rows of a file, which is resolved once per file and also records the batches of documents.
+     * The failures of rows are recorded in all stats modes, and a document is counted either in its row or in its batch.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @return a helper that samples the rows in the sample stats mode, aggregates them in the file stats mode,
+     *         or records the batches instead of the rows if the documents are stored in batches; otherwise the crawler stats helper
+     */
+    protected CrawlerStatsHelper getRowStatsHelper(final DataStoreParams paramMap, final File csvFile) {
+        final CrawlerStatsHelper crawlerStatsHelper = ComponentUtil.getCrawlerStatsHelper();
+        final String statsMode = getStatsMode(paramMap);
+        if (SAMPLE_STATS_MODE.equals(statsMode)) {
+            return new CsvSampledStatsHelper(crawlerStatsHelper, getStatsSampleRate(paramMap));
+        }
+        if (FILE_STATS_MODE.equals(statsMode)) {
+            return new CsvFileStatsHelper(crawlerStatsHelper, csvFile.getAbsolutePath());
+        }
+        if (getStoreBatchSize(paramMap) > 1) {
+            return new CsvRowStatsHelper(crawlerStatsHelper);
+        }
+        return crawlerStatsHelper;
+    }
 
-                    callback.store(paramMap, dataMap);
-                    crawlerStatsHelper.record(statsKey, StatsAction.FINISHED);
-                } catch (final CrawlingAccessException e) {
-                    logger.warn("Crawling Access Exception at : {}", dataMap, e);
+    /**
+     * Finishes the crawler stats of the rows of a file, which records the entry of the file in the file stats mode.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void finishRowStats(final CsvFileContext context) {
+        if (context.getCrawlerStatsHelper() instanceof final CsvRowStatsHelper rowStatsHelper) {
+            rowStatsHelper.finish();
+        }
+    }
 
-                    Throwable target = e;
-                    if (target instanceof final MultipleCrawlingAccessException ex) {
-                        final Throwable[] causes = ex.getCauses();
-                        if (causes.length > 0) {
-                            target = causes[causes.length - 1];
-                        }
-                    }
+    /**
+     * Gets the maximum number of records in flight in a pipeline.
+     *
+     * @param paramMap the data store parameters
+     * @return the queue size (defaults to pipelineQueueSize)
+     */
+    protected int getPipelineQueueSize(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(PIPELINE_QUEUE_SIZE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", PIPELINE_QUEUE_SIZE_PARAM, e);
+            }
+        }
+        return pipelineQueueSize;
+    }
+
+    /**
+     * Gets the size of a chunk when a CSV file is split.
+     *
+     * @param paramMap the data store parameters
+     * @return the chunk size in bytes
+     */
+    protected long getSplitSize(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(SPLIT_SIZE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 1L);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", SPLIT_SIZE_PARAM, e);
+            }
+        }
+        return csvFileSplitSize;
+    }
+
+    /**
+     * Checks if Fess keeps the documents that a crawl does not index again.
+     * After each crawl, Fess deletes the documents of older crawls unless delete_old_docs is "false",
+     * so the crawls that do not index every record again need it.
+     *
+     * @param paramMap the data store parameters
+     * @return true if delete_old_docs is "false"
+     */
+    protected boolean isOldDocsKept(final DataStoreParams paramMap) {
+        return Constants.FALSE.equals(paramMap.getAsString(DELETE_OLD_DOCS_PARAM));
+    }
+
+    /**
+     * Warns about the parameters that are ignored because Fess deletes the documents that a crawl does not index again.
+     *
+     * @param paramMap the data store parameters
+     */
+    protected void checkOldDocs(final DataStoreParams paramMap) {
+        if (isOldDocsKept(paramMap)) {
+            return;
+        }
+        final List<String> nameList = new ArrayList<>();
+        if (StringUtil.isNotBlank(paramMap.getAsString(CHECKPOINT_INTERVAL_PARAM))) {
+            nameList.add(CHECKPOINT_INTERVAL_PARAM);
+        }
+        if (Boolean.parseBoolean(paramMap.getAsString(INCREMENTAL_PARAM))) {
+            nameList.add(INCREMENTAL_PARAM);
+        }
+        if (StringUtil.isNotBlank(paramMap.getAsString(DELTA_KEY_COLUMNS_PARAM))) {
+            nameList.add(DELTA_KEY_COLUMNS_PARAM);
+        }
+        if (Boolean.parseBoolean(paramMap.getAsString(FOLLOW_PARAM))) {
+            nameList.add(FOLLOW_PARAM);
+        }
+        if (!nameList.isEmpty()) {
+            logger.warn("{} ignored: documents that are not indexed again are deleted unless {}=false.", nameList, DELETE_OLD_DOCS_PARAM);
+        }
+    }
+
+    /**
+     * Gets the number of records between checkpoints of a CSV file.
+     * Checkpoints need delete_old_docs=false, because a resumed crawl does not index the records before its checkpoint again.
+     *
+     * @param paramMap the data store parameters
+     * @return the checkpoint interval, or 0 if checkpoints are disabled (defaults to 0)
+     */
+    protected long getCheckpointInterval(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(CHECKPOINT_INTERVAL_PARAM);
+        if (StringUtil.isNotBlank(value) && isOldDocsKept(paramMap)) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0L);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", CHECKPOINT_INTERVAL_PARAM, e);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Gets the checkpoint file of a CSV file.
+     * The file is next to the CSV file, or in checkpoint_dir if it is specified.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @return the checkpoint file
+     */
+    protected File getCheckpointFile(final DataStoreParams paramMap, final File csvFile) {
+        return getStateFile(paramMap, CHECKPOINT_DIR_PARAM, csvFile, CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Gets a file that keeps the state of a CSV file across crawls.
+     * The file is a hidden file next to the CSV file, or a file in the directory of dirParam if it is specified.
+     *
+     * @param paramMap the data store parameters
+     * @param dirParam the parameter name of the directory
+     * @param csvFile the CSV file
+     * @param suffix the suffix of the state file
+     * @return the state file
+     */
+    protected File getStateFile(final DataStoreParams paramMap, final String dirParam, final File csvFile, final String suffix) {
+        final File file = csvFile.getAbsoluteFile();
+        final String value = paramMap.getAsString(dirParam);
+        if (StringUtil.isBlank(value)) {
+            return new File(file.getParentFile(), "." + file.getName() + suffix);
+        }
+        // files with the same name in different directories share the directory
+        return new File(value.trim(), file.getName() + "." + Integer.toHexString(file.getPath().hashCode()) + suffix);
+    }
+
+    /**
+     * Gets the key columns of rows for delta indexing.
+     * Delta indexing needs delete_old_docs=false, because the documents of unchanged rows are not indexed again.
+     *
+     * @param paramMap the data store parameters
+     * @return the key columns by header name or cellN, or null if delta indexing is disabled
+     */
+    protected String[] getDeltaKeyColumns(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(DELTA_KEY_COLUMNS_PARAM);
+        if (StringUtil.isBlank(value) || !isOldDocsKept(paramMap)) {
+            return null;
+        }
+        return stream(value.split(",")).get(stream -> stream.map(String::trim).filter(StringUtil::isNotEmpty).toArray(String[]::new));
+    }
+
+    /**
+     * Opens the row hashes of a CSV file for delta indexing.
+     * The saved row hashes are ignored if the key columns or the script mappings have changed.
+     *
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param csvFile the CSV file
+     * @return the row hashes, or null if delta indexing is disabled
+     */
+    protected CsvDeltaState openDeltaState(final DataStoreParams paramMap, final Map<String, String> scriptMap, final File csvFile) {
+        final String[] keyColumns = getDeltaKeyColumns(paramMap);
+        if (keyColumns == null || keyColumns.length == 0) {
+            return null;
+        }
+        // defaultDataMap is not included: it has the timestamps of the crawl
+        final long configHash = CsvDeltaState.getRowHash(List.of(String.join(",", keyColumns), new TreeMap<>(scriptMap).toString()));
+        try {
+            return new CsvDeltaState(getStateFile(paramMap, DELTA_DIR_PARAM, csvFile, DELTA_SUFFIX), keyColumns, configHash);
+        } catch (final IOException e) {
+            throw new DataStoreException("Failed to open row hashes of " + csvFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Deletes the documents of rows that disappeared from a CSV file.
+     *
+     * @param context the context of the CSV file
+     * @param urlList the URLs of the documents
+     */
+    protected void deleteDocuments(final CsvFileContext context, final List<String> urlList) {
+        final long count = ComponentUtil.getIndexingHelper()
+                .deleteDocumentByQuery(ComponentUtil.getSearchEngineClient(),
+                        QueryBuilders.termsQuery(ComponentUtil.getFessConfig().getIndexFieldUrl(), urlList));
+        logger.debug("Deleted {} documents of {} URLs.", count, urlList.size());
+    }
+
+    /**
+     * Loads the checkpoint of a CSV file.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @return the checkpoint, or null if checkpoints are disabled
+     */
+    protected CsvCheckpoint loadCheckpoint(final DataStoreParams paramMap, final File csvFile) {
+        if (getCheckpointInterval(paramMap) <= 0) {
+            return null;
+        }
+        return CsvCheckpoint.load(getCheckpointFile(paramMap, csvFile), csvFile);
+    }
+
+    /**
+     * Deletes the checkpoint of a CSV file.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     */
+    protected void deleteCheckpoint(final DataStoreParams paramMap, final File csvFile) {
+        if (getCheckpointInterval(paramMap) > 0) {
+            new CsvCheckpoint(getCheckpointFile(paramMap, csvFile), csvFile).delete();
+        }
+    }
+
+    /**
+     * Saves the checkpoint of a CSV file after the indexed records are committed.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void saveCheckpoint(final CsvFileContext context) {
+        final CsvCheckpoint checkpoint = context.getCheckpoint();
+        try {
+            checkpoint.save(() -> commitCheckpoint(context));
+        } catch (final IOException e) {
+            logger.warn("Failed to save {}.", checkpoint.getStateFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Commits the records indexed so far, before a checkpoint is saved.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void commitCheckpoint(final CsvFileContext context) {
+        context.getCallback().commit();
+    }
+
+    /**
+     * Checks if files that are unchanged since the last crawl are skipped.
+     * Incremental crawls need delete_old_docs=false, because the documents of the skipped files are not indexed again.
+     *
+     * @param paramMap the data store parameters
+     * @return true if the crawl is incremental (defaults to false)
+     */
+    protected boolean isIncremental(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(INCREMENTAL_PARAM)) && isOldDocsKept(paramMap);
+    }
+
+    /**
+     * Checks if the fingerprints of files include the checksums of their content.
+     *
+     * @param paramMap the data store parameters
+     * @return true if the checksums are compared (defaults to false)
+     */
+    protected boolean isFingerprintChecksum(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(FINGERPRINT_CHECKSUM_PARAM));
+    }
+
+    /**
+     * Gets the manifest file of incremental crawls.
+     * The file is manifest_file, or a file of the data config under the Fess var directory.
+     *
+     * @param dataConfig the data configuration
+     * @param paramMap the data store parameters
+     * @return the manifest file, or null if it cannot be determined
+     */
+    protected File getManifestFile(final DataConfig dataConfig, final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(MANIFEST_FILE_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            return new File(value.trim());
+        }
+        final String varPath = System.getProperty(Constants.FESS_VAR_PATH);
+        if (StringUtil.isBlank(varPath) || StringUtil.isBlank(dataConfig.getId())) {
+            return null;
+        }
+        return new File(varPath, "csv/" + dataConfig.getId() + ".manifest");
+    }
+
+    /**
+     * Loads the manifest of incremental crawls.
+     * The saved manifest is ignored if the script mappings or the default data have changed.
+     *
+     * @param dataConfig the data configuration
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @return the manifest, or null if the crawl is not incremental
+     */
+    protected CsvFileManifest loadManifest(final DataConfig dataConfig, final DataStoreParams paramMap, final Map<String, String> scriptMap,
+            final Map<String, Object> defaultDataMap) {
+        if (!isIncremental(paramMap)) {
+            return null;
+        }
+        final File manifestFile = getManifestFile(dataConfig, paramMap);
+        if (manifestFile == null) {
+            logger.warn("All files are crawled: {} is not specified.", MANIFEST_FILE_PARAM);
+            return null;
+        }
+        return CsvFileManifest.load(manifestFile, getManifestConfigHash(scriptMap, defaultDataMap));
+    }
+
+    /**
+     * Computes the hash of the configuration that the indexed documents of a file depend on.
+     * The fields in {@link #crawlTimeFields} are not included.
+     *
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @return the configuration hash
+     */
+    protected long getManifestConfigHash(final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+        final Map<String, String> dataMap = new TreeMap<>();
+        defaultDataMap.forEach((key, value) -> {
+            if (stream(crawlTimeFields).get(stream -> stream.noneMatch(key::equals))) {
+                dataMap.put(key, value instanceof final Object[] values ? Arrays.toString(values) : String.valueOf(value));
+            }
+        });
+        return CsvDeltaState.getRowHash(List.of(new TreeMap<>(scriptMap).toString(), dataMap.toString()));
+    }
+
+    /**
+     * Gets the files that are changed since the last crawl.
+     *
+     * @param paramMap the data store parameters
+     * @param manifest the manifest of the last crawls
+     * @param csvFileList the CSV files
+     * @return the changed files
+     */
+    protected List<File> getChangedFiles(final DataStoreParams paramMap, final CsvFileManifest manifest, final List<File> csvFileList) {
+        final boolean checksum = isFingerprintChecksum(paramMap);
+        final List<File> fileList = new ArrayList<>();
+        for (final File csvFile : csvFileList) {
+            try {
+                if (manifest.isUnchanged(csvFile, CsvFileManifest.Fingerprint.of(csvFile, checksum))) {
+                    logger.debug("Skipped unchanged {}", csvFile.getAbsolutePath());
+                    continue;
+                }
+            } catch (final IOException e) {
+                logger.warn("Failed to read {}.", csvFile.getAbsolutePath(), e);
+            }
+            fileList.add(csvFile);
+        }
+        logger.info("Skipped {} unchanged files of {} files.", csvFileList.size() - fileList.size(), csvFileList.size());
+        return fileList;
+    }
+
+    /**
+     * Checks if only the records appended to CSV files since the last crawl are read.
+     * Following needs delete_old_docs=false because the records read before are not indexed again.
+     *
+     * @param paramMap the data store parameters
+     * @return true if the files are followed (defaults to false)
+     */
+    protected boolean isFollow(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(FOLLOW_PARAM)) && isOldDocsKept(paramMap);
+    }
+
+    /**
+     * Gets the interval between reads of a continuous follow crawl, which reads appended records until the crawl is stopped.
+     *
+     * @param paramMap the data store parameters
+     * @return the follow interval in milliseconds, or 0 if the crawl reads the files once (defaults to 0)
+     */
+    protected long getFollowInterval(final DataStoreParams paramMap) {
+        if (!isFollow(paramMap)) {
+            return 0L;
+        }
+        final String value = paramMap.getAsString(FOLLOW_INTERVAL_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0L);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", FOLLOW_INTERVAL_PARAM, e);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Loads the follow state of a CSV file.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @return the follow state, or null if the files are not followed
+     */
+    protected CsvFollowState loadFollowState(final DataStoreParams paramMap, final File csvFile) {
+        if (!isFollow(paramMap)) {
+            return null;
+        }
+        return CsvFollowState.load(getStateFile(paramMap, FOLLOW_DIR_PARAM, csvFile, FOLLOW_SUFFIX), csvFile);
+    }
+
+    /**
+     * Creates the rate limiter of a crawl from max_docs_per_second, max_bytes_per_second and adaptive_throttle.
+     *
+     * @param paramMap the data store parameters
+     * @return the rate limiter, or null if the crawl is not throttled
+     */
+    protected CsvRateLimiter createRateLimiter(final DataStoreParams paramMap) {
+        final double docsPerSecond = getRate(paramMap, MAX_DOCS_PER_SECOND_PARAM);
+        final double bytesPerSecond = getRate(paramMap, MAX_BYTES_PER_SECOND_PARAM);
+        if (docsPerSecond <= 0 && bytesPerSecond <= 0) {
+            return null;
+        }
+        return new CsvRateLimiter(docsPerSecond, bytesPerSecond, Boolean.parseBoolean(paramMap.getAsString(ADAPTIVE_THROTTLE_PARAM)));
+    }
+
+    private double getRate(final DataStoreParams paramMap, final String name) {
+        final String value = paramMap.getAsString(name);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Double.parseDouble(value.trim()), 0.0);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", name, e);
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Registers the rate limiter of a crawl, which is shared by all files of the crawl.
+     *
+     * @param paramMap the data store parameters
+     * @return true if a rate limiter was registered, which is removed by {@link #closeRateLimiter(DataStoreParams)}
+     */
+    protected boolean openRateLimiter(final DataStoreParams paramMap) {
+        if (rateLimiterMap.containsKey(paramMap)) {
+            return false;
+        }
+        final CsvRateLimiter rateLimiter = createRateLimiter(paramMap);
+        if (rateLimiter == null) {
+            return false;
+        }
+        rateLimiterMap.put(paramMap, rateLimiter);
+        return true;
+    }
+
+    /**
+     * Removes the rate limiter of a crawl.
+     *
+     * @param paramMap the data store parameters
+     */
+    protected void closeRateLimiter(final DataStoreParams paramMap) {
+        rateLimiterMap.remove(paramMap);
+    }
+
+    /**
+     * Gets the interval between the progress reports of the files that are being read.
+     *
+     * @param paramMap the data store parameters
+     * @return the interval in milliseconds, or 0 if the progress is not reported (defaults to progressInterval)
+     */
+    protected long getProgressInterval(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(PROGRESS_INTERVAL_PARAM);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0L);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", PROGRESS_INTERVAL_PARAM, e);
+            }
+        }
+        return progressInterval;
+    }
+
+    /**
+     * Registers the metrics of a crawl, which are shared by all files of the crawl and exposed as an MBean while the crawl runs.
+     *
+     * @param dataConfig the data configuration
+     * @param paramMap the data store parameters
+     * @return true if metrics were registered, which are removed by {@link #closeMetrics(DataStoreParams)}
+     */
+    protected boolean openMetrics(final DataConfig dataConfig, final DataStoreParams paramMap) {
+        if (metricsMap.containsKey(paramMap)) {
+            return false;
+        }
+        String name = dataConfig.getName();
+        if (StringUtil.isBlank(name)) {
+            name = StringUtil.isNotBlank(dataConfig.getId()) ? dataConfig.getId() : getName();
+        }
+        final CsvCrawlMetrics metrics = new CsvCrawlMetrics(name);
+        metrics.register();
+        metrics.startProgressReport(getProgressInterval(paramMap));
+        metricsMap.put(paramMap, metrics);
+        return true;
+    }
+
+    /**
+     * Removes the metrics of a crawl and logs their summary.
+     *
+     * @param paramMap the data store parameters
+     */
+    protected void closeMetrics(final DataStoreParams paramMap) {
+        final CsvCrawlMetrics metrics = metricsMap.remove(paramMap);
+        if (metrics != null) {
+            metrics.stopProgressReport();
+            metrics.unregister();
+            if (metrics.getCompletedFiles() > 0) {
+                logger.info("Crawled {} files of {}: {} rows, {} bytes in {} ms, {}", metrics.getCompletedFiles(), metrics.getName(),
+                        metrics.getRows(), metrics.getBytes(), metrics.getElapsedMillis(), String.join(", ", metrics.getStageSummaries()));
+            }
+        }
+    }
+
+    /**
+     * Starts the metrics of the file of a context.
+     *
+     * @param context the context of the CSV file
+     * @param totalBytes the number of bytes to read, or -1 if it is unknown
+     */
+    protected void openFileMetrics(final CsvFileContext context, final long totalBytes) {
+        final CsvCrawlMetrics metrics = metricsMap.get(context.getParamMap());
+        if (metrics != null) {
+            context.setMetrics(metrics.openFile(context.getCsvFile().getAbsolutePath(), totalBytes));
+        }
+    }
+
+    /**
+     * Counts the bytes read by a reader without indexing records, such as the header, toward the progress of the file.
+     *
+     * @param context the context of the CSV file
+     * @param csvReader the CSV record reader
+     * @param bytesRead the byte counter of the reader before the bytes were read
+     */
+    protected void skipFileBytes(final CsvFileContext context, final CsvRecordReader csvReader, final long bytesRead) {
+        final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+        if (metrics != null && bytesRead >= 0) {
+            metrics.skipBytes(csvReader.getBytesRead() - bytesRead);
+        }
+    }
+
+    /**
+     * Finishes the metrics of the file of a context and logs their summary.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void finishFileMetrics(final CsvFileContext context) {
+        final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+        if (metrics != null) {
+            metrics.finish();
+            logger.info("Finished {}, {}", metrics, String.join(", ", metrics.getStageSummaries()));
+        }
+    }
+
+    /**
+     * Gets the limits of the records, which bound the memory of a record whatever the file contains.
+     *
+     * @param paramMap the data store parameters
+     * @return the limits of max_record_bytes, max_field_bytes and max_columns
+     */
+    protected CsvRecordLimits getRecordLimits(final DataStoreParams paramMap) {
+        return new CsvRecordLimits(getLimit(paramMap, MAX_RECORD_BYTES_PARAM, maxRecordBytes),
+                getLimit(paramMap, MAX_FIELD_BYTES_PARAM, maxFieldBytes), getLimit(paramMap, MAX_COLUMNS_PARAM, maxColumns));
+    }
+
+    private int getLimit(final DataStoreParams paramMap, final String name, final int defaultValue) {
+        final String value = paramMap.getAsString(name);
+        if (StringUtil.isNotBlank(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 0);
+            } catch (final NumberFormatException e) {
+                logger.warn("Invalid {}.", name, e);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets the name of the parser engine that reads CSV files.
+     *
+     * @param paramMap the data store parameters
+     * @return the parser engine name (defaults to orangesignal)
+     */
+    protected String getParserEngineName(final DataStoreParams paramMap) {
+        final String value = paramMap.getAsString(PARSER_ENGINE_PARAM);
+        if (StringUtil.isBlank(value)) {
+            return DEFAULT_PARSER_ENGINE;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    protected void storeData(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+        checkOldDocs(paramMap);
+        // once per crawl, not per follow pass or watched batch
+        if (!scriptMap.isEmpty()) {
+            logScriptMappings(compileScripts(getScriptType(paramMap), scriptMap));
+        }
+        final boolean throttled = openRateLimiter(paramMap);
+        final boolean measured = openMetrics(dataConfig, paramMap);
+        try {
+            storeCsvFiles(dataConfig, callback, paramMap, scriptMap, defaultDataMap);
+
+            final long followInterval = getFollowInterval(paramMap);
+            while (followInterval > 0 && alive) {
+                sleep(followInterval);
+                if (alive) {
+                    storeCsvFiles(dataConfig, callback, paramMap, scriptMap, defaultDataMap);
+                }
+            }
+        } finally {
+            if (measured) {
+                closeMetrics(paramMap);
+            }
+            if (throttled) {
+                closeRateLimiter(paramMap);
+            }
+        }
+    }
+
+    /**
+     * Reads the CSV files once and indexes their records.
+     * The files of directories are processed in batches while the directories are walked.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     */
+    protected void storeCsvFiles(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+        final CsvFileManifest manifest = openManifest(dataConfig, paramMap, scriptMap, defaultDataMap);
+        try {
+            final int numOfFiles = walkCsvFiles(paramMap, csvFileList -> {
+                processCsvFileList(dataConfig, callback, paramMap, scriptMap, defaultDataMap, manifest, csvFileList);
+                return alive;
+            });
+            if (numOfFiles == 0) {
+                logger.warn("No CSV file.");
+            }
+        } finally {
+            closeManifest(paramMap, manifest);
+        }
+    }
+
+    /**
+     * Indexes the records of the given CSV files.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @param csvFileList the CSV files
+     */
+    protected void storeCsvFiles(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final List<File> csvFileList) {
+        final CsvFileManifest manifest = openManifest(dataConfig, paramMap, scriptMap, defaultDataMap);
+        try {
+            processCsvFileList(dataConfig, callback, paramMap, scriptMap, defaultDataMap, manifest, csvFileList);
+        } finally {
+            if (manifest != null) {
+                // the other files are not seen by this call
+                manifest.retainSavedFiles();
+            }
+            closeManifest(paramMap, manifest);
+        }
+    }
+
+    private CsvFileManifest openManifest(final DataConfig dataConfig, final DataStoreParams paramMap, final Map<String, String> scriptMap,
+            final Map<String, Object> defaultDataMap) {
+        final CsvFileManifest manifest = loadManifest(dataConfig, paramMap, scriptMap, defaultDataMap);
+        if (manifest != null) {
+            manifestMap.put(paramMap, manifest);
+        }
+        return manifest;
+    }
+
+    private void closeManifest(final DataStoreParams paramMap, final CsvFileManifest manifest) {
+        if (manifest != null) {
+            manifestMap.remove(paramMap);
+            try {
+                manifest.save();
+            } catch (final IOException e) {
+                logger.warn("Failed to save {}.", manifest.getManifestFile().getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Processes a list of CSV files, with file_threads threads if it is specified.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @param manifest the manifest of an incremental crawl, or null
+     * @param csvFileList the CSV files
+     */
+    protected void processCsvFileList(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvFileManifest manifest,
+            final List<File> csvFileList) {
+        final long readInterval = getReadInterval(paramMap);
+        final String csvFileEncoding = getCsvFileEncoding(paramMap);
+        final boolean hasHeaderLine = hasHeaderLine(paramMap);
+        final CsvConfig csvConfig = buildCsvConfig(paramMap);
+
+        final List<File> fileList = manifest != null ? getChangedFiles(paramMap, manifest, csvFileList) : csvFileList;
+        final int fileThreads = Math.min(getFileThreads(paramMap), fileList.size());
+        if (fileThreads > 1) {
+            processCsvFiles(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, fileList, readInterval, csvFileEncoding,
+                    hasHeaderLine, fileThreads);
+        } else {
+            for (final File csvFile : fileList) {
+                if (!alive) {
+                    break;
+                }
+                processCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, readInterval, csvFileEncoding,
+                        hasHeaderLine);
+            }
+        }
+
+        if (alive) {
+            // the completed files are read again by the next crawl, and the aborted files resume from their checkpoints
+            for (final File csvFile : csvFileList) {
+                final CsvCheckpoint checkpoint = loadCheckpoint(paramMap, csvFile);
+                if (checkpoint != null && checkpoint.isCompleted()) {
+                    checkpoint.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes CSV files concurrently with a bounded thread pool.
+     * Larger files are scheduled first so that a large file does not run alone at the end.
+     * If a file fails, files that have not started yet are cancelled and the failure is rethrown.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @param csvConfig the CSV configuration
+     * @param csvFileList the CSV files to process
+     * @param readInterval the read interval
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the files have a header line
+     * @param fileThreads the number of threads
+     */
+    protected void processCsvFiles(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvConfig csvConfig,
+            final List<File> csvFileList, final long readInterval, final String csvFileEncoding, final boolean hasHeaderLine,
+            final int fileThreads) {
+        final Map<File, Long> fileSizeMap = new HashMap<>();
+        for (final File csvFile : csvFileList) {
+            fileSizeMap.put(csvFile, csvFile.length());
+        }
+        final List<File> fileList = new ArrayList<>(csvFileList);
+        fileList.sort((f1, f2) -> Long.compare(fileSizeMap.get(f2), fileSizeMap.get(f1)));
+
+        logger.info("Processing {} files with {} threads.", fileList.size(), fileThreads);
+        final ExecutorService executor = Executors.newFixedThreadPool(fileThreads);
+        try {
+            final List<Future<?>> futureList = new ArrayList<>(fileList.size());
+            for (final File csvFile : fileList) {
+                futureList.add(executor.submit(() -> {
+                    if (alive) {
+                        processCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, readInterval,
+                                csvFileEncoding, hasHeaderLine);
+                    }
+                }));
+            }
+            awaitFutures(futureList);
+        } finally {
+            shutdownExecutor(executor);
+        }
+    }
+
+    /**
+     * Processes a single CSV file and indexes its data.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @param csvConfig the CSV configuration
+     * @param csvFile the CSV file to process
+     * @param readInterval the read interval
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the file has a header line
+     */
+    protected void processCsv(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvConfig csvConfig, final File csvFile,
+            final long readInterval, final String csvFileEncoding, final boolean hasHeaderLine) {
+        logger.info("Loading {}", csvFile.getAbsolutePath());
+        final CsvDecompressor decompressor = getDecompressor(csvFile);
+        if (decompressor != null) {
+            processCompressedCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, readInterval,
+                    csvFileEncoding, hasHeaderLine, decompressor);
+            return;
+        }
+        final Map<String, CsvScript> compiledScriptMap = compileScripts(getScriptType(paramMap), scriptMap);
+        final CsvFileContext context = new CsvFileContext(dataConfig, callback, paramMap, compiledScriptMap, defaultDataMap, csvFile,
+                getRowStatsHelper(paramMap, csvFile), readInterval);
+        context.setRateLimiter(rateLimiterMap.get(paramMap));
+        final CsvCheckpoint checkpoint = loadCheckpoint(paramMap, csvFile);
+        if (checkpoint != null) {
+            if (checkpoint.isCompleted()) {
+                logger.info("Skipped {}: it was indexed before the crawl was interrupted.", csvFile.getAbsolutePath());
+                updateManifest(paramMap, csvFile);
+                return;
+            }
+            context.setCheckpoint(checkpoint);
+        }
+
+        final CsvFollowState followState = loadFollowState(paramMap, csvFile);
+        final CsvDeltaState deltaState = openDeltaState(paramMap, scriptMap, csvFile);
+        context.setDeltaState(deltaState);
+        openFileMetrics(context, csvFile.length());
+        try {
+            final int splitThreads = getSplitThreads(paramMap);
+            final long splitSize = getSplitSize(paramMap);
+            if (followState != null) {
+                try {
+                    processAppendedRecords(context, followState, csvConfig, csvFileEncoding, hasHeaderLine);
+                } catch (final Exception e) {
+                    throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+                }
+            } else if (splitThreads > 1 && csvFile.length() > splitSize && CsvFileSplitter.isSupported(csvFileEncoding, csvConfig)) {
+                processCsvChunks(context, csvConfig, csvFileEncoding, hasHeaderLine, splitThreads, splitSize);
+            } else {
+                if (splitThreads > 1 && csvFile.length() > splitSize) {
+                    logger.info("{} is read by a single thread: {} cannot be split.", csvFile.getAbsolutePath(), csvFileEncoding);
+                }
+                try {
+                    processRange(context, csvConfig, csvFileEncoding, hasHeaderLine, 0L, Long.MAX_VALUE, 0L);
+                } catch (final Exception e) {
+                    throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+                }
+            }
+
+            if (alive && !context.isAborted()) {
+                if (deltaState != null) {
+                    finishDeltaState(context);
+                }
+                if (checkpoint != null) {
+                    checkpoint.complete();
+                    saveCheckpoint(context);
+                }
+                if (followState != null) {
+                    saveFollowState(context, followState);
+                }
+                updateManifest(paramMap, csvFile);
+            } else if (context.isAborted()) {
+                abortCsvFile(context);
+            }
+        } finally {
+            finishRowStats(context);
+            finishFileMetrics(context);
+            CloseableUtil.closeQuietly(deltaState);
+        }
+    }
+
+    /**
+     * Called when the crawl of a CSV file was aborted by a failure of its records.
+     * The checkpoint of the file is kept, so that the next crawl resumes the file.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void abortCsvFile(final CsvFileContext context) {
+        logger.warn("Aborted {}: the file is crawled again by the next crawl.", context.getCsvFile().getAbsolutePath());
+    }
+
+    /**
+     * Processes a compressed CSV file by streaming its decompressed content, or the CSV entries of an archive.
+     * The entries are read by the default parser engine without splitting, checkpoints or follow mode,
+     * and each entry of an archive is a CSV file named archive!/entry, which has its own crawler stats keys and header.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     * @param csvConfig the CSV configuration
+     * @param csvFile the compressed file
+     * @param readInterval the read interval
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the entries have a header line
+     * @param decompressor the decompressor of the file
+     */
+    protected void processCompressedCsv(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvConfig csvConfig, final File csvFile,
+            final long readInterval, final String csvFileEncoding, final boolean hasHeaderLine, final CsvDecompressor decompressor) {
+        final Map<String, CsvScript> compiledScriptMap = compileScripts(getScriptType(paramMap), scriptMap);
+        final CsvFileContext fileContext = new CsvFileContext(dataConfig, callback, paramMap, compiledScriptMap, defaultDataMap, csvFile,
+                getRowStatsHelper(paramMap, csvFile), readInterval);
+        fileContext.setRateLimiter(rateLimiterMap.get(paramMap));
+        final CsvDeltaState deltaState = openDeltaState(paramMap, scriptMap, csvFile);
+        fileContext.setDeltaState(deltaState);
+        try {
+            decompressor.decompress(csvFile, (entryName, in) -> {
+                if (!alive || fileContext.isAborted()) {
+                    return;
+                }
+                final CsvFileContext context;
+                if (entryName == null) {
+                    context = fileContext;
+                } else if (hasCsvFileSuffix(entryName)) {
+                    logger.info("Loading {}!/{}", csvFile.getAbsolutePath(), entryName);
+                    final File entryFile = new File(csvFile.getAbsolutePath() + "!/" + entryName);
+                    context = new CsvFileContext(dataConfig, callback, paramMap, compiledScriptMap, defaultDataMap, entryFile,
+                            getRowStatsHelper(paramMap, entryFile), readInterval);
+                    context.setRateLimiter(fileContext.getRateLimiter());
+                    context.setDeltaState(deltaState);
+                } else {
+                    logger.debug("Skipped {}!/{}", csvFile.getAbsolutePath(), entryName);
+                    return;
+                }
+                final CsvCountingInputStream countingStream = new CsvCountingInputStream(in);
+                final BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(countingStream, csvFileEncoding), CsvDecompressor.BUFFER_SIZE);
+                final CsvRecordReader csvReader =
+                        new OrangeSignalRecordReader(reader, csvConfig, countingStream, getRecordLimits(paramMap));
+                if (hasHeaderLine) {
+                    context.setHeaderList(csvReader.readValues());
+                }
+                // the decompressed size is unknown
+                openFileMetrics(context, -1L);
+                try {
+                    processRecords(context, csvReader, 0L, Long.MAX_VALUE, 0L);
+                } finally {
+                    finishRowStats(context);
+                    finishFileMetrics(context);
+                }
+                if (context.isAborted()) {
+                    fileContext.abort();
+                }
+            });
+
+            if (alive && !fileContext.isAborted()) {
+                if (deltaState != null) {
+                    finishDeltaState(fileContext);
+                }
+                updateManifest(paramMap, csvFile);
+            } else if (fileContext.isAborted()) {
+                abortCsvFile(fileContext);
+            }
+        } catch (final IOException e) {
+            throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+        } finally {
+            CloseableUtil.closeQuietly(deltaState);
+        }
+    }
+
+    /**
+     * Processes the complete records appended to a CSV file since the last crawl.
+     * A record at the end of the file without a line break may still be written, so it is read by the next crawl.
+     * The appended records are read by a single reader, and the follow state advances after them.
+     *
+     * @param context the context of the CSV file
+     * @param followState the follow state of the file
+     * @param csvConfig the CSV configuration
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the file has a header line
+     * @throws IOException if the CSV file cannot be read
+     */
+    protected void processAppendedRecords(final CsvFileContext context, final CsvFollowState followState, final CsvConfig csvConfig,
+            final String csvFileEncoding, final boolean hasHeaderLine) throws IOException {
+        final File csvFile = context.getCsvFile();
+        if (!CsvFileSplitter.isSupported(csvFileEncoding, csvConfig)) {
+            logger.warn("{} is read from the start: {} cannot be followed.", csvFile.getAbsolutePath(), csvFileEncoding);
+            processRange(context, csvConfig, csvFileEncoding, hasHeaderLine, 0L, Long.MAX_VALUE, 0L);
+            return;
+        }
+        long start = followState.getPosition();
+        long baseLineNumber = followState.getLineNumber();
+        if (start > 0 && hasHeaderLine && followState.getHeaderList() == null) {
+            logger.info("{} is read from the start: the header is not saved.", csvFile.getAbsolutePath());
+            start = 0L;
+            baseLineNumber = 0L;
+        }
+        final CsvFileSplitter.RecordEnd recordEnd = new CsvFileSplitter(csvConfig, hasHeaderLine).findRecordEnd(csvFile, start);
+        if (recordEnd.position() <= start) {
+            logger.info("No appended records in {}", csvFile.getAbsolutePath());
+            return;
+        }
+        if (start > 0) {
+            logger.info("Following {} after line {}.", csvFile.getAbsolutePath(), baseLineNumber);
+            if (hasHeaderLine) {
+                context.setHeaderList(followState.getHeaderList());
+            }
+            if (context.getDeltaState() != null) {
+                // rows before the appended records are not read again
+                context.getDeltaState().setPartial();
+            }
+        }
+        final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+        if (metrics != null) {
+            // the appended records only
+            metrics.setTotalBytes(recordEnd.position() - start);
+        }
+        processRange(context, csvConfig, csvFileEncoding, hasHeaderLine, start, recordEnd.position(), baseLineNumber);
+        followState.advance(recordEnd.position(), baseLineNumber + recordEnd.lineCount(), context.getHeaderList());
+    }
+
+    /**
+     * Saves the follow state of a CSV file after the indexed records are committed.
+     *
+     * @param context the context of the CSV file
+     * @param followState the follow state of the file
+     */
+    protected void saveFollowState(final CsvFileContext context, final CsvFollowState followState) {
+        try {
+            commitCheckpoint(context);
+            followState.save();
+        } catch (final IOException e) {
+            logger.warn("Failed to save {}.", followState.getStateFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Saves the row hashes of a completed CSV file, and deletes the documents of rows that disappeared.
+     *
+     * @param context the context of the CSV file
+     */
+    protected void finishDeltaState(final CsvFileContext context) {
+        final File csvFile = context.getCsvFile();
+        try {
+            final long count = context.getDeltaState().finish(urlList -> deleteDocuments(context, urlList), deltaDeleteBatchSize);
+            logger.info("Deleted documents of {} rows that disappeared from {}.", count, csvFile.getAbsolutePath());
+        } catch (final IOException e) {
+            throw new DataStoreException("Failed to save row hashes of " + csvFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Records an indexed file in the manifest of the crawl, if the crawl is incremental.
+     *
+     * @param paramMap the data store parameters of the crawl
+     * @param csvFile the indexed CSV file
+     */
+    protected void updateManifest(final DataStoreParams paramMap, final File csvFile) {
+        final CsvFileManifest manifest = manifestMap.get(paramMap);
+        if (manifest != null) {
+            manifest.update(csvFile);
+        }
+    }
+
+    /**
+     * Compiles the script mappings.
+     * Each script evaluates like {@link #convertValue(String, String, Map)}, but the script text is compiled once
+     * by the compiler of the script type, and kept in the script cache for later files and crawls.
+     * A script type without a compiler, or a script that fails to compile, is evaluated by its script engine for each record.
+     *
+     * @param scriptType the script type
+     * @param scriptMap the script mappings
+     * @return the compiled scripts by field name
+     */
+    protected Map<String, CsvScript> compileScripts(final String scriptType, final Map<String, String> scriptMap) {
+        ScriptEngine scriptEngine = null;
+        final CsvScriptCompiler scriptCompiler = scriptType != null ? scriptCompilerMap.get(scriptType.toLowerCase(Locale.ROOT)) : null;
+        if (scriptCompiler != null && !scriptMap.isEmpty()) {
+            try {
+                scriptEngine = ComponentUtil.getScriptEngineFactory().getScriptEngine(scriptType);
+            } catch (final Exception e) {
+                logger.debug("Script engine for {} is not available.", scriptType, e);
+            }
+        }
+        final Map<String, CsvScript> compiledMap = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> entry : scriptMap.entrySet()) {
+            compiledMap.put(entry.getKey(), compileScript(scriptType, entry.getValue(), scriptEngine, scriptCompiler));
+        }
+        return compiledMap;
+    }
+
+    /**
+     * Logs which script mappings are copied from the records and which are evaluated by the script engine.
+     *
+     * @param compiledScriptMap the compiled scripts by field name
+     */
+    protected void logScriptMappings(final Map<String, CsvScript> compiledScriptMap) {
+        final List<String> copiedList = new ArrayList<>();
+        final List<String> evaluatedList = new ArrayList<>();
+        compiledScriptMap.forEach((name, script) -> (script instanceof ColumnReferenceScript ? copiedList : evaluatedList).add(name));
+        if (!copiedList.isEmpty()) {
+            logger.info("Script mappings copied from csv values: {}", copiedList);
+        }
+        if (!evaluatedList.isEmpty()) {
+            logger.info("Script mappings evaluated by the script engine: {}", evaluatedList);
+        }
+    }
+
+    /**
+     * Compiles a script mapping.
+     *
+     * @param scriptType the script type
+     * @param template the script text
+     * @param scriptEngine the script engine of the script type, or null if it is not available
+     * @param scriptCompiler the script compiler of the script type, or null
+     * @return the compiled script
+     */
+    protected CsvScript compileScript(final String scriptType, final String template, final ScriptEngine scriptEngine,
+            final CsvScriptCompiler scriptCompiler) {
+        if (StringUtil.isEmpty(template)) {
+            return paramMap -> StringUtil.EMPTY;
+        }
+        CsvScript script = null;
+        if (scriptEngine != null && scriptCompiler.isSupported(scriptEngine)) {
+            final String key = scriptType.toLowerCase(Locale.ROOT) + '\n' + template;
+            synchronized (scriptCache) {
+                final CachedScript cachedScript = scriptCache.get(key);
+                if (cachedScript != null && cachedScript.scriptEngine() == scriptEngine) {
+                    script = cachedScript.script();
+                }
+            }
+            if (script == null) {
+                try {
+                    script = scriptCompiler.compile(template);
+                    if (scriptCacheSize > 0) {
+                        synchronized (scriptCache) {
+                            scriptCache.put(key, new CachedScript(scriptEngine, script));
+                            final Iterator<String> iterator = scriptCache.keySet().iterator();
+                            while (scriptCache.size() > scriptCacheSize && iterator.hasNext()) {
+                                iterator.next();
+                                iterator.remove();
+                            }
+                        }
+                    }
+                } catch (final Exception e) {
+                    logger.debug("Failed to compile {}: {}", scriptType, template, e);
+                }
+            }
+        }
+        if (script instanceof ColumnReferenceScript) {
+            return script;
+        }
+        final CsvScript compiledScript = script != null ? script : paramMap -> convertValue(scriptType, template, paramMap);
+        return paramMap -> paramMap.containsKey(template) ? paramMap.get(template) : compiledScript.evaluate(paramMap);
+    }
 
-                    String errorName;
-                    final Throwable cause = target.getCause();
-                    if (cause != null) {
-                        errorName = cause.getClass().getCanonicalName();
-                    } else {
-                        errorName = target.getClass().getCanonicalName();
-                    }
+    /**
+     * Opens a record reader for a byte range of a CSV file with the parser engine of parser_engine, which checks the records
+     * against the limits of {@link #getRecordLimits(DataStoreParams)}.
+     * An unknown engine, or an engine that does not support the encoding, falls back to the default engine.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @param csvFileEncoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @return the record reader
+     * @throws IOException if the file cannot be opened
+     */
+    protected CsvRecordReader newCsvRecordReader(final DataStoreParams paramMap, final File csvFile, final String csvFileEncoding,
+            final CsvConfig csvConfig, final long start, final long end) throws IOException {
+        final String name = getParserEngineName(paramMap);
+        CsvParserEngine parserEngine = parserEngineMap.get(name);
+        if (parserEngine == null) {
+            logger.warn("Unknown {}: {}", PARSER_ENGINE_PARAM, name);
+            parserEngine = parserEngineMap.get(DEFAULT_PARSER_ENGINE);
+        } else if (!parserEngine.isSupported(csvFileEncoding, csvConfig)) {
+            logger.debug("{} is not supported by {} engine.", csvFileEncoding, name);
+            parserEngine = parserEngineMap.get(DEFAULT_PARSER_ENGINE);
+        }
+        return parserEngine.open(csvFile, csvFileEncoding, csvConfig, start, end, getRecordLimits(paramMap));
+    }
+
+    /**
+     * Processes a large CSV file by splitting it into byte ranges that are parsed concurrently.
+     * Each range starts at a record boundary, and its rows keep the line numbers of the whole file.
+     *
+     * @param context the context of the CSV file
+     * @param csvConfig the CSV configuration
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the file has a header line
+     * @param splitThreads the number of threads
+     * @param splitSize the size of a chunk in bytes
+     */
+    protected void processCsvChunks(final CsvFileContext context, final CsvConfig csvConfig, final String csvFileEncoding,
+            final boolean hasHeaderLine, final int splitThreads, final long splitSize) {
+        final File csvFile = context.getCsvFile();
+        if (hasHeaderLine && context.getHeaderList() == null) {
+            CsvRecordReader csvReader = null;
+            try {
+                csvReader = newCsvRecordReader(context.getParamMap(), csvFile, csvFileEncoding, csvConfig, 0L, Long.MAX_VALUE);
+                context.setHeaderList(csvReader.readValues());
+            } catch (final Exception e) {
+                throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+            } finally {
+                CloseableUtil.closeQuietly(csvReader);
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(splitThreads);
+        try {
+            final List<Future<?>> futureList = new ArrayList<>();
+            final int numOfChunks = new CsvFileSplitter(csvConfig, hasHeaderLine).split(csvFile, splitSize, chunk -> {
+                if (!alive || context.isAborted()) {
+                    return false;
+                }
+                futureList.add(executor.submit(() -> processCsvChunk(context, csvConfig, csvFileEncoding, hasHeaderLine, chunk)));
+                return true;
+            });
+            logger.info("Split {} into {} chunks with {} threads.", csvFile.getAbsolutePath(), numOfChunks, splitThreads);
+            awaitFutures(futureList);
+        } catch (final IOException e) {
+            context.abort();
+            throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+        } finally {
+            shutdownExecutor(executor);
+        }
+    }
+
+    /**
+     * Processes a chunk of a CSV file.
+     *
+     * @param context the context of the CSV file
+     * @param csvConfig the CSV configuration
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the file has a header line
+     * @param chunk the byte range to process
+     */
+    protected void processCsvChunk(final CsvFileContext context, final CsvConfig csvConfig, final String csvFileEncoding,
+            final boolean hasHeaderLine, final CsvFileSplitter.Chunk chunk) {
+        try {
+            processRange(context, csvConfig, csvFileEncoding, hasHeaderLine, chunk.start(), chunk.end(), chunk.lineNumber());
+        } catch (final Exception e) {
+            context.abort();
+            throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+        }
+    }
+
+    /**
+     * Processes a byte range of a CSV file, which starts at a record boundary.
+     * If the checkpoint has progress of the range, the range resumes after its last indexed record:
+     * the reader seeks to the saved file position, or skips the indexed records if the parser engine does not know positions.
+     *
+     * @param context the context of the CSV file
+     * @param csvConfig the CSV configuration
+     * @param csvFileEncoding the file encoding
+     * @param hasHeaderLine whether the file has a header line
+     * @param start the first byte of the range
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @param baseLineNumber the number of lines before the range
+     * @throws IOException if the CSV file cannot be read
+     */
+    protected void processRange(final CsvFileContext context, final CsvConfig csvConfig, final String csvFileEncoding,
+            final boolean hasHeaderLine, final long start, final long end, final long baseLineNumber) throws IOException {
+        final CsvCheckpoint checkpoint = context.getCheckpoint();
+        final CsvCheckpoint.Range range = checkpoint != null ? checkpoint.getRange(start, end) : null;
+        if (range != null && context.getDeltaState() != null) {
+            // rows indexed before the interruption are not read again
+            context.getDeltaState().setPartial();
+        }
+        if (range != null && range.completed()) {
+            if (context.getMetrics() != null && end != Long.MAX_VALUE) {
+                context.getMetrics().skipBytes(end - start);
+            }
+            return;
+        }
+        final DataStoreParams paramMap = context.getParamMap();
+        final File csvFile = context.getCsvFile();
+        final boolean firstRange = start == 0L;
+        // lines to skip are before the first range only
+        final CsvConfig rangeConfig;
+        if (firstRange) {
+            rangeConfig = csvConfig;
+        } else {
+            rangeConfig = csvConfig.clone();
+            rangeConfig.setSkipLines(0);
+        }
+
+        CsvRecordReader csvReader = null;
+        try {
+            if (range != null && range.position() >= 0 && (!firstRange || !hasHeaderLine || checkpoint.getHeaderList() != null)) {
+                if (firstRange && hasHeaderLine && context.getHeaderList() == null) {
+                    context.setHeaderList(checkpoint.getHeaderList());
+                }
+                final CsvConfig resumeConfig = csvConfig.clone();
+                resumeConfig.setSkipLines(0);
+                csvReader = newCsvRecordReader(paramMap, csvFile, csvFileEncoding, resumeConfig, range.position(), end);
+                logger.info("Resuming {} after line {}.", csvFile.getAbsolutePath(), range.lineNumber());
+                if (context.getMetrics() != null) {
+                    context.getMetrics().skipBytes(range.position() - start);
+                }
+                processRecords(context, csvReader, start, end, range.lineNumber());
+                return;
+            }
+
+            csvReader = newCsvRecordReader(paramMap, csvFile, csvFileEncoding, rangeConfig, start, end);
+            final long bytesRead = csvReader.getBytesRead();
+            if (firstRange && hasHeaderLine) {
+                final List<String> headerList = csvReader.readValues();
+                if (context.getHeaderList() == null) {
+                    context.setHeaderList(headerList);
+                }
+            }
+            if (range != null) {
+                logger.info("Resuming {} after line {}.", csvFile.getAbsolutePath(), range.lineNumber());
+                while (baseLineNumber + csvReader.getLineNumber() < range.lineNumber() && csvReader.readValues() != null) {
+                    // skip the indexed records
+                }
+            }
+            skipFileBytes(context, csvReader, bytesRead);
+            processRecords(context, csvReader, start, end, baseLineNumber);
+        } finally {
+            CloseableUtil.closeQuietly(csvReader);
+        }
+    }
+
+    /**
+     * Reads the records of a CSV reader and indexes them.
+     * If the file has a checkpoint, the progress of the range is saved every checkpoint_interval records and when the reader stops.
+     * If the crawl is throttled, the tokens of the records are acquired in batches from the rate limiter.
+     * If transform_threads is specified or virtual_threads is true, the records are processed by {@link #processRecordsInPipeline}.
+     *
+     * @param context the context of the CSV file
+     * @param csvReader the CSV record reader
+     * @param start the first byte of the range of the reader
+     * @param end the end of the range of the reader (exclusive)
+     * @param baseLineNumber the number of lines before the first line of the reader
+     * @throws IOException if the CSV file cannot be read
+     */
+    protected void processRecords(final CsvFileContext context, final CsvRecordReader csvReader, final long start, final long end,
+            final long baseLineNumber) throws IOException {
+        final int transformThreads = getTransformThreads(context.getParamMap());
+        if (transformThreads > 0 || isVirtualThreads(context.getParamMap())) {
+            processRecordsInPipeline(context, csvReader, start, end, baseLineNumber, transformThreads);
+            return;
+        }
+        // row context of this reader: paramMap may be shared by other readers processed concurrently
+        final DataStoreParams rowParamMap = context.newRowParamMap();
+        final long readInterval = context.getReadInterval();
+        final CsvCheckpoint checkpoint = context.getCheckpoint();
+        final long checkpointInterval = checkpoint != null ? getCheckpointInterval(context.getParamMap()) : 0L;
+        final CsvRateLimiter rateLimiter = context.getRateLimiter();
+        final CsvRateLimiter.Batch batch = rateLimiter != null ? rateLimiter.newBatch(csvReader.getPosition()) : null;
+        final DocumentBatch documentBatch = newDocumentBatch(context, rowParamMap);
+        long lineNumber = baseLineNumber + csvReader.getLineNumber();
+        long count = 0;
+        List<String> list = null;
+        while (!context.isAborted() && alive && (list = readRecord(context, csvReader, baseLineNumber)) != null) {
+            lineNumber = baseLineNumber + csvReader.getLineNumber();
+            final boolean stored;
+            if (documentBatch != null) {
+                final CsvDocument document = convertRecord(context, list, lineNumber);
+                if (document != null) {
+                    documentBatch.add(document);
+                }
+                stored = document != null;
+            } else {
+                stored = processRecord(context, rowParamMap, list, lineNumber);
+            }
+            if (readInterval > 0) {
+                sleep(readInterval);
+            }
+            if (batch != null) {
+                batch.add(stored, list, csvReader.getPosition());
+            }
+            if (checkpointInterval > 0 && ++count % checkpointInterval == 0) {
+                if (documentBatch != null) {
+                    documentBatch.flush();
+                }
+                checkpoint.setRange(new CsvCheckpoint.Range(start, end, csvReader.getPosition(), lineNumber, false));
+                saveCheckpoint(context);
+            }
+        }
+        if (documentBatch != null) {
+            documentBatch.flush();
+        }
+        if (batch != null) {
+            batch.flush(csvReader.getPosition());
+        }
+        if (checkpoint != null && !context.isAborted()) {
+            checkpoint.setRange(new CsvCheckpoint.Range(start, end, csvReader.getPosition(), lineNumber, list == null && alive));
+            saveCheckpoint(context);
+        }
+    }
+
+    /**
+     * Reads the next record of a reader, and records the read time and size to the metrics of the file.
+     * Records that exceed the record limits are stored as failure URLs and skipped.
+     *
+     * @param context the context of the CSV file
+     * @param csvReader the CSV record reader
+     * @param baseLineNumber the number of lines before the first line of the reader
+     * @return the values of the record, or null at the end of the reader
+     * @throws IOException if the CSV file cannot be read
+     */
+    protected List<String> readRecord(final CsvFileContext context, final CsvRecordReader csvReader, final long baseLineNumber)
+            throws IOException {
+        while (true) {
+            try {
+                return readValues(context, csvReader);
+            } catch (final CsvRecordLimitException e) {
+                storeRecordLimitFailure(context, baseLineNumber + e.getLineNumber(), e);
+            }
+        }
+    }
+
+    private List<String> readValues(final CsvFileContext context, final CsvRecordReader csvReader) throws IOException {
+        final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+        if (metrics == null) {
+            return csvReader.readValues();
+        }
+        final long bytesRead = csvReader.getBytesRead();
+        final long readTime = System.nanoTime();
+        final List<String> list;
+        try {
+            list = csvReader.readValues();
+        } catch (final CsvRecordLimitException e) {
+            // the skipped record counts toward the progress of the file
+            skipFileBytes(context, csvReader, bytesRead);
+            throw e;
+        }
+        metrics.record(CsvCrawlMetrics.Stage.READ, System.nanoTime() - readTime);
+        if (list != null) {
+            metrics.addRow(bytesRead >= 0 ? csvReader.getBytesRead() - bytesRead : 0L);
+        }
+        return list;
+    }
+
+    /**
+     * Record of a pipeline with the file position after it, and its document once it is converted.
+     *
+     * @param values the values of the record
+     * @param lineNumber the line number of the record
+     * @param position the file position after the record, or -1
+     * @param document the document, or null if the record is not converted or is skipped
+     */
+    protected record PipelineRecord(List<String> values, long lineNumber, long position, CsvDocument document) {
+    }
 
-                    String url;
-                    if (target instanceof DataStoreCrawlingException dce) {
-                        url = dce.getUrl();
-                        if (dce.aborted()) {
-                            loop = false;
+    /**
+     * Reads the records of a CSV reader and indexes them in a pipeline.
+     * This thread reads the records, the transform workers convert them into documents, and a store thread passes the documents
+     * to the callback in the order of the records. At most pipeline_queue_size records are in flight.
+     * The read interval, the rate limiter and the checkpoints are applied by the store thread, so a checkpoint only covers
+     * the records that are stored; the records in flight when the crawl stops are discarded.
+     *
+     * @param context the context of the CSV file
+     * @param csvReader the CSV record reader
+     * @param start the first byte of the range of the reader
+     * @param end the end of the range of the reader (exclusive)
+     * @param baseLineNumber the number of lines before the first line of the reader
+     * @param transformThreads the number of threads that convert records, which is not used on virtual threads
+     * @throws IOException if the CSV file cannot be read
+     */
+    protected void processRecordsInPipeline(final CsvFileContext context, final CsvRecordReader csvReader, final long start,
+            final long end, final long baseLineNumber, final int transformThreads) throws IOException {
+        final DataStoreParams rowParamMap = context.newRowParamMap();
+        final long readInterval = context.getReadInterval();
+        final CsvCheckpoint checkpoint = context.getCheckpoint();
+        final long checkpointInterval = checkpoint != null ? getCheckpointInterval(context.getParamMap()) : 0L;
+        final CsvRateLimiter rateLimiter = context.getRateLimiter();
+        final CsvRateLimiter.Batch batch = rateLimiter != null ? rateLimiter.newBatch(csvReader.getPosition()) : null;
+        final DocumentBatch documentBatch = newDocumentBatch(context, rowParamMap);
+        // the last stored record and the number of records, updated by the store thread
+        final long[] progress = { csvReader.getPosition(), baseLineNumber + csvReader.getLineNumber(), 0L };
+        List<String> list = null;
+        final ExecutorService executor = newTransformExecutor(context.getParamMap(), transformThreads);
+        try (CsvRecordPipeline<PipelineRecord, PipelineRecord> pipeline = new CsvRecordPipeline<>(
+                "csv-store-" + context.getCsvFile().getName(), executor, getPipelineQueueSize(context.getParamMap()),
+                record -> new PipelineRecord(record.values(), record.lineNumber(), record.position(),
+                        convertRecord(context, record.values(), record.lineNumber())),
+                record -> {
+                    final CsvDocument document = record.document();
+                    if (context.isAborted() || !alive) {
+                        if (document != null) {
+                            discardDocument(context, document);
                         }
-                    } else {
-                        url = csvFile.getAbsolutePath() + ":" + csvReader.getLineNumber();
+                        return;
                     }
-                    final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
-                    failureUrlService.store(dataConfig, errorName, url, target);
-                    crawlerStatsHelper.record(statsKey, StatsAction.ACCESS_EXCEPTION);
-                } catch (final Throwable t) {
-                    logger.warn("Crawling Access Exception at : {}", dataMap, t);
-                    final String url = csvFile.getAbsolutePath() + ":" + csvReader.getLineNumber();
-                    final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
-                    failureUrlService.store(dataConfig, t.getClass().getCanonicalName(), url, t);
-                    crawlerStatsHelper.record(statsKey, StatsAction.EXCEPTION);
-                } finally {
-                    crawlerStatsHelper.done(statsKey);
+                    if (document != null) {
+                        if (documentBatch != null) {
+                            documentBatch.add(document);
+                        } else {
+                            storeDocument(context, rowParamMap, document);
+                        }
+                    }
+                    if (readInterval > 0) {
+                        sleep(readInterval);
+                    }
+                    if (batch != null) {
+                        batch.add(document != null, record.values(), record.position());
+                    }
+                    progress[0] = record.position();
+                    progress[1] = record.lineNumber();
+                    if (checkpointInterval > 0 && ++progress[2] % checkpointInterval == 0) {
+                        if (documentBatch != null) {
+                            documentBatch.flush();
+                        }
+                        checkpoint.setRange(new CsvCheckpoint.Range(start, end, record.position(), record.lineNumber(), false));
+                        saveCheckpoint(context);
+                    }
+                })) {
+            while (!context.isAborted() && alive && (list = readRecord(context, csvReader, baseLineNumber)) != null) {
+                pipeline.submit(new PipelineRecord(list, baseLineNumber + csvReader.getLineNumber(), csvReader.getPosition(), null));
+            }
+            pipeline.finish();
+            if (documentBatch != null) {
+                // the store thread has finished
+                documentBatch.flush();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataStoreException("Interrupted while processing csv records.", e);
+        } finally {
+            shutdownExecutor(executor);
+        }
+        if (batch != null) {
+            batch.flush(progress[0]);
+        }
+        if (checkpoint != null && !context.isAborted()) {
+            checkpoint.setRange(new CsvCheckpoint.Range(start, end, progress[0], progress[1], list == null && alive));
+            saveCheckpoint(context);
+        }
+    }
+
+    /**
+     * Document converted from a CSV record, which is not stored yet.
+     *
+     * @param statsKey the crawler stats key of the record, which is done when the document is stored
+     * @param dataMap the fields of the document
+     * @param lineNumber the line number of the record
+     * @param deltaKey the key of the row, or 0 if delta indexing is disabled
+     * @param rowHash the row hash, or 0 if delta indexing is disabled
+     */
+    protected record CsvDocument(StatsKeyObject statsKey, Map<String, Object> dataMap, long lineNumber, long deltaKey, long rowHash) {
+    }
+
+    /**
+     * Converts a CSV record into a document and indexes it.
+     * Failures are stored as failure URLs, and an aborted crawl aborts the context.
+     *
+     * @param context the context of the CSV file
+     * @param rowParamMap the parameters passed to the callback
+     * @param list the values of the record
+     * @param lineNumber the line number of the record
+     * @return false if the record has no data, is unchanged since the last crawl or cannot be converted
+     */
+    protected boolean processRecord(final CsvFileContext context, final DataStoreParams rowParamMap, final List<String> list,
+            final long lineNumber) {
+        final CsvDocument document = convertRecord(context, list, lineNumber);
+        if (document == null) {
+            return false;
+        }
+        storeDocument(context, rowParamMap, document);
+        return true;
+    }
+
+    /**
+     * Converts a CSV record into a document with the script mappings.
+     * Records without data and unchanged records are discarded, and failures are stored as failure URLs.
+     * The crawler stats of a converted record are done by {@link #storeDocument} or {@link #discardDocument}.
+     *
+     * @param context the context of the CSV file
+     * @param list the values of the record
+     * @param lineNumber the line number of the record
+     * @return the document, or null if the record has no data, is unchanged since the last crawl or cannot be converted
+     */
+    protected CsvDocument convertRecord(final CsvFileContext context, final List<String> list, final long lineNumber) {
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        final StatsKeyObject statsKey = new CsvStatsKeyObject(context.getCsvFile().getAbsolutePath(), lineNumber);
+        final Map<String, Object> dataMap = new HashMap<>(context.getDefaultDataMap());
+        final Map<String, Object> resultMap = context.newRowMap(list);
+        final CsvDeltaState deltaState = context.getDeltaState();
+        long deltaKey = 0L;
+        long rowHash = 0L;
+        boolean converted = false;
+        try {
+            crawlerStatsHelper.begin(statsKey);
+            boolean foundValues = false;
+            for (final String value : list) {
+                if (StringUtil.isNotBlank(value)) {
+                    foundValues = true;
+                    break;
+                }
+            }
+            if (!foundValues) {
+                logger.debug("No data in line: {}", resultMap);
+                crawlerStatsHelper.discard(statsKey);
+                return null;
+            }
+
+            if (deltaState != null) {
+                deltaKey = deltaState.getKey(context.getColumnLayout(), list);
+                rowHash = CsvDeltaState.getRowHash(list);
+                if (deltaState.isUnchanged(deltaKey, rowHash)) {
+                    logger.debug("Unchanged line: {}", lineNumber);
+                    crawlerStatsHelper.discard(statsKey);
+                    return null;
                 }
+            }
+
+            crawlerStatsHelper.record(statsKey, StatsAction.PREPARED);
 
-                if (readInterval > 0) {
-                    sleep(readInterval);
+            if (logger.isDebugEnabled()) {
+                for (final Map.Entry<String, Object> entry : resultMap.entrySet()) {
+                    logger.debug("{}={}", entry.getKey(), entry.getValue());
                 }
             }
-        } catch (final Exception e) {
-            throw new DataStoreException("Failed to crawl data when reading csv file.", e);
+
+            final Map<String, Object> crawlingContext = new HashMap<>();
+            crawlingContext.put("doc", dataMap);
+            resultMap.put("crawlingContext", crawlingContext);
+            final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+            final long convertTime = metrics != null ? System.nanoTime() : 0L;
+            for (final Map.Entry<String, CsvScript> entry : context.getScriptMap().entrySet()) {
+                final Object convertValue = entry.getValue().evaluate(resultMap);
+                if (convertValue != null) {
+                    dataMap.put(entry.getKey(), convertValue);
+                }
+            }
+            if (metrics != null) {
+                metrics.record(CsvCrawlMetrics.Stage.CONVERT, System.nanoTime() - convertTime);
+            }
+
+            crawlerStatsHelper.record(statsKey, StatsAction.EVALUATED);
+
+            if (logger.isDebugEnabled()) {
+                for (final Map.Entry<String, Object> entry : dataMap.entrySet()) {
+                    logger.debug("{}={}", entry.getKey(), entry.getValue());
+                }
+            }
+
+            if (dataMap.get("url") instanceof final String url) {
+                statsKey.setUrl(url);
+            }
+            converted = true;
+            return new CsvDocument(statsKey, dataMap, lineNumber, deltaKey, rowHash);
+        } catch (final Throwable t) {
+            storeFailure(context, statsKey, dataMap, lineNumber, t);
+            failDeltaRow(context, deltaKey, rowHash);
+            return null;
         } finally {
-            CloseableUtil.closeQuietly(csvReader);
+            if (!converted) {
+                crawlerStatsHelper.done(statsKey);
+            }
+        }
+    }
+
+    /**
+     * Passes a converted document to the callback.
+     * Failures are stored as failure URLs, and an aborted crawl aborts the context.
+     *
+     * @param context the context of the CSV file
+     * @param rowParamMap the parameters passed to the callback
+     * @param document the document
+     */
+    protected void storeDocument(final CsvFileContext context, final DataStoreParams rowParamMap, final CsvDocument document) {
+        rowParamMap.put(Constants.CRAWLER_STATS_KEY, document.statsKey());
+        sendDocument(context, rowParamMap, document);
+    }
+
+    private void sendDocument(final CsvFileContext context, final DataStoreParams rowParamMap, final CsvDocument document) {
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        final StatsKeyObject statsKey = document.statsKey();
+        final Map<String, Object> dataMap = document.dataMap();
+        try {
+            final CsvRateLimiter rateLimiter = context.getRateLimiter();
+            final CsvCrawlMetrics.FileMetrics metrics = context.getMetrics();
+            final long storeTime = rateLimiter != null || metrics != null ? System.nanoTime() : 0L;
+            context.getCallback().store(rowParamMap, dataMap);
+            if (rateLimiter != null || metrics != null) {
+                final long latency = System.nanoTime() - storeTime;
+                if (rateLimiter != null) {
+                    rateLimiter.recordLatency(latency);
+                }
+                if (metrics != null) {
+                    metrics.record(CsvCrawlMetrics.Stage.STORE, latency);
+                }
+            }
+            final CsvDeltaState deltaState = context.getDeltaState();
+            if (deltaState != null) {
+                deltaState.update(document.deltaKey(), document.rowHash(), dataMap.get("url") instanceof final String url ? url : null);
+            }
+            crawlerStatsHelper.record(statsKey, StatsAction.FINISHED);
+        } catch (final Throwable t) {
+            storeFailure(context, statsKey, dataMap, document.lineNumber(), t);
+            failDeltaRow(context, document.deltaKey(), document.rowHash());
+        } finally {
+            crawlerStatsHelper.done(statsKey);
+        }
+    }
+
+    /**
+     * Passes converted documents to the callback together, with one crawler stats entry for the batch.
+     * Failures are stored as failure URLs with the line numbers of their records, and the documents after an abort are discarded.
+     *
+     * @param context the context of the CSV file
+     * @param rowParamMap the parameters passed to the callback
+     * @param documentList the documents
+     */
+    protected void storeDocuments(final CsvFileContext context, final DataStoreParams rowParamMap, final List<CsvDocument> documentList) {
+        if (documentList.isEmpty()) {
+            return;
+        }
+        // the helper of the file records either the batch or its rows
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        final StatsKeyObject statsKey = new CsvBatchStatsKeyObject(context.getCsvFile().getAbsolutePath(), documentList.get(0).lineNumber(),
+                documentList.get(documentList.size() - 1).lineNumber());
+        rowParamMap.put(Constants.CRAWLER_STATS_KEY, statsKey);
+        crawlerStatsHelper.begin(statsKey);
+        try {
+            for (final CsvDocument document : documentList) {
+                if (context.isAborted()) {
+                    discardDocument(context, document);
+                } else {
+                    sendDocument(context, rowParamMap, document);
+                }
+            }
+            crawlerStatsHelper.record(statsKey, StatsAction.FINISHED);
+        } finally {
+            crawlerStatsHelper.done(statsKey);
+        }
+    }
+
+    /**
+     * Creates the batch of the documents of a reader.
+     *
+     * @param context the context of the CSV file
+     * @param rowParamMap the parameters passed to the callback
+     * @return the batch, or null if the documents are not stored in batches
+     */
+    protected DocumentBatch newDocumentBatch(final CsvFileContext context, final DataStoreParams rowParamMap) {
+        final int batchSize = getStoreBatchSize(context.getParamMap());
+        if (batchSize <= 1) {
+            return null;
+        }
+        return new DocumentBatch(context, rowParamMap, batchSize, getStoreBatchBytes(context.getParamMap()));
+    }
+
+    /**
+     * Documents of a reader that are passed to the callback together by {@link #storeDocuments}
+     * when the batch has store_batch_size documents or store_batch_bytes characters.
+     */
+    protected class DocumentBatch {
+
+        private final CsvFileContext context;
+
+        private final DataStoreParams rowParamMap;
+
+        private final int maxSize;
+
+        private final long maxBytes;
+
+        private final List<CsvDocument> documentList = new ArrayList<>();
+
+        private long bytes;
+
+        /**
+         * Creates a batch.
+         *
+         * @param context the context of the CSV file
+         * @param rowParamMap the parameters passed to the callback
+         * @param maxSize the maximum number of documents
+         * @param maxBytes the maximum size in characters of the documents
+         */
+        protected DocumentBatch(final CsvFileContext context, final DataStoreParams rowParamMap, final int maxSize, final long maxBytes) {
+            this.context = context;
+            this.rowParamMap = rowParamMap;
+            this.maxSize = maxSize;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Adds a document, and stores the batch when it is full.
+         *
+         * @param document the document
+         */
+        public void add(final CsvDocument document) {
+            documentList.add(document);
+            for (final Object value : document.dataMap().values()) {
+                // other values are counted as a few characters
+                bytes += value instanceof final CharSequence cs ? cs.length() : 16;
+            }
+            if (documentList.size() >= maxSize || bytes >= maxBytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Stores the documents added since the last flush.
+         */
+        public void flush() {
+            storeDocuments(context, rowParamMap, documentList);
+            documentList.clear();
+            bytes = 0L;
+        }
+    }
+
+    /**
+     * Discards a converted document that is not stored because the crawl stopped.
+     *
+     * @param context the context of the CSV file
+     * @param document the document
+     */
+    protected void discardDocument(final CsvFileContext context, final CsvDocument document) {
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        crawlerStatsHelper.discard(document.statsKey());
+        crawlerStatsHelper.done(document.statsKey());
+    }
+
+    /**
+     * Stores the failure of a record as a failure URL, and aborts the context if the failure aborts the crawl.
+     *
+     * @param context the context of the CSV file
+     * @param statsKey the crawler stats key of the record
+     * @param dataMap the fields of the document
+     * @param lineNumber the line number of the record
+     * @param t the failure
+     */
+    protected void storeFailure(final CsvFileContext context, final StatsKeyObject statsKey, final Map<String, Object> dataMap,
+            final long lineNumber, final Throwable t) {
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        final File csvFile = context.getCsvFile();
+        final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
+        if (t instanceof final CrawlingAccessException e) {
+            logger.warn("Crawling Access Exception at : {}", dataMap, e);
+
+            Throwable target = e;
+            if (target instanceof final MultipleCrawlingAccessException ex) {
+                final Throwable[] causes = ex.getCauses();
+                if (causes.length > 0) {
+                    target = causes[causes.length - 1];
+                }
+            }
+
+            String errorName;
+            final Throwable cause = target.getCause();
+            if (cause != null) {
+                errorName = cause.getClass().getCanonicalName();
+            } else {
+                errorName = target.getClass().getCanonicalName();
+            }
+
+            String url;
+            if (target instanceof DataStoreCrawlingException dce) {
+                url = dce.getUrl();
+                if (dce.aborted()) {
+                    context.abort();
+                }
+            } else {
+                url = csvFile.getAbsolutePath() + ":" + lineNumber;
+            }
+            failureUrlService.store(context.getDataConfig(), errorName, url, target);
+            crawlerStatsHelper.record(statsKey, StatsAction.ACCESS_EXCEPTION);
+        } else {
+            logger.warn("Crawling Access Exception at : {}", dataMap, t);
+            final String url = csvFile.getAbsolutePath() + ":" + lineNumber;
+            failureUrlService.store(context.getDataConfig(), t.getClass().getCanonicalName(), url, t);
+            crawlerStatsHelper.record(statsKey, StatsAction.EXCEPTION);
+        }
+    }
+
+    /**
+     * Stores a record that exceeds the record limits as a failure URL. The reader has skipped the record and continues after it.
+     *
+     * @param context the context of the CSV file
+     * @param lineNumber the line number of the record
+     * @param e the exception of the record
+     */
+    protected void storeRecordLimitFailure(final CsvFileContext context, final long lineNumber, final CsvRecordLimitException e) {
+        final CrawlerStatsHelper crawlerStatsHelper = context.getCrawlerStatsHelper();
+        final String path = context.getCsvFile().getAbsolutePath();
+        final StatsKeyObject statsKey = new CsvStatsKeyObject(path, lineNumber);
+        crawlerStatsHelper.begin(statsKey);
+        try {
+            logger.warn("Skipped the record at {}:{}. {}", path, lineNumber, e.getMessage());
+            final FailureUrlService failureUrlService = ComponentUtil.getComponent(FailureUrlService.class);
+            failureUrlService.store(context.getDataConfig(), e.getClass().getCanonicalName(), path + ":" + lineNumber, e);
+            crawlerStatsHelper.record(statsKey, StatsAction.EXCEPTION);
+        } finally {
+            crawlerStatsHelper.done(statsKey);
+        }
+    }
+
+    /**
+     * Records a row that failed to be indexed, so that the next crawl indexes it again and its document is not deleted.
+     *
+     * @param context the context of the CSV file
+     * @param deltaKey the key of the row
+     * @param rowHash the row hash, or 0 if the key of the row is not computed
+     */
+    protected void failDeltaRow(final CsvFileContext context, final long deltaKey, final long rowHash) {
+        final CsvDeltaState deltaState = context.getDeltaState();
+        if (deltaState == null || rowHash == 0L) {
+            return;
+        }
+        try {
+            deltaState.fail(deltaKey);
+        } catch (final IOException e) {
+            logger.warn("Failed to update row hashes of {}.", context.getCsvFile().getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Waits for the tasks to complete.
+     * If a task fails, tasks that have not started yet are cancelled and the first failure is rethrown.
+     *
+     * @param futureList the futures of the tasks
+     */
+    protected void awaitFutures(final List<Future<?>> futureList) {
+        RuntimeException failure = null;
+        for (final Future<?> future : futureList) {
+            try {
+                future.get();
+            } catch (final CancellationException e) {
+                // cancelled after a failure
+            } catch (final ExecutionException e) {
+                if (failure == null) {
+                    final Throwable cause = e.getCause();
+                    failure = cause instanceof final RuntimeException re ? re
+                            : new DataStoreException("Failed to crawl data when reading csv file.", cause);
+                    futureList.forEach(f -> f.cancel(false));
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futureList.forEach(f -> f.cancel(false));
+                throw new DataStoreException("Interrupted while processing csv files.", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void shutdownExecutor(final ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("CSV threads are still running.");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
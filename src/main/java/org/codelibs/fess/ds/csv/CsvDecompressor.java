@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompressor that streams the CSV content of a compressed file, so that the file is not decompressed to disk.
+ * Decompressors are registered by file suffix with {@link CsvDataStore#addDecompressor(String, CsvDecompressor)}.
+ */
+public interface CsvDecompressor {
+
+    /** Size of the buffers of compressed and decompressed streams. */
+    int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Receives the decompressed entries of a file.
+     */
+    @FunctionalInterface
+    interface EntryHandler {
+
+        /**
+         * Handles an entry. The stream is closed by the decompressor.
+         *
+         * @param entryName the name of the entry in an archive, or null for the content of a compressed file
+         * @param in the decompressed content
+         * @throws IOException if the entry cannot be read
+         */
+        void handle(String entryName, InputStream in) throws IOException;
+    }
+
+    /**
+     * Checks if files are archives of entries, which are accepted regardless of the names of their entries.
+     *
+     * @return true for archives
+     */
+    default boolean isArchive() {
+        return false;
+    }
+
+    /**
+     * Decompresses a file and passes its entries to the handler in order.
+     *
+     * @param file the compressed file
+     * @param handler receives the entries
+     * @throws IOException if the file cannot be decompressed
+     */
+    void decompress(File file, EntryHandler handler) throws IOException;
+}
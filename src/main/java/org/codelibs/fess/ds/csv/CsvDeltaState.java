@@ -0,0 +1,350 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Row hashes of a CSV file, which find the rows that changed since the last crawl of the file.
+ * <p>
+ * A row is identified by the values of the key columns, and a 64-bit hash of its key maps to a 64-bit hash of all its values
+ * in a {@link CsvRowHashTable}. The URL of the document of each row is kept in a separate file, so that the documents of rows
+ * that disappeared can be deleted, unless another row of the current crawl has the same URL. A crawl writes a new table and
+ * a new URL file, and replaces the saved files with them when the file is completed. The saved files are ignored if they
+ * were written with other key columns or script mappings.
+ * </p>
+ */
+public class CsvDeltaState implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(CsvDeltaState.class);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // row hash of a row that failed to be indexed, which never matches
+    private static final long FAILED_ROW_HASH = 0L;
+
+    private static final long NO_URL = -1L;
+
+    private final File stateFile;
+
+    private final File urlFile;
+
+    private final File newStateFile;
+
+    private final File newUrlFile;
+
+    private final File newUrlHashFile;
+
+    private final String[] keyColumns;
+
+    private CsvRowHashTable savedTable;
+
+    private FileChannel savedUrlChannel;
+
+    private final CsvRowHashTable newTable;
+
+    private final DataOutputStream newUrlOut;
+
+    // hashes of the URLs in the new state, which are not deleted
+    private final CsvRowHashTable newUrlTable;
+
+    private long newUrlOffset;
+
+    private boolean partial;
+
+    private boolean finished;
+
+    /**
+     * Opens the state of a CSV file.
+     *
+     * @param stateFile the file of the row hashes, whose URLs are in a file with the suffix .urls
+     * @param keyColumns the key columns, by header name or cellN
+     * @param configHash the hash of the settings that change the documents of the rows
+     * @throws IOException if the new state cannot be created
+     */
+    public CsvDeltaState(final File stateFile, final String[] keyColumns, final long configHash) throws IOException {
+        this.stateFile = stateFile;
+        this.keyColumns = keyColumns;
+        final File parentFile = stateFile.getAbsoluteFile().getParentFile();
+        urlFile = new File(parentFile, stateFile.getName() + ".urls");
+        newStateFile = new File(parentFile, stateFile.getName() + ".new");
+        newUrlFile = new File(parentFile, stateFile.getName() + ".urls.new");
+        newUrlHashFile = new File(parentFile, stateFile.getName() + ".urlhashes.new");
+        openSavedState(configHash);
+
+        if (!parentFile.isDirectory()) {
+            Files.createDirectories(parentFile.toPath());
+        }
+        final long generation = ThreadLocalRandom.current().nextLong();
+        newTable = CsvRowHashTable.create(newStateFile, configHash, generation, savedTable != null ? savedTable.size() : 0);
+        newUrlOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(newUrlFile.toPath())));
+        newUrlOut.writeLong(generation);
+        newUrlOffset = Long.BYTES;
+        newUrlTable = CsvRowHashTable.create(newUrlHashFile, configHash, generation, savedTable != null ? savedTable.size() : 0);
+    }
+
+    private void openSavedState(final long configHash) {
+        if (!stateFile.isFile() || !urlFile.isFile()) {
+            return;
+        }
+        try {
+            savedTable = CsvRowHashTable.open(stateFile);
+            savedUrlChannel = FileChannel.open(urlFile.toPath(), StandardOpenOption.READ);
+            final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            if (savedUrlChannel.read(buffer, 0) != Long.BYTES || buffer.getLong(0) != savedTable.getGeneration()) {
+                logger.warn("Row hashes {} are ignored: the URL file does not match.", stateFile.getAbsolutePath());
+                closeSavedState();
+            } else if (savedTable.getConfigHash() != configHash) {
+                logger.info("Row hashes {} are ignored: key columns or script mappings have changed.", stateFile.getAbsolutePath());
+                closeSavedState();
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to load row hashes {}.", stateFile.getAbsolutePath(), e);
+            closeSavedState();
+        }
+    }
+
+    /**
+     * Computes the key of a row.
+     *
+     * @param columnLayout the column keys of the file
+     * @param values the values of the row
+     * @return the hash of the key columns
+     */
+    public long getKey(final CsvColumnLayout columnLayout, final List<String> values) {
+        long h = FNV_OFFSET;
+        for (final String keyColumn : keyColumns) {
+            final int index = columnLayout.getColumnIndex(keyColumn, values.size());
+            h = hash(h, index != -1 ? values.get(index) : null);
+        }
+        return h;
+    }
+
+    /**
+     * Computes the hash of all values of a row.
+     *
+     * @param values the values of the row
+     * @return the row hash
+     */
+    public static long getRowHash(final List<String> values) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < values.size(); i++) {
+            h = hash(h, values.get(i));
+        }
+        // 0 marks a failed row
+        return h != FAILED_ROW_HASH ? h : 1L;
+    }
+
+    private static long hash(long h, final String value) {
+        if (value == null) {
+            return (h ^ 0xff) * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // the length separates the values
+        return (h ^ value.length()) * FNV_PRIME;
+    }
+
+    /**
+     * Checks if a row is unchanged since the last crawl. An unchanged row is kept in the new state.
+     *
+     * @param key the key of the row
+     * @param rowHash the row hash
+     * @return true if the row is unchanged
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized boolean isUnchanged(final long key, final long rowHash) throws IOException {
+        if (savedTable == null) {
+            return false;
+        }
+        final int slot = savedTable.indexOf(key);
+        if (slot == -1 || savedTable.getRowHash(slot) != rowHash) {
+            return false;
+        }
+        newTable.put(key, rowHash, writeUrl(readSavedUrl(savedTable.getValue(slot))));
+        return true;
+    }
+
+    /**
+     * Records an indexed row.
+     *
+     * @param key the key of the row
+     * @param rowHash the row hash
+     * @param url the URL of the document, or null
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized void update(final long key, final long rowHash, final String url) throws IOException {
+        newTable.put(key, rowHash, writeUrl(url));
+    }
+
+    /**
+     * Records a row that failed to be indexed. The row is indexed again by the next crawl, and its document is not deleted.
+     *
+     * @param key the key of the row
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized void fail(final long key) throws IOException {
+        final int slot = savedTable != null ? savedTable.indexOf(key) : -1;
+        newTable.put(key, FAILED_ROW_HASH, slot != -1 ? writeUrl(readSavedUrl(savedTable.getValue(slot))) : NO_URL);
+    }
+
+    /**
+     * Marks the state as partial: the crawl did not read all rows of the file, so rows that were not read are kept.
+     */
+    public synchronized void setPartial() {
+        partial = true;
+    }
+
+    /**
+     * Finishes the state after all rows of the file are processed, and replaces the saved state with the new state.
+     * The URLs of the rows that disappeared since the last crawl are passed to the deleter in batches.
+     * A URL that a row of the new state also has is not deleted, because the document now belongs to that row.
+     *
+     * @param deleter deletes the documents of the URLs
+     * @param batchSize the number of URLs per batch
+     * @return the number of rows that disappeared
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized long finish(final Consumer<List<String>> deleter, final int batchSize) throws IOException {
+        long count = 0;
+        if (savedTable != null) {
+            final List<String> urlList = new ArrayList<>();
+            for (int slot = 0; slot < savedTable.getCapacity(); slot++) {
+                final long key = savedTable.getKey(slot);
+                if (key == 0 || newTable.indexOf(key) != -1) {
+                    continue;
+                }
+                final String url = readSavedUrl(savedTable.getValue(slot));
+                if (partial) {
+                    newTable.put(key, savedTable.getRowHash(slot), writeUrl(url));
+                    continue;
+                }
+                count++;
+                if (url != null && newUrlTable.indexOf(getUrlHash(url)) == -1) {
+                    urlList.add(url);
+                    if (urlList.size() >= batchSize) {
+                        deleter.accept(new ArrayList<>(urlList));
+                        urlList.clear();
+                    }
+                }
+            }
+            if (!urlList.isEmpty()) {
+                deleter.accept(urlList);
+            }
+        }
+
+        newUrlOut.close();
+        newTable.force();
+        newTable.close();
+        newUrlTable.close();
+        Files.deleteIfExists(newUrlHashFile.toPath());
+        closeSavedState();
+        Files.move(newUrlFile.toPath(), urlFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(newStateFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        return count;
+    }
+
+    private long writeUrl(final String url) throws IOException {
+        if (url == null) {
+            return NO_URL;
+        }
+        newUrlTable.put(getUrlHash(url), 0L, 0L);
+        final long offset = newUrlOffset;
+        final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        newUrlOut.writeInt(bytes.length);
+        newUrlOut.write(bytes);
+        newUrlOffset += Integer.BYTES + bytes.length;
+        return offset;
+    }
+
+    // a collision keeps a document that should be deleted, which is safer than deleting a document that is in use
+    private static long getUrlHash(final String url) {
+        return hash(FNV_OFFSET, url);
+    }
+
+    private String readSavedUrl(final long offset) throws IOException {
+        if (offset == NO_URL) {
+            return null;
+        }
+        final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        if (savedUrlChannel.read(lengthBuffer, offset) != Integer.BYTES) {
+            throw new IOException("Invalid URL offset " + offset + " in " + urlFile.getAbsolutePath());
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(lengthBuffer.getInt(0));
+        long position = offset + Integer.BYTES;
+        while (buffer.hasRemaining()) {
+            final int n = savedUrlChannel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Invalid URL offset " + offset + " in " + urlFile.getAbsolutePath());
+            }
+            position += n;
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private void closeSavedState() {
+        try {
+            if (savedTable != null) {
+                savedTable.close();
+            }
+            if (savedUrlChannel != null) {
+                savedUrlChannel.close();
+            }
+        } catch (final IOException e) {
+            logger.debug("Failed to close {}.", stateFile.getAbsolutePath(), e);
+        }
+        savedTable = null;
+        savedUrlChannel = null;
+    }
+
+    /**
+     * Closes the state. The new state is discarded unless the state is finished.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        newUrlOut.close();
+        newTable.close();
+        newUrlTable.close();
+        closeSavedState();
+        Files.deleteIfExists(newStateFile.toPath());
+        Files.deleteIfExists(newUrlFile.toPath());
+        Files.deleteIfExists(newUrlHashFile.toPath());
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.fess.ds.callback.IndexUpdateCallback;
+import org.codelibs.fess.entity.DataStoreParams;
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+import org.codelibs.fess.opensearch.config.exentity.DataConfig;
+
+/**
+ * State of a CSV file while {@link CsvDataStore} processes it.
+ * The context is shared by all readers of the file, such as the chunks of a split file,
+ * so it holds nothing that changes per row.
+ */
+public class CsvFileContext {
+
+    private final DataConfig dataConfig;
+
+    private final IndexUpdateCallback callback;
+
+    private final DataStoreParams paramMap;
+
+    private final Map<String, CsvScript> scriptMap;
+
+    private final Map<String, Object> defaultDataMap;
+
+    private final File csvFile;
+
+    private final CrawlerStatsHelper crawlerStatsHelper;
+
+    private final long readInterval;
+
+    private final Map<String, Object> baseMap;
+
+    private List<String> headerList;
+
+    private CsvColumnLayout columnLayout = new CsvColumnLayout(null);
+
+    private CsvCheckpoint checkpoint;
+
+    private CsvDeltaState deltaState;
+
+    private CsvRateLimiter rateLimiter;
+
+    private CsvCrawlMetrics.FileMetrics metrics;
+
+    private volatile boolean aborted;
+
+    /**
+     * Creates a context for the CSV file.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the compiled script mappings
+     * @param defaultDataMap the default data map
+     * @param csvFile the CSV file
+     * @param crawlerStatsHelper the crawler stats helper
+     * @param readInterval the read interval
+     */
+    public CsvFileContext(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, CsvScript> scriptMap, final Map<String, Object> defaultDataMap, final File csvFile,
+            final CrawlerStatsHelper crawlerStatsHelper, final long readInterval) {
+        this.dataConfig = dataConfig;
+        this.callback = callback;
+        this.paramMap = paramMap;
+        this.scriptMap = scriptMap;
+        this.defaultDataMap = defaultDataMap;
+        this.csvFile = csvFile;
+        this.crawlerStatsHelper = crawlerStatsHelper;
+        this.readInterval = readInterval;
+
+        final Map<String, Object> map = new LinkedHashMap<>(paramMap.asMap());
+        map.put("csvfile", csvFile.getAbsolutePath());
+        map.put("csvfilename", csvFile.getName());
+        map.put("crawlingConfig", dataConfig);
+        baseMap = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Creates the parameters for a reader of this file.
+     * A reader puts the crawler stats key of the current row into them, so they must not be shared between threads.
+     *
+     * @return a copy of the data store parameters
+     */
+    public DataStoreParams newRowParamMap() {
+        return paramMap.newInstance();
+    }
+
+    /**
+     * Creates the map of a record passed to the scripts.
+     * The data store parameters, csvfile, csvfilename and crawlingConfig are shared by the maps of all records.
+     *
+     * @param values the values of the record
+     * @return the map of the record
+     */
+    public CsvRowMap newRowMap(final List<String> values) {
+        return new CsvRowMap(baseMap, columnLayout, values);
+    }
+
+    /**
+     * Marks this file as aborted, so that all readers of the file stop.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    /**
+     * @return true if processing of this file was aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * @return the data configuration
+     */
+    public DataConfig getDataConfig() {
+        return dataConfig;
+    }
+
+    /**
+     * @return the index update callback
+     */
+    public IndexUpdateCallback getCallback() {
+        return callback;
+    }
+
+    /**
+     * @return the data store parameters
+     */
+    public DataStoreParams getParamMap() {
+        return paramMap;
+    }
+
+    /**
+     * @return the compiled script mappings
+     */
+    public Map<String, CsvScript> getScriptMap() {
+        return scriptMap;
+    }
+
+    /**
+     * @return the default data map
+     */
+    public Map<String, Object> getDefaultDataMap() {
+        return defaultDataMap;
+    }
+
+    /**
+     * @return the CSV file
+     */
+    public File getCsvFile() {
+        return csvFile;
+    }
+
+    /**
+     * @return the crawler stats helper
+     */
+    public CrawlerStatsHelper getCrawlerStatsHelper() {
+        return crawlerStatsHelper;
+    }
+
+    /**
+     * @return the read interval
+     */
+    public long getReadInterval() {
+        return readInterval;
+    }
+
+    /**
+     * @return the header values, or null if the file has no header line
+     */
+    public List<String> getHeaderList() {
+        return headerList;
+    }
+
+    /**
+     * Sets the header values, and computes the column keys of the file from them.
+     *
+     * @param headerList the header values
+     */
+    public void setHeaderList(final List<String> headerList) {
+        this.headerList = headerList;
+        columnLayout = new CsvColumnLayout(headerList);
+        if (checkpoint != null) {
+            checkpoint.setHeaderList(headerList);
+        }
+    }
+
+    /**
+     * @return the checkpoint of the file, or null if checkpoints are disabled
+     */
+    public CsvCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @param checkpoint the checkpoint of the file
+     */
+    public void setCheckpoint(final CsvCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * @return the row hashes of the file, or null if delta indexing is disabled
+     */
+    public CsvDeltaState getDeltaState() {
+        return deltaState;
+    }
+
+    /**
+     * @param deltaState the row hashes of the file
+     */
+    public void setDeltaState(final CsvDeltaState deltaState) {
+        this.deltaState = deltaState;
+    }
+
+    /**
+     * @return the rate limiter of the crawl, or null if the crawl is not throttled
+     */
+    public CsvRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @param rateLimiter the rate limiter of the crawl
+     */
+    public void setRateLimiter(final CsvRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @return the metrics of the file, or null if the crawl has no metrics
+     */
+    public CsvCrawlMetrics.FileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics the metrics of the file
+     */
+    public void setMetrics(final CsvCrawlMetrics.FileMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the column keys of the file
+     */
+    public CsvColumnLayout getColumnLayout() {
+        return columnLayout;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.client.CrawlerClientFactory;
+import org.codelibs.fess.ds.callback.FileListIndexUpdateCallbackImpl;
+import org.codelibs.fess.ds.callback.IndexUpdateCallback;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * File list callback of {@link CsvListDataStore} that can be flushed while the crawl goes on.
+ * <p>
+ * {@link #commit()} shuts down the executor that crawls the listed files, so it can only end a crawl.
+ * {@link #flush()} waits for the files being crawled instead, and then commits the documents indexed so far,
+ * which allows a checkpoint to be saved in the middle of a crawl.
+ * </p>
+ */
+public class CsvFileListIndexUpdateCallback extends FileListIndexUpdateCallbackImpl {
+
+    // assigned by newFixedThreadPool, which is called by the super constructor before the fields of this class are initialized:
+    // this field must not have an initializer, even null, or it would clear the executor after the super constructor
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Creates a callback that crawls the listed files with nThreads threads.
+     *
+     * @param indexUpdateCallback the callback that indexes the documents
+     * @param crawlerClientFactory the crawler client factory
+     * @param nThreads the number of threads
+     */
+    public CsvFileListIndexUpdateCallback(final IndexUpdateCallback indexUpdateCallback, final CrawlerClientFactory crawlerClientFactory,
+            final int nThreads) {
+        super(indexUpdateCallback, crawlerClientFactory, nThreads);
+    }
+
+    /**
+     * Creates a callback that crawls each listed file on a virtual thread, with at most maxConcurrency files at a time.
+     *
+     * @param indexUpdateCallback the callback that indexes the documents
+     * @param crawlerClientFactory the crawler client factory
+     * @param nThreads the number of threads, which is not used if maxConcurrency is more than 0
+     * @param maxConcurrency the maximum number of files crawled at a time on virtual threads, or 0 to use nThreads threads
+     */
+    public CsvFileListIndexUpdateCallback(final IndexUpdateCallback indexUpdateCallback, final CrawlerClientFactory crawlerClientFactory,
+            final int nThreads, final int maxConcurrency) {
+        super(indexUpdateCallback, crawlerClientFactory, nThreads);
+        if (maxConcurrency > 0) {
+            taskExecutor.useVirtualThreads(maxConcurrency);
+        }
+    }
+
+    @Override
+    protected ExecutorService newFixedThreadPool(final int nThreads) {
+        taskExecutor = new TaskExecutor(nThreads);
+        return taskExecutor;
+    }
+
+    /**
+     * Waits for the files being crawled, and commits the documents indexed so far.
+     */
+    public void flush() {
+        try {
+            taskExecutor.awaitIdle();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataStoreException("Interrupted while waiting for crawling files.", e);
+        }
+        synchronized (indexUpdateCallback) {
+            if (!deleteUrlList.isEmpty()) {
+                deleteDocuments();
+            }
+        }
+        indexUpdateCallback.commit();
+    }
+
+    /**
+     * Executor of {@link FileListIndexUpdateCallbackImpl} that counts the running tasks.
+     * The tasks run on the pool, or on virtual threads once {@link #useVirtualThreads(int)} is called.
+     */
+    protected static class TaskExecutor extends ThreadPoolExecutor {
+
+        private int numOfTasks;
+
+        private boolean executed;
+
+        private volatile CsvVirtualThreadExecutor virtualThreadExecutor;
+
+        /**
+         * Creates an executor with the same pool and queue as {@link FileListIndexUpdateCallbackImpl}.
+         *
+         * @param nThreads the number of threads
+         */
+        protected TaskExecutor(final int nThreads) {
+            super(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(nThreads), new CallerRunsPolicy());
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            synchronized (this) {
+                numOfTasks++;
+                executed = true;
+            }
+            final Runnable task = () -> {
+                try {
+                    command.run();
+                } finally {
+                    taskDone();
+                }
+            };
+            try {
+                if (virtualThreadExecutor != null) {
+                    virtualThreadExecutor.execute(task);
+                } else {
+                    super.execute(task);
+                }
+            } catch (final RuntimeException e) {
+                taskDone();
+                throw e;
+            }
+        }
+
+        /**
+         * Runs the tasks on virtual threads instead of the pool, which must not have run a task yet.
+         *
+         * @param maxConcurrency the maximum number of running tasks
+         * @throws IllegalStateException if a task has already been executed
+         */
+        protected synchronized void useVirtualThreads(final int maxConcurrency) {
+            if (executed || virtualThreadExecutor != null) {
+                throw new IllegalStateException("Virtual threads must be used before any task is executed.");
+            }
+            virtualThreadExecutor = new CsvVirtualThreadExecutor("csv-file-list", maxConcurrency);
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            if (virtualThreadExecutor != null) {
+                virtualThreadExecutor.shutdown();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            final List<Runnable> list = super.shutdownNow();
+            if (virtualThreadExecutor != null) {
+                virtualThreadExecutor.shutdownNow();
+            }
+            return list;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return super.isTerminated() && (virtualThreadExecutor == null || virtualThreadExecutor.isTerminated());
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!super.awaitTermination(timeout, unit)) {
+                return false;
+            }
+            return virtualThreadExecutor == null
+                    || virtualThreadExecutor.awaitTermination(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void taskDone() {
+            numOfTasks--;
+            notifyAll();
+        }
+
+        /**
+         * Waits until no task is queued or running.
+         *
+         * @throws InterruptedException if the thread is interrupted
+         */
+        public synchronized void awaitIdle() throws InterruptedException {
+            while (numOfTasks > 0) {
+                wait();
+            }
+        }
+    }
+}
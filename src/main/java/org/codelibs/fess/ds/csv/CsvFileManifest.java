@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Fingerprints of the CSV files indexed by the last crawls of a data config.
+ * <p>
+ * A file whose fingerprint matches the manifest is unchanged since it was indexed, so an incremental crawl skips it.
+ * A fingerprint is the size and the modification time of a file, and optionally a CRC32C checksum of its content,
+ * which also detects changes that keep the size and the modification time.
+ * The saved manifest only has the files of the current crawl, so removed files are dropped from it,
+ * unless {@link #retainSavedFiles()} keeps the files that a crawl of some files did not see.
+ * The manifest also has a hash of the crawl configuration, and a saved manifest of another configuration is ignored,
+ * so that all files are indexed again after the script mappings are changed.
+ * </p>
+ */
+public class CsvFileManifest {
+
+    private static final Logger logger = LogManager.getLogger(CsvFileManifest.class);
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // not an absolute path, so it does not collide with the files
+    private static final String CONFIG_HASH_KEY = "config_hash";
+
+    /**
+     * Fingerprint of a file.
+     *
+     * @param size the file size
+     * @param lastModified the modification time
+     * @param checksum the CRC32C checksum of the content in hex, or null if it is not computed
+     */
+    public record Fingerprint(long size, long lastModified, String checksum) {
+
+        /**
+         * Computes the fingerprint of a file.
+         *
+         * @param file the file
+         * @param checksum whether the checksum of the content is computed
+         * @return the fingerprint
+         * @throws IOException if the file cannot be read
+         */
+        public static Fingerprint of(final File file, final boolean checksum) throws IOException {
+            final long size = file.length();
+            final long lastModified = file.lastModified();
+            if (!checksum) {
+                return new Fingerprint(size, lastModified, null);
+            }
+            final CRC32C crc = new CRC32C();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (channel.read(buffer.clear()) != -1) {
+                    crc.update(buffer.flip());
+                }
+            }
+            return new Fingerprint(size, lastModified, Long.toHexString(crc.getValue()));
+        }
+    }
+
+    private final File manifestFile;
+
+    private final long configHash;
+
+    // fingerprints of the last crawls
+    private final Map<String, Fingerprint> savedMap = new HashMap<>();
+
+    // fingerprints of files that are not indexed yet
+    private final Map<String, Fingerprint> pendingMap = new HashMap<>();
+
+    // fingerprints to save
+    private final Map<String, Fingerprint> indexedMap = new TreeMap<>();
+
+    /**
+     * Creates an empty manifest.
+     *
+     * @param manifestFile the file that the manifest is saved to
+     * @param configHash the hash of the crawl configuration
+     */
+    public CsvFileManifest(final File manifestFile, final long configHash) {
+        this.manifestFile = manifestFile;
+        this.configHash = configHash;
+    }
+
+    /**
+     * Loads a manifest.
+     *
+     * @param manifestFile the file that the manifest is saved to
+     * @param configHash the hash of the current crawl configuration
+     * @return the saved manifest, or an empty manifest if there is none or it has another configuration
+     */
+    public static CsvFileManifest load(final File manifestFile, final long configHash) {
+        final CsvFileManifest manifest = new CsvFileManifest(manifestFile, configHash);
+        if (!manifestFile.isFile()) {
+            return manifest;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifestFile.toPath())) {
+            properties.load(in);
+            if (!Long.toHexString(configHash).equals(properties.getProperty(CONFIG_HASH_KEY))) {
+                logger.info("All files are crawled: the configuration is changed since {} was saved.", manifestFile.getAbsolutePath());
+                return manifest;
+            }
+            for (final String path : properties.stringPropertyNames()) {
+                if (CONFIG_HASH_KEY.equals(path)) {
+                    continue;
+                }
+                final String[] values = properties.getProperty(path).split(",", -1);
+                manifest.savedMap.put(path, new Fingerprint(Long.parseLong(values[0]), Long.parseLong(values[1]),
+                        values.length > 2 && !values[2].isEmpty() ? values[2] : null));
+            }
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Failed to load manifest {}.", manifestFile.getAbsolutePath(), e);
+            return new CsvFileManifest(manifestFile, configHash);
+        }
+        return manifest;
+    }
+
+    /**
+     * Checks if a file is unchanged since the last crawls.
+     * An unchanged file is kept in the manifest, and the fingerprint of a changed file is saved once {@link #update(File)} is called.
+     *
+     * @param file the CSV file
+     * @param fingerprint the current fingerprint of the file
+     * @return true if the file is unchanged
+     */
+    public synchronized boolean isUnchanged(final File file, final Fingerprint fingerprint) {
+        final String path = file.getAbsolutePath();
+        if (fingerprint.equals(savedMap.get(path))) {
+            indexedMap.put(path, fingerprint);
+            return true;
+        }
+        pendingMap.put(path, fingerprint);
+        return false;
+    }
+
+    /**
+     * Records that a file is indexed.
+     *
+     * @param file the CSV file
+     */
+    public synchronized void update(final File file) {
+        final String path = file.getAbsolutePath();
+        final Fingerprint fingerprint = pendingMap.remove(path);
+        if (fingerprint != null) {
+            indexedMap.put(path, fingerprint);
+        }
+    }
+
+    /**
+     * Keeps the saved fingerprints of the files that are not seen by this crawl.
+     * A crawl of some of the files calls this method, so that the fingerprints of the other files are not dropped.
+     */
+    public synchronized void retainSavedFiles() {
+        savedMap.forEach((path, fingerprint) -> {
+            if (!pendingMap.containsKey(path)) {
+                indexedMap.putIfAbsent(path, fingerprint);
+            }
+        });
+    }
+
+    /**
+     * Saves the fingerprints of the unchanged and indexed files.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    public synchronized void save() throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(CONFIG_HASH_KEY, Long.toHexString(configHash));
+        indexedMap.forEach((path, fingerprint) -> properties.setProperty(path, fingerprint.size() + "," + fingerprint.lastModified() + ","
+                + (fingerprint.checksum() != null ? fingerprint.checksum() : "")));
+
+        final File parentFile = manifestFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.isDirectory()) {
+            Files.createDirectories(parentFile.toPath());
+        }
+        final File tempFile = new File(parentFile, manifestFile.getName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the file that the manifest is saved to
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * Splits a CSV file into byte ranges that start at record boundaries, so that the ranges can be parsed in parallel.
+ * <p>
+ * The file is scanned once with the quote and escape rules of {@link com.orangesignal.csv.CsvReader},
+ * so a newline in a quoted field never becomes a boundary. The scan also counts the lines the reader would count
+ * before each range, which gives the line number base of the range.
+ * Bytes that cannot end a record are skipped with {@link ByteScanner#vector(int...)}.
+ * Lines matched by ignore_line_patterns are scanned as records, so a quote in such a line may move the following boundaries.
+ * </p>
+ */
+public class CsvFileSplitter {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final int CR = '\r';
+
+    private static final int LF = '\n';
+
+    /**
+     * Byte range of a CSV file.
+     *
+     * @param index the index of the chunk in the file
+     * @param start the first byte of the chunk
+     * @param end the end of the chunk (exclusive)
+     * @param lineNumber the number of lines before the chunk, as counted by the CSV reader
+     */
+    public record Chunk(int index, long start, long end, long lineNumber) {
+    }
+
+    /**
+     * End of the complete records of a byte range.
+     *
+     * @param position the end of the last record that ends with a line break
+     * @param lineCount the number of lines from the start of the range to the position, as counted by the CSV reader
+     */
+    public record RecordEnd(long position, long lineCount) {
+    }
+
+    private final CsvConfig csvConfig;
+
+    private final boolean hasHeaderLine;
+
+    /**
+     * Creates a splitter for files read with the given configuration.
+     *
+     * @param csvConfig the CSV configuration
+     * @param hasHeaderLine whether the files have a header line, which is kept in the first chunk
+     */
+    public CsvFileSplitter(final CsvConfig csvConfig, final boolean hasHeaderLine) {
+        this.csvConfig = csvConfig;
+        this.hasHeaderLine = hasHeaderLine;
+    }
+
+    /**
+     * Checks if files in the encoding can be split at byte level.
+     * The encoding must be ASCII compatible, that is, ASCII bytes never appear inside a multi-byte character,
+     * and the separator, quote and escape characters must be ASCII.
+     *
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @return true if the files can be split
+     */
+    public static boolean isSupported(final String encoding, final CsvConfig csvConfig) {
+        final String name;
+        try {
+            name = Charset.forName(encoding).name().toUpperCase(Locale.ROOT);
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+        if (!"UTF-8".equals(name) && !"US-ASCII".equals(name) && !name.startsWith("ISO-8859-") && !name.startsWith("WINDOWS-125")
+                && !name.startsWith("EUC-")) {
+            return false;
+        }
+        return csvConfig.getSeparator() < 0x80 && (csvConfig.isQuoteDisabled() || csvConfig.getQuote() < 0x80)
+                && (csvConfig.isEscapeDisabled() || csvConfig.getEscape() < 0x80);
+    }
+
+    /**
+     * Splits the file into chunks of about chunkSize bytes.
+     * Each chunk is passed to the consumer as soon as its end is found,
+     * so the chunks can be processed while the rest of the file is scanned.
+     *
+     * @param file the CSV file
+     * @param chunkSize the minimum size of a chunk in bytes
+     * @param consumer receives the chunks in file order, and returns false to stop splitting
+     * @return the number of chunks
+     * @throws IOException if the file cannot be read
+     */
+    public int split(final File file, final long chunkSize, final Predicate<Chunk> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final Scanner scanner = new Scanner(channel.size(), chunkSize, consumer);
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long offset = 0;
+            int n;
+            while (!scanner.stopped && (n = channel.read(buffer.clear())) != -1) {
+                scanner.scan(buffer.array(), n, offset);
+                offset += n;
+            }
+            return scanner.finish();
+        }
+    }
+
+    /**
+     * Finds the end of the complete records after a record boundary of a file that is still written.
+     * A record is complete if it ends with a line break outside quotes, so a partly written record at the end of the file is excluded.
+     *
+     * @param file the CSV file
+     * @param start the record boundary to scan from
+     * @return the end of the complete records, which is the start if there is none
+     * @throws IOException if the file cannot be read
+     */
+    public RecordEnd findRecordEnd(final File file, final long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final Scanner scanner = new Scanner(channel.size(), Long.MAX_VALUE, chunk -> true);
+            if (start > 0) {
+                // lines to skip are before the first record
+                scanner.skipLines = 0;
+            }
+            scanner.recordEnd = start;
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long offset = start;
+            int n;
+            while ((n = channel.read(buffer.clear(), offset)) != -1) {
+                scanner.scan(buffer.array(), n, offset);
+                offset += n;
+            }
+            return new RecordEnd(scanner.recordEnd, scanner.recordLineNumber);
+        }
+    }
+
+    /**
+     * State of the scan: a byte-level port of the token state of CsvReader.
+     */
+    private class Scanner {
+        private final long size;
+
+        private final long chunkSize;
+
+        private final Predicate<Chunk> consumer;
+
+        private final int separator = csvConfig.getSeparator();
+
+        private final int quote = csvConfig.isQuoteDisabled() ? -1 : csvConfig.getQuote();
+
+        private final int escape = csvConfig.isEscapeDisabled() ? -1 : csvConfig.getEscape();
+
+        // without quotes, only line breaks end a record
+        private final ByteScanner fieldScanner = quote == -1 ? ByteScanner.vector(CR, LF) : ByteScanner.vector(separator, CR, LF);
+
+        private final ByteScanner quotedScanner =
+                escape != -1 && escape != quote ? ByteScanner.vector(quote, escape) : ByteScanner.vector(quote);
+
+        private final long minLineNumber = Math.max(csvConfig.getSkipLines(), 0) + (hasHeaderLine ? 1 : 0);
+
+        private long skipLines = Math.max(csvConfig.getSkipLines(), 0);
+
+        private long lineNumber;
+
+        // end of the last record and the lines up to it
+        private long recordEnd;
+
+        private long recordLineNumber;
+
+        private long chunkStart;
+
+        private long chunkLineNumber;
+
+        private int index;
+
+        private boolean stopped;
+
+        // the last byte was CR outside a quote
+        private boolean cr;
+
+        private boolean inQuote;
+
+        private boolean enclosed;
+
+        // escape character in a quoted field
+        private boolean escaped;
+
+        // escape character outside a quoted field
+        private boolean separatorEscaped;
+
+        // the field has only whitespaces so far
+        private boolean blank = true;
+
+        Scanner(final long size, final long chunkSize, final Predicate<Chunk> consumer) {
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.consumer = consumer;
+        }
+
+        void scan(final byte[] bytes, final int length, final long offset) {
+            for (int i = 0; i < length && !stopped; i++) {
+                if (skipLines == 0 && !cr && !separatorEscaped) {
+                    final int next;
+                    if (!inQuote) {
+                        next = quote == -1 || !blank ? fieldScanner.indexOf(bytes, i, length) : i;
+                    } else {
+                        next = escaped ? i : quotedScanner.indexOf(bytes, i, length);
+                    }
+                    if (next != i) {
+                        blank = false;
+                        i = next - 1;
+                        continue;
+                    }
+                }
+                final int c = bytes[i] & 0xff;
+                if (cr) {
+                    cr = false;
+                    if (c == LF) {
+                        endRecord(offset + i + 1);
+                        continue;
+                    }
+                    endRecord(offset + i);
+                } else if (separatorEscaped && c == separator) {
+                    separatorEscaped = false;
+                    blank = false;
+                    continue;
+                }
+                separatorEscaped = false;
+
+                if (skipLines > 0) {
+                    if (c == CR) {
+                        cr = true;
+                    } else if (c == LF) {
+                        endRecord(offset + i + 1);
+                    }
+                } else if (!inQuote) {
+                    if (c == separator) {
+                        endField();
+                    } else if (c == CR) {
+                        cr = true;
+                    } else if (c == LF) {
+                        endRecord(offset + i + 1);
+                    } else {
+                        if (quote != -1 && !enclosed && c == quote) {
+                            if (blank) {
+                                inQuote = true;
+                            }
+                        } else if (quote == -1 && escape != -1 && c == escape) {
+                            separatorEscaped = true;
+                        }
+                        blank = blank && c < 0x80 && Character.isWhitespace(c);
+                    }
+                } else {
+                    if (escape != -1 && quote == escape) {
+                        if (escaped) {
+                            if (c == separator) {
+                                endField();
+                                continue;
+                            }
+                            if (c == CR) {
+                                cr = true;
+                                continue;
+                            }
+                            if (c == LF) {
+                                endRecord(offset + i + 1);
+                                continue;
+                            }
+                            if (c == escape) {
+                                escaped = false;
+                                continue;
+                            }
+                        } else if (c == escape) {
+                            escaped = true;
+                            continue;
+                        }
+                    }
+                    if (c == quote && !escaped) {
+                        inQuote = false;
+                        enclosed = true;
+                    }
+                    escaped = escape != -1 && c == escape;
+                }
+            }
+        }
+
+        int finish() {
+            if (!stopped) {
+                if (cr) {
+                    endRecord(size);
+                }
+                if (chunkStart < size || index == 0) {
+                    emit(size);
+                }
+            }
+            return index;
+        }
+
+        private void endField() {
+            inQuote = false;
+            enclosed = false;
+            escaped = false;
+            separatorEscaped = false;
+            blank = true;
+        }
+
+        private void endRecord(final long position) {
+            endField();
+            lineNumber++;
+            recordEnd = position;
+            recordLineNumber = lineNumber;
+            if (skipLines > 0) {
+                skipLines--;
+            }
+            if (lineNumber >= minLineNumber && position - chunkStart >= chunkSize && position < size) {
+                emit(position);
+                chunkStart = position;
+                chunkLineNumber = lineNumber;
+            }
+        }
+
+        private void emit(final long end) {
+            if (!consumer.test(new Chunk(index++, chunkStart, end, chunkLineNumber))) {
+                stopped = true;
+            }
+        }
+    }
+}
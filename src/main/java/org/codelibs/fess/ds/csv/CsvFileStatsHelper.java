@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+
+/**
+ * Crawler stats helper that aggregates the stats of the rows of a CSV file into one entry for the file.
+ * <p>
+ * The entry of the file begins with its first row and is done by {@link #finish()}, and the actions of the rows are counted
+ * and logged when the file finishes. The failures of rows are still recorded as entries of their own,
+ * and batches of documents are not recorded.
+ * </p>
+ */
+public class CsvFileStatsHelper extends CsvRowStatsHelper {
+
+    private static final Logger logger = LogManager.getLogger(CsvFileStatsHelper.class);
+
+    private final StatsKeyObject fileKey;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder[] actionCounts = new LongAdder[StatsAction.values().length];
+
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * Creates a helper.
+     *
+     * @param crawlerStatsHelper the crawler stats helper that records the stats
+     * @param path the path of the CSV file
+     */
+    public CsvFileStatsHelper(final CrawlerStatsHelper crawlerStatsHelper, final String path) {
+        super(crawlerStatsHelper);
+        fileKey = new StatsKeyObject(path);
+        fileKey.setUrl(path);
+        for (int i = 0; i < actionCounts.length; i++) {
+            actionCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    protected boolean isRecorded(final Object keyObj) {
+        return false;
+    }
+
+    @Override
+    public void begin(final Object keyObj) {
+        if (keyObj instanceof CsvBatchStatsKeyObject) {
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            crawlerStatsHelper.begin(fileKey);
+        }
+        rows.increment();
+    }
+
+    @Override
+    public void record(final Object keyObj, final StatsAction action) {
+        if (keyObj instanceof CsvBatchStatsKeyObject) {
+            return;
+        }
+        actionCounts[action.ordinal()].increment();
+        super.record(keyObj, action);
+    }
+
+    @Override
+    public void discard(final Object keyObj) {
+        if (keyObj instanceof CsvBatchStatsKeyObject) {
+            return;
+        }
+        discarded.increment();
+    }
+
+    /**
+     * @return the number of rows that began
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Gets the number of rows that recorded an action.
+     *
+     * @param action the action
+     * @return the number of rows
+     */
+    public long getCount(final StatsAction action) {
+        return actionCounts[action.ordinal()].sum();
+    }
+
+    /**
+     * @return the number of rows that were discarded
+     */
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    /**
+     * Records the entry of the file as finished, and logs the counts of its rows.
+     */
+    @Override
+    public void finish() {
+        if (!started.compareAndSet(true, false)) {
+            return;
+        }
+        crawlerStatsHelper.record(fileKey, StatsAction.FINISHED);
+        crawlerStatsHelper.done(fileKey);
+        logger.info("Stats of {}: rows={}, prepared={}, evaluated={}, finished={}, discarded={}, exception={}, access_exception={}",
+                fileKey.getId(), getRows(), getCount(StatsAction.PREPARED), getCount(StatsAction.EVALUATED),
+                getCount(StatsAction.FINISHED), getDiscarded(), getCount(StatsAction.EXCEPTION), getCount(StatsAction.ACCESS_EXCEPTION));
+    }
+}
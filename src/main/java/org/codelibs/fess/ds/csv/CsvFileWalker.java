@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Walks a directory for CSV files and passes them to a consumer in batches, so that the files of a large directory tree
+ * are processed while the tree is walked.
+ * <p>
+ * The attributes of each file are read once by the walk. The files of a batch are sorted by their modification time.
+ * Glob patterns without a slash match file names, and other patterns match paths relative to the directory.
+ * Exclude patterns also skip the subdirectories that they match.
+ * </p>
+ */
+public class CsvFileWalker {
+
+    private static final Logger logger = LogManager.getLogger(CsvFileWalker.class);
+
+    private record FileEntry(File file, long lastModified) {
+    }
+
+    // a pattern without a slash matches the file name
+    private record Matcher(PathMatcher pathMatcher, boolean fileName) {
+
+        boolean matches(final Path relativePath) {
+            return pathMatcher.matches(fileName ? relativePath.getFileName() : relativePath);
+        }
+    }
+
+    private final List<Matcher> includeList;
+
+    private final List<Matcher> excludeList;
+
+    private final int maxDepth;
+
+    private final int batchSize;
+
+    /**
+     * Creates a walker.
+     *
+     * @param includeGlobs the glob patterns of files to include, or an empty array to include all files
+     * @param excludeGlobs the glob patterns of files and directories to exclude
+     * @param recursive whether subdirectories are walked
+     * @param batchSize the number of files per batch
+     */
+    public CsvFileWalker(final String[] includeGlobs, final String[] excludeGlobs, final boolean recursive, final int batchSize) {
+        includeList = toMatchers(includeGlobs);
+        excludeList = toMatchers(excludeGlobs);
+        maxDepth = recursive ? Integer.MAX_VALUE : 1;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    private static List<Matcher> toMatchers(final String[] globs) {
+        final List<Matcher> list = new ArrayList<>();
+        for (final String glob : globs) {
+            list.add(new Matcher(FileSystems.getDefault().getPathMatcher("glob:" + glob), glob.indexOf('/') == -1));
+        }
+        return list;
+    }
+
+    /**
+     * Walks a directory.
+     *
+     * @param dir the directory
+     * @param filter accepts the CSV files by their paths and attributes
+     * @param consumer receives the batches of CSV files, and returns false to stop the walk
+     * @return the number of files passed to the consumer
+     * @throws IOException if the directory cannot be walked
+     */
+    public int walk(final Path dir, final BiPredicate<Path, BasicFileAttributes> filter, final Predicate<List<File>> consumer)
+            throws IOException {
+        final Visitor visitor = new Visitor(dir, filter, consumer);
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, visitor);
+        if (!visitor.stopped) {
+            visitor.flush();
+        }
+        return visitor.count;
+    }
+
+    /**
+     * Checks if a file matches the include patterns and no exclude pattern.
+     *
+     * @param dir the directory that the patterns are relative to
+     * @param path the file in the directory
+     * @return true if the file is included
+     */
+    public boolean isIncluded(final Path dir, final Path path) {
+        final Path relativePath = dir.relativize(path);
+        return (includeList.isEmpty() || matches(includeList, relativePath)) && !matches(excludeList, relativePath);
+    }
+
+    /**
+     * Checks if a subdirectory matches an exclude pattern, so that its subtree is skipped.
+     *
+     * @param dir the directory that the patterns are relative to
+     * @param path the subdirectory
+     * @return true if the subdirectory is excluded
+     */
+    public boolean isExcludedDirectory(final Path dir, final Path path) {
+        return !path.equals(dir) && matches(excludeList, dir.relativize(path));
+    }
+
+    /**
+     * @return true if subdirectories are walked
+     */
+    public boolean isRecursive() {
+        return maxDepth > 1;
+    }
+
+    private class Visitor extends SimpleFileVisitor<Path> {
+
+        private final Path dir;
+
+        private final BiPredicate<Path, BasicFileAttributes> filter;
+
+        private final Predicate<List<File>> consumer;
+
+        private final List<FileEntry> batchList = new ArrayList<>();
+
+        private int count;
+
+        private boolean stopped;
+
+        Visitor(final Path dir, final BiPredicate<Path, BasicFileAttributes> filter, final Predicate<List<File>> consumer) {
+            this.dir = dir;
+            this.filter = filter;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path path, final BasicFileAttributes attributes) {
+            return isExcludedDirectory(dir, path) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path path, final BasicFileAttributes attributes) {
+            if (attributes.isDirectory() || !isIncluded(dir, path) || !filter.test(path, attributes)) {
+                return FileVisitResult.CONTINUE;
+            }
+            batchList.add(new FileEntry(path.toFile(), attributes.lastModifiedTime().toMillis()));
+            if (batchList.size() >= batchSize) {
+                flush();
+            }
+            return stopped ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path path, final IOException e) {
+            logger.warn("Failed to read {}.", path, e);
+            return FileVisitResult.CONTINUE;
+        }
+
+        void flush() {
+            if (batchList.isEmpty()) {
+                return;
+            }
+            batchList.sort(Comparator.comparingLong(FileEntry::lastModified));
+            final List<File> fileList = new ArrayList<>(batchList.size());
+            for (final FileEntry entry : batchList) {
+                fileList.add(entry.file());
+            }
+            batchList.clear();
+            count += fileList.size();
+            stopped = !consumer.test(fileList);
+        }
+    }
+
+    private static boolean matches(final List<Matcher> matcherList, final Path relativePath) {
+        for (final Matcher matcher : matcherList) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Read position of an append-only CSV file, saved to a state file so that each crawl only reads the appended records.
+ * <p>
+ * The state has the file position and the line number after the last complete record, and the header of the file.
+ * The file is read again from the start when it was rotated, that is the file key (the inode) has changed,
+ * or when it was truncated, that is the file is smaller than the position or the position is not after a line break.
+ * </p>
+ */
+public class CsvFollowState {
+
+    private static final Logger logger = LogManager.getLogger(CsvFollowState.class);
+
+    private final File stateFile;
+
+    private final File csvFile;
+
+    private String fileKey;
+
+    private long position;
+
+    private long lineNumber;
+
+    private List<String> headerList;
+
+    /**
+     * Creates the state of a CSV file that is read from the start.
+     *
+     * @param stateFile the file that the state is saved to
+     * @param csvFile the CSV file
+     */
+    public CsvFollowState(final File stateFile, final File csvFile) {
+        this.stateFile = stateFile;
+        this.csvFile = csvFile;
+    }
+
+    /**
+     * Loads the state of a CSV file.
+     *
+     * @param stateFile the file that the state is saved to
+     * @param csvFile the CSV file
+     * @return the saved state, or a state at the start of the file if there is none or the file was rotated or truncated
+     */
+    public static CsvFollowState load(final File stateFile, final File csvFile) {
+        final CsvFollowState state = new CsvFollowState(stateFile, csvFile);
+        if (!stateFile.isFile()) {
+            return state;
+        }
+        final Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+            properties.load(in);
+            if (!csvFile.getAbsolutePath().equals(properties.getProperty("file"))) {
+                return state;
+            }
+            final String fileKey = properties.getProperty("file_key", "");
+            final long position = Long.parseLong(properties.getProperty("position", "0"));
+            if (!fileKey.equals(getFileKey(csvFile))) {
+                logger.info("{} was rotated: it is read from the start.", csvFile.getAbsolutePath());
+                return state;
+            }
+            if (!isRecordBoundary(csvFile, position)) {
+                logger.info("{} was truncated: it is read from the start.", csvFile.getAbsolutePath());
+                return state;
+            }
+            state.fileKey = fileKey;
+            state.position = position;
+            state.lineNumber = Long.parseLong(properties.getProperty("line", "0"));
+            final String headerSize = properties.getProperty("header.size");
+            if (headerSize != null) {
+                final List<String> list = new ArrayList<>();
+                for (int i = 0; i < Integer.parseInt(headerSize); i++) {
+                    list.add(properties.getProperty("header." + i));
+                }
+                state.headerList = list;
+            }
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Failed to load follow state {}.", stateFile.getAbsolutePath(), e);
+            return new CsvFollowState(stateFile, csvFile);
+        }
+        return state;
+    }
+
+    /**
+     * Returns the key that identifies a file across renames, which is the inode on POSIX file systems.
+     *
+     * @param file the file
+     * @return the file key, or an empty string if the file system has none
+     * @throws IOException if the attributes cannot be read
+     */
+    protected static String getFileKey(final File file) throws IOException {
+        final Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        return key != null ? key.toString() : "";
+    }
+
+    // a record boundary is the start of the file, or a position after a line break within the file
+    private static boolean isRecordBoundary(final File file, final long position) throws IOException {
+        if (position == 0) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (position < 0 || position > channel.size()) {
+                return false;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(1);
+            if (channel.read(buffer, position - 1) != 1) {
+                return false;
+            }
+            final byte b = buffer.get(0);
+            return b == '\n' || b == '\r';
+        }
+    }
+
+    /**
+     * @return the file position after the last complete record that was read
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the line number of the last complete record that was read
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the header values, or null if they are not recorded
+     */
+    public List<String> getHeaderList() {
+        return headerList;
+    }
+
+    /**
+     * Advances the state after the records up to a position are indexed.
+     *
+     * @param position the file position after the last complete record
+     * @param lineNumber the line number of the last complete record
+     * @param headerList the header values, or null
+     * @throws IOException if the attributes of the file cannot be read
+     */
+    public void advance(final long position, final long lineNumber, final List<String> headerList) throws IOException {
+        fileKey = getFileKey(csvFile);
+        this.position = position;
+        this.lineNumber = lineNumber;
+        this.headerList = headerList != null ? new ArrayList<>(headerList) : null;
+    }
+
+    /**
+     * Saves the state.
+     *
+     * @throws IOException if the state file cannot be written
+     */
+    public void save() throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("file", csvFile.getAbsolutePath());
+        properties.setProperty("file_key", fileKey != null ? fileKey : getFileKey(csvFile));
+        properties.setProperty("position", Long.toString(position));
+        properties.setProperty("line", Long.toString(lineNumber));
+        if (headerList != null) {
+            properties.setProperty("header.size", Integer.toString(headerList.size()));
+            for (int i = 0; i < headerList.size(); i++) {
+                if (headerList.get(i) != null) {
+                    properties.setProperty("header." + i, headerList.get(i));
+                }
+            }
+        }
+
+        final File parentFile = stateFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.isDirectory()) {
+            Files.createDirectories(parentFile.toPath());
+        }
+        final File tempFile = new File(parentFile, stateFile.getName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the file that the state is saved to
+     */
+    public File getStateFile() {
+        return stateFile;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with power-of-two buckets.
+ * <p>
+ * Threads record durations with a few {@link LongAdder} increments and no lock, so readers of a file can share a histogram.
+ * A percentile is the upper bound of its bucket, which is within a factor of two of the exact value,
+ * like the coarsest precision of an HDR histogram.
+ * </p>
+ */
+public class CsvLatencyHistogram {
+
+    // bucket i holds durations in [2^(i-1), 2^i), and bucket 0 holds zeros
+    private static final int NUM_OF_BUCKETS = Long.SIZE;
+
+    private final LongAdder[] buckets = new LongAdder[NUM_OF_BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+
+    /**
+     * Creates an empty histogram.
+     */
+    public CsvLatencyHistogram() {
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0L);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded durations in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return the longest recorded duration in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the mean of the recorded durations in nanoseconds, or 0 if nothing is recorded
+     */
+    public long getMeanNanos() {
+        final long n = getCount();
+        return n > 0 ? getTotalNanos() / n : 0L;
+    }
+
+    /**
+     * Gets the upper bound of the bucket that holds a percentile.
+     *
+     * @param percentile the percentile from 0 to 100
+     * @return the duration in nanoseconds, which is at most the longest recorded duration, or 0 if nothing is recorded
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long n = getCount();
+        if (n == 0L) {
+            return 0L;
+        }
+        final long rank = Math.max((long) Math.ceil(n * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0), 1L);
+        long sum = 0L;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            sum += buckets[i].sum();
+            if (sum >= rank) {
+                final long upperBound = i == 0 ? 0L : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upperBound, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @return the count, total, mean, 50th, 90th and 99th percentiles and max, with durations in microseconds
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", total=" + toMicros(getTotalNanos()) + "us, mean=" + toMicros(getMeanNanos()) + "us, p50="
+                + toMicros(getPercentileNanos(50)) + "us, p90=" + toMicros(getPercentileNanos(90)) + "us, p99="
+                + toMicros(getPercentileNanos(99)) + "us, max=" + toMicros(getMaxNanos()) + "us";
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
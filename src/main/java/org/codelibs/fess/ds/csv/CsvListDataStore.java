@@ -16,14 +16,34 @@
 package org.codelibs.fess.ds.csv;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.Constants;
 import org.codelibs.fess.crawler.client.CrawlerClientFactory;
-import org.codelibs.fess.ds.callback.FileListIndexUpdateCallbackImpl;
 import org.codelibs.fess.ds.callback.IndexUpdateCallback;
 import org.codelibs.fess.entity.DataStoreParams;
 import org.codelibs.fess.exception.DataStoreException;
@@ -43,6 +63,12 @@ public class CsvListDataStore extends CsvDataStore {
     /** Parameter name for timestamp margin in milliseconds. */
     protected static final String TIMESTAMP_MARGIN = "timestamp_margin";
 
+    /** Parameter name for watching the directories for new CSV files until the crawl is stopped. */
+    protected static final String WATCH_PARAM = "watch";
+
+    /** Parameter name for the suffix of marker files that show that CSV files are completely written. */
+    protected static final String DONE_MARKER_SUFFIX_PARAM = "done_marker_suffix";
+
     /** Whether to delete processed CSV files. */
     public boolean deleteProcessedFile = true;
 
@@ -52,6 +78,12 @@ public class CsvListDataStore extends CsvDataStore {
     /** Whether to ignore data store exceptions during processing. */
     public boolean ignoreDataStoreException = true;
 
+    /** Maximum time in milliseconds to wait for file events before pending files are checked again. */
+    public long watchPollInterval = 1000L;
+
+    /** CSV files whose crawls were aborted, which are kept with their checkpoints instead of being deleted. */
+    protected Set<File> abortedFileSet = ConcurrentHashMap.newKeySet();
+
     /**
      * Creates a new CSV List Data Store instance.
      */
@@ -68,12 +100,33 @@ public class CsvListDataStore extends CsvDataStore {
     protected boolean isCsvFile(final File parentFile, final String filename, final DataStoreParams paramMap) {
         if (super.isCsvFile(parentFile, filename, paramMap)) {
             final File file = new File(parentFile, filename);
-            final long now = System.currentTimeMillis();
-            return now - file.lastModified() > getTimestampMargin(paramMap);
+            return isWritten(paramMap, file, file.lastModified(), System.currentTimeMillis());
         }
         return false;
     }
 
+    /**
+     * Checks if a CSV file is completely written: its marker file exists if done_marker_suffix is specified,
+     * or it is not modified for timestamp_margin. A followed file is always read.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @param lastModified the modification time of the file
+     * @param now the current time
+     * @return true if the file is written
+     */
+    protected boolean isWritten(final DataStoreParams paramMap, final File csvFile, final long lastModified, final long now) {
+        if (isFollow(paramMap)) {
+            // appended records are read while the file is written
+            return true;
+        }
+        final File markerFile = getDoneMarkerFile(paramMap, csvFile);
+        if (markerFile != null) {
+            return markerFile.isFile();
+        }
+        return now - lastModified > getTimestampMargin(paramMap);
+    }
+
     /**
      * Gets the timestamp margin for file filtering.
      *
@@ -92,6 +145,31 @@ public class CsvListDataStore extends CsvDataStore {
         return csvFileTimestampMargin;
     }
 
+    /**
+     * Checks if the directories are watched for new CSV files after they are crawled.
+     *
+     * @param paramMap the data store parameters
+     * @return true if the directories are watched (defaults to false)
+     */
+    protected boolean isWatch(final DataStoreParams paramMap) {
+        return Boolean.parseBoolean(paramMap.getAsString(WATCH_PARAM));
+    }
+
+    /**
+     * Gets the marker file that shows that a CSV file is completely written.
+     *
+     * @param paramMap the data store parameters
+     * @param csvFile the CSV file
+     * @return the marker file, or null if done_marker_suffix is not specified
+     */
+    protected File getDoneMarkerFile(final DataStoreParams paramMap, final File csvFile) {
+        final String suffix = paramMap.getAsString(DONE_MARKER_SUFFIX_PARAM);
+        if (StringUtil.isBlank(suffix)) {
+            return null;
+        }
+        return new File(csvFile.getParentFile(), csvFile.getName() + suffix.trim());
+    }
+
     @Override
     protected void storeData(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
             final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
@@ -105,27 +183,234 @@ public class CsvListDataStore extends CsvDataStore {
         }
         final CrawlerClientFactory crawlerClientFactory = ComponentUtil.getCrawlerClientFactory();
         dataConfig.initializeClientFactory(() -> crawlerClientFactory);
+        // the watched files share the rate limiter and metrics of the crawl
+        final boolean throttled = openRateLimiter(paramMap);
+        final boolean measured = openMetrics(dataConfig, paramMap);
         try {
-            final FileListIndexUpdateCallbackImpl fileListIndexUpdateCallback =
-                    new FileListIndexUpdateCallbackImpl(callback, crawlerClientFactory, nThreads);
+            final CsvFileListIndexUpdateCallback fileListIndexUpdateCallback =
+                    new CsvFileListIndexUpdateCallback(callback, crawlerClientFactory, nThreads,
+                            isVirtualThreads(paramMap) ? getMaxConcurrency(paramMap) : 0);
             super.storeData(dataConfig, fileListIndexUpdateCallback, paramMap, scriptMap, defaultDataMap);
+            if (isWatch(paramMap)) {
+                watchCsvFiles(dataConfig, fileListIndexUpdateCallback, paramMap, scriptMap, defaultDataMap);
+            }
             fileListIndexUpdateCallback.commit();
         } catch (final Exception e) {
             throw new DataStoreException(e);
+        } finally {
+            if (measured) {
+                closeMetrics(paramMap);
+            }
+            if (throttled) {
+                closeRateLimiter(paramMap);
+            }
+        }
+    }
+
+    /**
+     * Watches the directories for created and modified CSV files until the crawl is stopped.
+     * A file is crawled once it is quiescent, that is neither events nor modifications for timestamp_margin,
+     * or once its marker file exists if done_marker_suffix is specified.
+     * The files are filtered by include_globs and exclude_globs, and subdirectories are watched if recursive is true.
+     *
+     * @param dataConfig the data configuration
+     * @param callback the index update callback
+     * @param paramMap the data store parameters
+     * @param scriptMap the script mappings
+     * @param defaultDataMap the default data map
+     */
+    protected void watchCsvFiles(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
+            final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap) {
+        final String value = paramMap.getAsString(CSV_DIRS_PARAM);
+        if (StringUtil.isBlank(value)) {
+            logger.warn("{} is ignored: {} is not specified.", WATCH_PARAM, CSV_DIRS_PARAM);
+            return;
+        }
+        final List<Path> dirList = new ArrayList<>();
+        for (final String path : value.split(",")) {
+            final File dir = new File(path.trim());
+            if (dir.isDirectory()) {
+                dirList.add(dir.toPath());
+            }
+        }
+        if (dirList.isEmpty()) {
+            return;
+        }
+
+        final CsvFileWalker walker = createCsvFileWalker(paramMap);
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            // watched directories by the directory of directories that has them, which the globs are relative to
+            final Map<Path, Path> rootMap = new HashMap<>();
+            // CSV files by the time of their last event
+            final Map<File, Long> pendingMap = new LinkedHashMap<>();
+            // files that were written during the crawl are not crawled yet
+            for (final Path dir : dirList) {
+                watchDirectory(watchService, walker, rootMap, pendingMap, dir, dir, paramMap);
+            }
+            logger.info("Watching {}", dirList);
+            while (alive) {
+                final WatchKey watchKey = watchService.poll(watchPollInterval, TimeUnit.MILLISECONDS);
+                if (watchKey != null) {
+                    final Path dir = (Path) watchKey.watchable();
+                    final Path root = rootMap.get(dir);
+                    for (final WatchEvent<?> event : watchKey.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            logger.warn("File events in {} were lost.", dir);
+                            watchDirectory(watchService, walker, rootMap, pendingMap, root, dir, paramMap);
+                            continue;
+                        }
+                        final Path path = dir.resolve((Path) event.context());
+                        if (!Files.isDirectory(path)) {
+                            addPendingFile(walker, pendingMap, root, path.toFile(), paramMap);
+                        } else if (walker.isRecursive() && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                                && !walker.isExcludedDirectory(root, path)) {
+                            // files may be written before the directory is registered
+                            watchDirectory(watchService, walker, rootMap, pendingMap, root, path, paramMap);
+                        }
+                    }
+                    if (!watchKey.reset()) {
+                        rootMap.remove(dir);
+                    }
+                }
+
+                final List<File> readyList = getReadyFiles(pendingMap, paramMap);
+                if (alive && !readyList.isEmpty()) {
+                    storeCsvFiles(dataConfig, callback, paramMap, scriptMap, defaultDataMap, readyList);
+                }
+            }
+        } catch (final IOException e) {
+            throw new DataStoreException("Failed to watch " + dirList, e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while watching {}", dirList);
+        }
+    }
+
+    // registers a directory, and its subdirectories if recursive, and adds their CSV files to the pending files
+    private void watchDirectory(final WatchService watchService, final CsvFileWalker walker, final Map<Path, Path> rootMap,
+            final Map<File, Long> pendingMap, final Path root, final Path dir, final DataStoreParams paramMap) throws IOException {
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), walker.isRecursive() ? Integer.MAX_VALUE : 1,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(final Path path, final BasicFileAttributes attributes) throws IOException {
+                        if (walker.isExcludedDirectory(root, path)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                        rootMap.put(path, root);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(final Path path, final BasicFileAttributes attributes) {
+                        if (!attributes.isDirectory()) {
+                            addPendingFile(walker, pendingMap, root, path.toFile(), paramMap);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path path, final IOException e) {
+                        logger.warn("Failed to read {}.", path, e);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private void addPendingFile(final CsvFileWalker walker, final Map<File, Long> pendingMap, final Path root, final File file,
+            final DataStoreParams paramMap) {
+        final String suffix = paramMap.getAsString(DONE_MARKER_SUFFIX_PARAM);
+        File csvFile = file;
+        if (StringUtil.isNotBlank(suffix) && file.getName().endsWith(suffix.trim())) {
+            final String name = file.getName();
+            csvFile = new File(file.getParentFile(), name.substring(0, name.length() - suffix.trim().length()));
+        }
+        // an excluded file is neither crawled nor deleted
+        if (hasCsvFileSuffix(csvFile.getName()) && walker.isIncluded(root, csvFile.toPath())) {
+            pendingMap.put(csvFile, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Removes the pending files that are ready to be crawled.
+     * A ready file is crawled if {@link #isCsvFile(Path, BasicFileAttributes, long, DataStoreParams)} accepts it,
+     * as in a crawl of the directories.
+     *
+     * @param pendingMap the pending CSV files by the time of their last event
+     * @param paramMap the data store parameters
+     * @return the files that are ready
+     */
+    protected List<File> getReadyFiles(final Map<File, Long> pendingMap, final DataStoreParams paramMap) {
+        final long now = System.currentTimeMillis();
+        final List<File> readyList = new ArrayList<>();
+        final Iterator<Map.Entry<File, Long>> iterator = pendingMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<File, Long> entry = iterator.next();
+            final File csvFile = entry.getKey();
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(csvFile.toPath(), BasicFileAttributes.class);
+            } catch (final IOException e) {
+                logger.debug("{} is removed.", csvFile.getAbsolutePath(), e);
+                iterator.remove();
+                continue;
+            }
+            if (isWritten(paramMap, csvFile, Math.max(entry.getValue(), attributes.lastModifiedTime().toMillis()), now)) {
+                iterator.remove();
+                if (isCsvFile(csvFile.toPath(), attributes, now, paramMap)) {
+                    readyList.add(csvFile);
+                }
+            }
+        }
+        return readyList;
+    }
+
+    @Override
+    protected void commitCheckpoint(final CsvFileContext context) {
+        if (context.getCallback() instanceof final CsvFileListIndexUpdateCallback fileListIndexUpdateCallback) {
+            fileListIndexUpdateCallback.flush();
+        } else {
+            super.commitCheckpoint(context);
         }
     }
 
+    @Override
+    protected void abortCsvFile(final CsvFileContext context) {
+        super.abortCsvFile(context);
+        abortedFileSet.add(context.getCsvFile());
+    }
+
     @Override
     protected void processCsv(final DataConfig dataConfig, final IndexUpdateCallback callback, final DataStoreParams paramMap,
             final Map<String, String> scriptMap, final Map<String, Object> defaultDataMap, final CsvConfig csvConfig, final File csvFile,
             final long readInterval, final String csvFileEncoding, final boolean hasHeaderLine) {
+        abortedFileSet.remove(csvFile);
         try {
             super.processCsv(dataConfig, callback, paramMap, scriptMap, defaultDataMap, csvConfig, csvFile, readInterval, csvFileEncoding,
                     hasHeaderLine);
 
+            if (abortedFileSet.remove(csvFile)) {
+                // the file resumes from its checkpoint in the next crawl
+                logger.info("Kept {}: crawling the file was aborted.", csvFile.getAbsolutePath());
+                return;
+            }
+            if (!alive) {
+                // the rest of the file is crawled by the next crawl
+                logger.info("Kept {}: crawling was stopped.", csvFile.getAbsolutePath());
+                return;
+            }
+            if (isFollow(paramMap)) {
+                // records appended later are crawled by the next crawl
+                return;
+            }
+
             // delete csv file
-            if (deleteProcessedFile && !csvFile.delete()) {
-                logger.warn("Failed to delete {}", csvFile.getAbsolutePath());
+            if (deleteProcessedFile) {
+                if (!csvFile.delete()) {
+                    logger.warn("Failed to delete {}", csvFile.getAbsolutePath());
+                }
+                deleteCheckpoint(paramMap, csvFile);
+                deleteDoneMarker(paramMap, csvFile);
             }
         } catch (final DataStoreException e) {
             if (!ignoreDataStoreException) {
@@ -136,6 +421,15 @@ public class CsvListDataStore extends CsvDataStore {
             if (!csvFile.renameTo(new File(csvFile.getParent(), csvFile.getName() + ".txt")) && !csvFile.delete()) {
                 logger.warn("Failed to delete {}", csvFile.getAbsolutePath());
             }
+            deleteCheckpoint(paramMap, csvFile);
+            deleteDoneMarker(paramMap, csvFile);
+        }
+    }
+
+    private void deleteDoneMarker(final DataStoreParams paramMap, final File csvFile) {
+        final File markerFile = getDoneMarkerFile(paramMap, csvFile);
+        if (markerFile != null && markerFile.exists() && !markerFile.delete()) {
+            logger.warn("Failed to delete {}", markerFile.getAbsolutePath());
         }
     }
 
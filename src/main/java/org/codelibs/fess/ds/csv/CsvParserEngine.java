@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * Parser engine that opens a CSV file as a stream of records.
+ * Engines are registered with {@link CsvDataStore#addParserEngine(String, CsvParserEngine)}
+ * and selected by the parser_engine parameter of a data config.
+ */
+public interface CsvParserEngine {
+
+    /**
+     * Checks if this engine can read files in the encoding with the configuration.
+     * The default engine is used for files that are not supported.
+     *
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @return true if the files are supported
+     */
+    boolean isSupported(String encoding, CsvConfig csvConfig);
+
+    /**
+     * Opens a record reader for the byte range [start, end) of the file.
+     * The range always starts at the beginning of a record, and the lines to skip in csvConfig are at the beginning of the range.
+     *
+     * @param file the CSV file
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @return the record reader
+     * @throws IOException if the file cannot be opened
+     */
+    CsvRecordReader open(File file, String encoding, CsvConfig csvConfig, long start, long end) throws IOException;
+
+    /**
+     * Opens a record reader for the byte range [start, end) of the file that checks the records against limits.
+     * A record that exceeds a limit is skipped, and the reader throws {@link CsvRecordLimitException} for it.
+     * Engines that do not check limits open the reader of {@link #open(File, String, CsvConfig, long, long)}.
+     *
+     * @param file the CSV file
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @param limits the limits of the records
+     * @return the record reader
+     * @throws IOException if the file cannot be opened
+     */
+    default CsvRecordReader open(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end,
+            final CsvRecordLimits limits) throws IOException {
+        return open(file, encoding, csvConfig, start, end);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Token buckets that limit the documents and the bytes per second of a crawl, shared by all readers of the crawl.
+ * <p>
+ * Each bucket holds up to one second of its rate, so a short burst is not delayed. A reader acquires tokens for a batch of records
+ * in a {@link Batch} and sleeps until the buckets have them, so the sleeps are about {@link #BATCH_MILLIS} ms instead of one per record.
+ * </p>
+ * <p>
+ * An adaptive limiter also follows the latency of storing documents: the document rate is lowered when the latency
+ * grows to twice the lowest latency seen, and raised back to the configured rate when the latency recovers.
+ * </p>
+ */
+public class CsvRateLimiter {
+
+    private static final Logger logger = LogManager.getLogger(CsvRateLimiter.class);
+
+    /** Time in milliseconds of the records in a batch at the document rate. */
+    protected static final long BATCH_MILLIS = 100L;
+
+    private static final long ADJUST_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double EWMA_WEIGHT = 0.1;
+
+    private final double maxDocsPerSecond;
+
+    private final double bytesPerSecond;
+
+    private final boolean adaptive;
+
+    private double docsPerSecond;
+
+    // time in nanos when the buckets are empty
+    private long docsFreeTime;
+
+    private long bytesFreeTime;
+
+    private double latency;
+
+    private double minLatency = Double.MAX_VALUE;
+
+    private long adjustTime;
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param docsPerSecond the maximum documents per second, or 0 for no limit
+     * @param bytesPerSecond the maximum bytes per second, or 0 for no limit
+     * @param adaptive whether the document rate follows the latency of storing documents
+     */
+    public CsvRateLimiter(final double docsPerSecond, final double bytesPerSecond, final boolean adaptive) {
+        maxDocsPerSecond = docsPerSecond;
+        this.docsPerSecond = docsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.adaptive = adaptive && docsPerSecond > 0;
+        final long now = nanoTime();
+        docsFreeTime = now;
+        bytesFreeTime = now;
+        adjustTime = now;
+    }
+
+    /**
+     * @return true if the limiter limits bytes
+     */
+    public boolean isBytesLimited() {
+        return bytesPerSecond > 0;
+    }
+
+    /**
+     * @return the number of records per batch, which are about {@link #BATCH_MILLIS} ms at the document rate
+     */
+    public synchronized int getBatchSize() {
+        if (docsPerSecond <= 0) {
+            return 100;
+        }
+        return (int) Math.max(1L, Math.min(1000L, (long) (docsPerSecond * BATCH_MILLIS / 1000)));
+    }
+
+    /**
+     * @return the current document rate
+     */
+    public synchronized double getDocsPerSecond() {
+        return docsPerSecond;
+    }
+
+    /**
+     * Acquires tokens for a batch of records, and sleeps until the buckets have them.
+     *
+     * @param docs the number of documents
+     * @param bytes the number of bytes
+     * @throws InterruptedException if the thread is interrupted while it sleeps
+     */
+    public void acquire(final int docs, final long bytes) throws InterruptedException {
+        final long waitNanos = reserve(docs, bytes);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reserves tokens for a batch of records.
+     *
+     * @param docs the number of documents
+     * @param bytes the number of bytes
+     * @return the time in nanos to wait for the tokens
+     */
+    protected synchronized long reserve(final int docs, final long bytes) {
+        final long now = nanoTime();
+        long wait = 0L;
+        if (docsPerSecond > 0) {
+            docsFreeTime = Math.max(docsFreeTime, now - TimeUnit.SECONDS.toNanos(1)) + (long) (docs * 1e9 / docsPerSecond);
+            wait = Math.max(wait, docsFreeTime - now);
+        }
+        if (bytesPerSecond > 0) {
+            bytesFreeTime = Math.max(bytesFreeTime, now - TimeUnit.SECONDS.toNanos(1)) + (long) (bytes * 1e9 / bytesPerSecond);
+            wait = Math.max(wait, bytesFreeTime - now);
+        }
+        return wait;
+    }
+
+    /**
+     * Starts a batch of the records of a reader.
+     *
+     * @param position the file position of the reader, or -1 if the reader does not know its position
+     * @return the batch
+     */
+    public Batch newBatch(final long position) {
+        return new Batch(position);
+    }
+
+    /**
+     * Records of a reader whose tokens are acquired together. The bytes of a batch are the distance between the file positions
+     * of the reader, or the characters of the values if the reader does not know its position.
+     */
+    public class Batch {
+
+        private int size;
+
+        private int records;
+
+        private int docs;
+
+        private long bytes;
+
+        private long position;
+
+        Batch(final long position) {
+            this.position = position;
+            size = getBatchSize();
+        }
+
+        /**
+         * Adds a record, and acquires the tokens of the batch when it is full.
+         *
+         * @param stored whether the record was passed to the callback
+         * @param values the values of the record
+         * @param position the file position after the record, or -1
+         */
+        public void add(final boolean stored, final List<String> values, final long position) {
+            if (stored) {
+                docs++;
+            }
+            if (this.position < 0 && isBytesLimited()) {
+                bytes += getRecordSize(values);
+            }
+            if (++records >= size) {
+                flush(position);
+            }
+        }
+
+        /**
+         * Acquires the tokens of the records added since the last flush.
+         *
+         * @param position the file position after the last record, or -1
+         */
+        public void flush(final long position) {
+            if (records == 0) {
+                return;
+            }
+            try {
+                acquire(docs, this.position >= 0 ? position - this.position : bytes);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataStoreException("Interrupted while throttling csv records.", e);
+            }
+            size = getBatchSize();
+            records = 0;
+            docs = 0;
+            bytes = 0L;
+            this.position = position;
+        }
+    }
+
+    // the characters of the values and their separators
+    private static long getRecordSize(final List<String> values) {
+        long size = values.size();
+        for (final String value : values) {
+            if (value != null) {
+                size += value.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Records the latency of storing a document, which adjusts the document rate of an adaptive limiter.
+     *
+     * @param nanos the latency in nanos
+     */
+    public void recordLatency(final long nanos) {
+        if (!adaptive) {
+            return;
+        }
+        synchronized (this) {
+            latency = latency == 0 ? nanos : latency + (nanos - latency) * EWMA_WEIGHT;
+            minLatency = Math.min(minLatency, latency);
+            final long now = nanoTime();
+            if (now - adjustTime < ADJUST_INTERVAL) {
+                return;
+            }
+            adjustTime = now;
+            final double rate = docsPerSecond;
+            if (latency > minLatency * 2) {
+                docsPerSecond = Math.max(1.0, docsPerSecond * 0.8);
+            } else if (latency < minLatency * 1.2) {
+                docsPerSecond = Math.min(maxDocsPerSecond, docsPerSecond * 1.1);
+            }
+            if (rate != docsPerSecond && logger.isDebugEnabled()) {
+                logger.debug("Changed the document rate from {} to {}: latency={}ns", rate, docsPerSecond, (long) latency);
+            }
+        }
+    }
+
+    /**
+     * @return the current time in nanos
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link CsvRecordReader} for a record that exceeds its {@link CsvRecordLimits}.
+ * The reader has skipped the record before it throws this exception, so the next call of {@link CsvRecordReader#readValues()}
+ * reads the records that follow.
+ */
+public class CsvRecordLimitException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+
+    /**
+     * Creates an exception.
+     *
+     * @param message the limit that the record exceeds
+     * @param lineNumber the line number of the record in the reader
+     */
+    public CsvRecordLimitException(final String message, final long lineNumber) {
+        super(message);
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return the line number of the record in the reader
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.List;
+
+/**
+ * Limits of the size of a CSV record, which bound the memory that a reader uses for a record whatever the input contains,
+ * such as a quote that is never closed.
+ * A limit of 0 or less is not checked.
+ *
+ * @param maxRecordBytes the maximum size of a record in bytes
+ * @param maxFieldBytes the maximum size of a field in bytes
+ * @param maxColumns the maximum number of fields of a record
+ */
+public record CsvRecordLimits(int maxRecordBytes, int maxFieldBytes, int maxColumns) {
+
+    /** Limits that are not checked. */
+    public static final CsvRecordLimits NONE = new CsvRecordLimits(0, 0, 0);
+
+    /**
+     * @return true if any limit is checked
+     */
+    public boolean isLimited() {
+        return maxRecordBytes > 0 || maxFieldBytes > 0 || maxColumns > 0;
+    }
+
+    /**
+     * Gets the value of a limit to compare sizes with.
+     *
+     * @param limit the limit
+     * @return the limit, or Integer.MAX_VALUE if it is not checked
+     */
+    static int valueOf(final int limit) {
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks the fields of a parsed record, for readers that do not check them while tokenizing.
+     * The size of a field is counted in characters.
+     *
+     * @param values the values of the record
+     * @return the limit that the record exceeds, or null if it is within the limits
+     */
+    public String check(final List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        if (values.size() > valueOf(maxColumns)) {
+            return "A CSV record exceeds " + maxColumns + " columns";
+        }
+        final int maxLength = valueOf(maxFieldBytes);
+        for (final String value : values) {
+            if (value != null && value.length() > maxLength) {
+                return "A CSV field exceeds " + maxFieldBytes + " bytes";
+            }
+        }
+        return null;
+    }
+}
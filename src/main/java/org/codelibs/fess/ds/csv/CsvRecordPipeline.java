@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.codelibs.fess.exception.DataStoreException;
+
+/**
+ * Pipeline of a reader stage, transform workers and a store stage, connected by bounded queues.
+ * <p>
+ * The reader submits items from its own thread. The items are transformed concurrently by the workers of an executor,
+ * and the results are consumed by a single store thread in the order that the items were submitted, so the consumer sees
+ * the records in the order of the file. At most queueSize items are in flight, which blocks the reader when the transform
+ * or store stage is behind and bounds the memory of the pipeline.
+ * </p>
+ * <p>
+ * A failure of a transform or of the consumer stops the pipeline: the remaining results are discarded,
+ * and the failure is thrown to the reader by {@link #submit(Object)} or {@link #finish()}.
+ * </p>
+ *
+ * @param <T> the type of the submitted items
+ * @param <R> the type of the transformed items
+ */
+public class CsvRecordPipeline<T, R> implements AutoCloseable {
+
+    private final Executor transformExecutor;
+
+    private final Function<T, R> transformer;
+
+    private final Consumer<R> consumer;
+
+    private final Semaphore permits;
+
+    private final BlockingQueue<FutureTask<R>> storeQueue;
+
+    // marks the end of the store queue
+    private final FutureTask<R> endTask = new FutureTask<>(() -> null);
+
+    private final Thread storeThread;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a pipeline and starts its store thread.
+     *
+     * @param name the name of the store thread
+     * @param transformExecutor the executor of the transform workers
+     * @param queueSize the maximum number of items in flight
+     * @param transformer transforms an item in a worker
+     * @param consumer consumes the transformed items in the store thread
+     */
+    public CsvRecordPipeline(final String name, final Executor transformExecutor, final int queueSize, final Function<T, R> transformer,
+            final Consumer<R> consumer) {
+        this.transformExecutor = transformExecutor;
+        this.transformer = transformer;
+        this.consumer = consumer;
+        permits = new Semaphore(Math.max(queueSize, 1));
+        // one more slot for the end marker
+        storeQueue = new ArrayBlockingQueue<>(Math.max(queueSize, 1) + 1);
+        storeThread = new Thread(this::store, name);
+        storeThread.setDaemon(true);
+        storeThread.start();
+    }
+
+    /**
+     * Submits an item to the transform workers, and waits while queueSize items are in flight.
+     *
+     * @param item the item
+     * @throws InterruptedException if the reader is interrupted while it waits
+     */
+    public void submit(final T item) throws InterruptedException {
+        checkFailure();
+        permits.acquire();
+        final FutureTask<R> task = new FutureTask<>(() -> transformer.apply(item));
+        storeQueue.put(task);
+        try {
+            transformExecutor.execute(task);
+        } catch (final RuntimeException e) {
+            task.cancel(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until all submitted items are consumed.
+     *
+     * @throws InterruptedException if the reader is interrupted while it waits
+     */
+    public void finish() throws InterruptedException {
+        storeQueue.put(endTask);
+        storeThread.join();
+        checkFailure();
+    }
+
+    /**
+     * Stops the store thread. The items that are not consumed yet are discarded.
+     */
+    @Override
+    public void close() {
+        if (storeThread.isAlive()) {
+            storeThread.interrupt();
+            try {
+                storeThread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of items waiting for the store stage
+     */
+    public int getQueueSize() {
+        return storeQueue.size();
+    }
+
+    private void store() {
+        try {
+            while (true) {
+                final FutureTask<R> task = storeQueue.take();
+                if (task == endTask) {
+                    return;
+                }
+                try {
+                    final R result = task.get();
+                    if (failure == null) {
+                        consumer.accept(result);
+                    }
+                } catch (final ExecutionException e) {
+                    fail(e.getCause());
+                } catch (final InterruptedException e) {
+                    throw e;
+                } catch (final Throwable t) {
+                    fail(t);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (final InterruptedException e) {
+            // closed by the reader
+            fail(e);
+        }
+    }
+
+    private void fail(final Throwable t) {
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    private void checkFailure() {
+        final Throwable t = failure;
+        if (t == null) {
+            return;
+        }
+        if (t instanceof final RuntimeException e) {
+            throw e;
+        }
+        if (t instanceof final Error e) {
+            throw e;
+        }
+        throw new DataStoreException("Failed to process csv records.", t);
+    }
+}
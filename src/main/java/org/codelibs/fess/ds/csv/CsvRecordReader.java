@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stream of CSV records read from a file.
+ */
+public interface CsvRecordReader extends Closeable {
+
+    /**
+     * Reads the next record.
+     *
+     * @return the values of the record, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    List<String> readValues() throws IOException;
+
+    /**
+     * Returns the number of lines read so far, including skipped and ignored lines.
+     * After {@link #readValues()}, this is the line number of the returned record.
+     *
+     * @return the line number
+     */
+    long getLineNumber();
+
+    /**
+     * Returns the file position after the last record read, including its line break.
+     * A reader opened at this position reads the records that follow.
+     *
+     * @return the byte position in the file, or -1 if the reader does not know it
+     */
+    default long getPosition() {
+        return -1L;
+    }
+
+    /**
+     * Returns a counter of the bytes read from the file, such as the file position.
+     * The difference of two values is the number of bytes read between them, which may include bytes buffered ahead of the records.
+     *
+     * @return the counter of bytes, or -1 if the reader does not count bytes
+     */
+    default long getBytesRead() {
+        return getPosition();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hash table from 64-bit row keys to 64-bit row hashes, stored in a memory-mapped file.
+ * <p>
+ * The table uses open addressing with linear probing, so it holds millions of rows without objects on the heap.
+ * Each slot has a key, a row hash and a long value for the caller, and the key 0 is stored as another key.
+ * The header of the file has the config hash and the generation given by the caller.
+ * </p>
+ */
+public class CsvRowHashTable implements Closeable {
+
+    private static final long MAGIC = 0x435356444c540001L;
+
+    private static final int HEADER_SIZE = 40;
+
+    private static final int SLOT_SIZE = 24;
+
+    private static final int MIN_CAPACITY = 1024;
+
+    /** Maximum number of slots, which keeps the file in a single mapping. */
+    protected static final int MAX_CAPACITY = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE);
+
+    // stored instead of the key 0, which marks an empty slot
+    private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+    private final File file;
+
+    private final boolean writable;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private int capacity;
+
+    private int size;
+
+    private CsvRowHashTable(final File file, final boolean writable) {
+        this.file = file;
+        this.writable = writable;
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param file the file of the table, which is overwritten
+     * @param configHash the config hash stored in the header
+     * @param generation the generation stored in the header
+     * @param expectedSize the expected number of rows
+     * @return the table
+     * @throws IOException if the file cannot be created
+     */
+    public static CsvRowHashTable create(final File file, final long configHash, final long generation, final int expectedSize)
+            throws IOException {
+        final CsvRowHashTable table = new CsvRowHashTable(file, true);
+        Files.deleteIfExists(file.toPath());
+        table.map(getCapacity(expectedSize));
+        table.buffer.putLong(0, MAGIC);
+        table.buffer.putLong(8, configHash);
+        table.buffer.putLong(16, generation);
+        table.buffer.putLong(24, table.capacity);
+        return table;
+    }
+
+    /**
+     * Opens a saved table for reading.
+     *
+     * @param file the file of the table
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static CsvRowHashTable open(final File file) throws IOException {
+        final CsvRowHashTable table = new CsvRowHashTable(file, false);
+        table.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long fileSize = table.channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException(file.getAbsolutePath() + " is not a row hash table.");
+            }
+            table.buffer = table.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            final long capacity = table.buffer.getLong(24);
+            if (table.buffer.getLong(0) != MAGIC || capacity < MIN_CAPACITY || capacity > MAX_CAPACITY
+                    || Long.bitCount(capacity) != 1 || fileSize != HEADER_SIZE + capacity * SLOT_SIZE) {
+                throw new IOException(file.getAbsolutePath() + " is not a row hash table.");
+            }
+            table.capacity = (int) capacity;
+            table.size = (int) table.buffer.getLong(32);
+        } catch (final IOException e) {
+            table.close();
+            throw e;
+        }
+        return table;
+    }
+
+    private static int getCapacity(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity / 2 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void map(final int newCapacity) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+    }
+
+    /**
+     * @return the config hash in the header
+     */
+    public long getConfigHash() {
+        return buffer.getLong(8);
+    }
+
+    /**
+     * @return the generation in the header
+     */
+    public long getGeneration() {
+        return buffer.getLong(16);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key the row key
+     * @return the slot, or -1 if the table does not have the key
+     */
+    public int indexOf(final long key) {
+        final long k = key != 0 ? key : ZERO_KEY;
+        final int mask = capacity - 1;
+        for (int slot = slotOf(k, mask);; slot = slot + 1 & mask) {
+            final long value = buffer.getLong(offsetOf(slot));
+            if (value == k) {
+                return slot;
+            }
+            if (value == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @param slot the slot
+     * @return the key in the slot, or 0 if the slot is empty
+     */
+    public long getKey(final int slot) {
+        return buffer.getLong(offsetOf(slot));
+    }
+
+    /**
+     * @param slot the slot
+     * @return the row hash in the slot
+     */
+    public long getRowHash(final int slot) {
+        return buffer.getLong(offsetOf(slot) + 8);
+    }
+
+    /**
+     * @param slot the slot
+     * @return the value in the slot
+     */
+    public long getValue(final int slot) {
+        return buffer.getLong(offsetOf(slot) + 16);
+    }
+
+    /**
+     * Puts a row into the table, or replaces the row of the key.
+     *
+     * @param key the row key
+     * @param rowHash the row hash
+     * @param value the value of the row
+     * @throws IOException if the table cannot grow
+     */
+    public void put(final long key, final long rowHash, final long value) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException(file.getAbsolutePath() + " is read-only.");
+        }
+        if ((size + 1) * 2L > capacity) {
+            grow();
+        }
+        final long k = key != 0 ? key : ZERO_KEY;
+        final int mask = capacity - 1;
+        int slot = slotOf(k, mask);
+        long current;
+        while ((current = buffer.getLong(offsetOf(slot))) != 0 && current != k) {
+            slot = slot + 1 & mask;
+        }
+        final int offset = offsetOf(slot);
+        if (current == 0) {
+            buffer.putLong(offset, k);
+            size++;
+            buffer.putLong(32, size);
+        }
+        buffer.putLong(offset + 8, rowHash);
+        buffer.putLong(offset + 16, value);
+    }
+
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException(file.getAbsolutePath() + " has too many rows: " + size);
+        }
+        final File growFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".grow");
+        final CsvRowHashTable table = create(growFile, getConfigHash(), getGeneration(), capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            final long key = getKey(slot);
+            if (key != 0) {
+                table.put(key, getRowHash(slot), getValue(slot));
+            }
+        }
+        table.force();
+        table.close();
+        close();
+        Files.move(growFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(table.capacity);
+        size = table.size;
+    }
+
+    /**
+     * Writes the changes of the table to the file.
+     */
+    public void force() {
+        if (writable) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static int slotOf(final long key, final int mask) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private static int offsetOf(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codelibs.core.lang.StringUtil;
+
+/**
+ * Map of a CSV record passed to the scripts of {@link CsvDataStore}.
+ * <p>
+ * The map is a view of three layers: the entries put into the map, the values of the record by the keys of {@link CsvColumnLayout},
+ * and a base map shared by all records of a file, which holds the data store parameters, csvfile, csvfilename and crawlingConfig.
+ * Lookups resolve a key without copying the layers, and the entries are merged only when the map is iterated or an entry is removed.
+ * The merged entries and their order are those of a map filled with the base map, then with the header and cellN keys of
+ * each column, and then with the entries put into this map.
+ * Once merged, the map is backed by the merged entries, so scripts can modify it through its views like any mutable map.
+ * </p>
+ */
+public class CsvRowMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> baseMap;
+
+    private final CsvColumnLayout columnLayout;
+
+    private final List<String> values;
+
+    private Map<String, Object> localMap;
+
+    // all entries once the layers are merged, which replaces the layers
+    private Map<String, Object> mergedMap;
+
+    /**
+     * Creates a map of a record.
+     *
+     * @param baseMap the entries shared by all records of the file, which must not be modified
+     * @param columnLayout the column keys of the file
+     * @param values the values of the record
+     */
+    public CsvRowMap(final Map<String, Object> baseMap, final CsvColumnLayout columnLayout, final List<String> values) {
+        this.baseMap = baseMap;
+        this.columnLayout = columnLayout;
+        this.values = values;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        if (mergedMap != null) {
+            return mergedMap.get(key);
+        }
+        if (localMap != null && localMap.containsKey(key)) {
+            return localMap.get(key);
+        }
+        final int index = columnLayout.getColumnIndex(key, values.size());
+        if (index != -1) {
+            return getValue(index);
+        }
+        return baseMap.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (mergedMap != null) {
+            return mergedMap.containsKey(key);
+        }
+        return localMap != null && localMap.containsKey(key) || columnLayout.getColumnIndex(key, values.size()) != -1
+                || baseMap.containsKey(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        if (mergedMap != null) {
+            return mergedMap.put(key, value);
+        }
+        final Object oldValue = get(key);
+        if (localMap == null) {
+            localMap = new LinkedHashMap<>();
+        }
+        localMap.put(key, value);
+        return oldValue;
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        return merge().remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return merge().entrySet();
+    }
+
+    private Map<String, Object> merge() {
+        if (mergedMap == null) {
+            final Map<String, Object> map = new LinkedHashMap<>(baseMap);
+            for (int i = 0; i < values.size(); i++) {
+                final String headerKey = columnLayout.getHeaderKey(i);
+                if (headerKey != null) {
+                    map.put(headerKey, getValue(i));
+                }
+                map.put(columnLayout.getCellKey(i), getValue(i));
+            }
+            if (localMap != null) {
+                map.putAll(localMap);
+                localMap = null;
+            }
+            mergedMap = map;
+        }
+        return mergedMap;
+    }
+
+    private Object getValue(final int index) {
+        final String value = values.get(index);
+        return value != null ? value : StringUtil.EMPTY;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+
+/**
+ * Crawler stats helper of the rows of a CSV file, which passes the stats of the recorded rows to the crawler stats helper
+ * and drops the stats of the other rows.
+ * <p>
+ * This helper records no row, for crawls that record their stats per batch of documents ({@link CsvBatchStatsKeyObject}) instead.
+ * Subclasses choose the rows to record by {@link #isRecorded(Object)}, which must return the same result for all calls with a key,
+ * and record no batch, so that a document is counted either in its row or in its batch.
+ * The failures of the other rows are still recorded, as entries that begin and end with the failure.
+ * </p>
+ */
+public class CsvRowStatsHelper extends CrawlerStatsHelper {
+
+    /** The crawler stats helper that records the stats. */
+    protected final CrawlerStatsHelper crawlerStatsHelper;
+
+    /**
+     * Creates a helper.
+     *
+     * @param crawlerStatsHelper the crawler stats helper that records the stats
+     */
+    public CsvRowStatsHelper(final CrawlerStatsHelper crawlerStatsHelper) {
+        this.crawlerStatsHelper = crawlerStatsHelper;
+    }
+
+    /**
+     * Checks if the stats of a row or a batch are recorded.
+     *
+     * @param keyObj the stats key of the row or the batch
+     * @return true if the stats are recorded, which is only for batches
+     */
+    protected boolean isRecorded(final Object keyObj) {
+        return keyObj instanceof CsvBatchStatsKeyObject;
+    }
+
+    @Override
+    public void begin(final Object keyObj) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.begin(keyObj);
+        }
+    }
+
+    @Override
+    public void record(final Object keyObj, final StatsAction action) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.record(keyObj, action);
+        } else if (action == StatsAction.EXCEPTION || action == StatsAction.ACCESS_EXCEPTION) {
+            // failures are always recorded
+            crawlerStatsHelper.begin(keyObj);
+            crawlerStatsHelper.record(keyObj, action);
+            crawlerStatsHelper.done(keyObj);
+        }
+    }
+
+    @Override
+    public void record(final Object keyObj, final String action) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.record(keyObj, action);
+        }
+    }
+
+    @Override
+    public void done(final Object keyObj) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.done(keyObj);
+        }
+    }
+
+    @Override
+    public void discard(final Object keyObj) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.discard(keyObj);
+        }
+    }
+
+    @Override
+    public void runOnThread(final Object keyObj) {
+        if (isRecorded(keyObj)) {
+            crawlerStatsHelper.runOnThread(keyObj);
+        }
+    }
+
+    /**
+     * Finishes the stats of the file after all of its rows.
+     */
+    public void finish() {
+        // nothing to record per file
+    }
+}
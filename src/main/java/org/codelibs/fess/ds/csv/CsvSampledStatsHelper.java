@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+
+/**
+ * Crawler stats helper that records the stats of 1 in sampleRate rows of a CSV file, the rows whose line numbers are multiples
+ * of sampleRate, and the failures of all rows. Batches of documents are not recorded.
+ */
+public class CsvSampledStatsHelper extends CsvRowStatsHelper {
+
+    private final int sampleRate;
+
+    /**
+     * Creates a helper.
+     *
+     * @param crawlerStatsHelper the crawler stats helper that records the stats
+     * @param sampleRate the number of rows per recorded row
+     */
+    public CsvSampledStatsHelper(final CrawlerStatsHelper crawlerStatsHelper, final int sampleRate) {
+        super(crawlerStatsHelper);
+        this.sampleRate = Math.max(sampleRate, 1);
+    }
+
+    /**
+     * @return the number of rows per recorded row
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    protected boolean isRecorded(final Object keyObj) {
+        if (keyObj instanceof CsvBatchStatsKeyObject) {
+            // the documents are counted in the sampled rows
+            return false;
+        }
+        if (keyObj instanceof final CsvStatsKeyObject key) {
+            return key.getLineNumber() % sampleRate == 0;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.Map;
+
+/**
+ * Script mapping of {@link CsvDataStore} compiled for the records of a crawl.
+ */
+@FunctionalInterface
+public interface CsvScript {
+
+    /**
+     * Evaluates the script for a record.
+     *
+     * @param paramMap the map of the record
+     * @return the value of the field
+     */
+    Object evaluate(Map<String, Object> paramMap);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.codelibs.fess.script.ScriptEngine;
+
+/**
+ * Compiles the script mappings of a script type once, so that records are evaluated without parsing the script text.
+ * A compiler is registered with {@link CsvDataStore#addScriptCompiler(String, CsvScriptCompiler)}.
+ */
+public interface CsvScriptCompiler {
+
+    /**
+     * Checks if this compiler evaluates scripts in the same way as the script engine.
+     *
+     * @param scriptEngine the script engine registered for the script type
+     * @return true if the scripts of the engine can be compiled
+     */
+    boolean isSupported(ScriptEngine scriptEngine);
+
+    /**
+     * Compiles a script.
+     *
+     * @param template the script text
+     * @return the compiled script
+     * @throws RuntimeException if the script cannot be compiled
+     */
+    CsvScript compile(String template);
+}
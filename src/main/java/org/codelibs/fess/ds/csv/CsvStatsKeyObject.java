@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.codelibs.fess.helper.CrawlerStatsHelper.StatsKeyObject;
+
+/**
+ * Crawler stats key of a row of a CSV file, whose id is file#line.
+ * The id is built when the stats helper asks for it, so rows whose stats are not recorded do not pay for it.
+ */
+public class CsvStatsKeyObject extends StatsKeyObject {
+
+    private final String path;
+
+    private final long lineNumber;
+
+    private String id;
+
+    /**
+     * Creates a key.
+     *
+     * @param path the path of the CSV file
+     * @param lineNumber the line number of the row
+     */
+    public CsvStatsKeyObject(final String path, final long lineNumber) {
+        super(null);
+        this.path = path;
+        this.lineNumber = lineNumber;
+    }
+
+    @Override
+    public String getId() {
+        // a racy build creates equal strings
+        String value = id;
+        if (value == null) {
+            value = path + "#" + lineNumber;
+            id = value;
+        }
+        return value;
+    }
+
+    @Override
+    protected String getUrl() {
+        // the url defaults to the id, which is not passed to the super class
+        final String url = super.getUrl();
+        return url != null ? url : getId();
+    }
+
+    /**
+     * @return the path of the CSV file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the line number of the row
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
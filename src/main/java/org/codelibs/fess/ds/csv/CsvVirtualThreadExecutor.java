@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that runs each task on a new virtual thread, with a semaphore that limits the running tasks instead of a pool size.
+ * <p>
+ * {@link #execute(Runnable)} blocks while maxConcurrency tasks are running, which pushes back on the caller like the
+ * caller-runs policy of a bounded pool. Tasks that block on I/O only hold a permit, not a platform thread,
+ * so thousands of tasks can be in flight.
+ * </p>
+ */
+public class CsvVirtualThreadExecutor extends AbstractExecutorService {
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final ThreadFactory threadFactory;
+
+    private final Set<Thread> threadSet = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates an executor.
+     *
+     * @param name the prefix of the thread names
+     * @param maxConcurrency the maximum number of running tasks
+     */
+    public CsvVirtualThreadExecutor(final String name, final int maxConcurrency) {
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        permits = new Semaphore(this.maxConcurrency);
+        threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+
+    /**
+     * @return the maximum number of running tasks
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the number of running tasks
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The executor is shut down.");
+        }
+        try {
+            permits.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a running task.", e);
+        }
+        try {
+            final Thread thread = threadFactory.newThread(() -> {
+                try {
+                    command.run();
+                } finally {
+                    threadSet.remove(Thread.currentThread());
+                    permits.release();
+                }
+            });
+            threadSet.add(thread);
+            thread.start();
+        } catch (final RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        threadSet.forEach(Thread::interrupt);
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == maxConcurrency;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        // all permits are available when no task is running
+        if (!permits.tryAcquire(maxConcurrency, timeout, unit)) {
+            return false;
+        }
+        permits.release(maxConcurrency);
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream that reads the byte range [start, end) of a file.
+ * Reads are positional, so streams over different ranges of the same file do not interfere.
+ */
+public class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private long position;
+
+    /**
+     * Creates a stream over a byte range of the file.
+     *
+     * @param file the file to read
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public FileRangeInputStream(final File file, final long start, final long end) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.end = end;
+        position = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        final int size = (int) Math.min(len, end - position);
+        final int n = channel.read(ByteBuffer.wrap(b, off, size), position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        final long skipped = Math.min(n, Math.max(Math.min(end, channel.size()) - position, 0));
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * @return the file position of the next byte to read
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codelibs.fess.exception.JobProcessingException;
+import org.codelibs.fess.script.ScriptEngine;
+import org.codelibs.fess.script.groovy.GroovyEngine;
+import org.lastaflute.di.core.factory.SingletonLaContainerFactory;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+
+/**
+ * {@link CsvScriptCompiler} for {@link GroovyEngine}.
+ * A script is parsed into a class once, and each record runs a new instance of the class
+ * with the bindings and error handling of {@link GroovyEngine#evaluate(String, Map)}.
+ * Scripts that only refer to keys of the record are copied by {@link ColumnReferenceScript}.
+ */
+public class GroovyScriptCompiler implements CsvScriptCompiler {
+
+    private static final Logger logger = LogManager.getLogger(GroovyScriptCompiler.class);
+
+    @Override
+    public boolean isSupported(final ScriptEngine scriptEngine) {
+        return scriptEngine instanceof GroovyEngine;
+    }
+
+    @Override
+    public CsvScript compile(final String template) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = GroovyEngine.class.getClassLoader();
+        }
+        final Class<?> scriptClass;
+        try (GroovyClassLoader groovyClassLoader = new GroovyClassLoader(classLoader)) {
+            scriptClass = groovyClassLoader.parseClass(template);
+        } catch (final IOException e) {
+            logger.warn("Failed to close GroovyClassLoader", e);
+            throw new IllegalStateException("Failed to compile Groovy script: " + template, e);
+        }
+        final CsvScript script = paramMap -> evaluate(scriptClass, template, paramMap);
+        final ColumnReferenceScript columnReferenceScript = ColumnReferenceScript.parse(template, script);
+        return columnReferenceScript != null ? columnReferenceScript : script;
+    }
+
+    /**
+     * Runs a compiled script for a record.
+     *
+     * @param scriptClass the class of the script
+     * @param template the script text
+     * @param paramMap the map of the record
+     * @return the result of the script, or null if the script fails
+     */
+    protected Object evaluate(final Class<?> scriptClass, final String template, final Map<String, Object> paramMap) {
+        final Map<String, Object> bindingMap = new HashMap<>(paramMap);
+        bindingMap.put("container", SingletonLaContainerFactory.getContainer());
+        try {
+            return InvokerHelper.createScript(scriptClass, new Binding(bindingMap)).run();
+        } catch (final JobProcessingException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Script raised JobProcessingException", e);
+            }
+            throw e;
+        } catch (final Exception e) {
+            logger.warn("Failed to evaluate Groovy script: template={}, parameters={}", template, paramMap, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,720 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.regex.Pattern;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * {@link CsvRecordReader} that tokenizes a memory-mapped file on bytes.
+ * <p>
+ * Separators, quotes and line breaks are found on the raw bytes, so the file must be in an ASCII-compatible encoding
+ * (see {@link CsvFileSplitter#isSupported(String, CsvConfig)}). A record keeps a copy of its bytes and decodes a value
+ * only when it is read, so cells that are never used are never converted to strings.
+ * Runs of bytes that cannot change the state of a record are skipped with a {@link ByteScanner}.
+ * </p>
+ * <p>
+ * Records and values follow the rules of {@link com.orangesignal.csv.CsvReader} for every option of {@link CsvConfig},
+ * with two differences: a UTF-8 BOM at the beginning of the file is skipped, and ignore_empty_lines and
+ * ignore_line_patterns also apply to lines that follow a CRLF line break.
+ * </p>
+ * <p>
+ * The sizes of a record and of its fields and the number of fields are checked against {@link CsvRecordLimits} while the record
+ * is tokenized, so a quote that is never closed does not grow the window beyond the record limit. A record that exceeds a limit
+ * is skipped to the next physical line after its start, and the reader throws {@link CsvRecordLimitException}.
+ * </p>
+ */
+public class MappedCsvReader implements CsvRecordReader {
+
+    private static final int CR = '\r';
+
+    private static final int LF = '\n';
+
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    private static final int WINDOW_SIZE = 1024 * 1024;
+
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private final int separator;
+
+    private final int quote;
+
+    private final int escape;
+
+    private final int skipLines;
+
+    private final boolean ignoreEmptyLines;
+
+    private final Pattern[] ignoreLinePatterns;
+
+    private final boolean variableColumns;
+
+    private final ValueDecoder decoder;
+
+    private final int maxRecordBytes;
+
+    private final int maxFieldBytes;
+
+    private final int maxColumns;
+
+    // finds the end of an unquoted field
+    private final ByteScanner fieldScanner;
+
+    // finds the end of a quoted field
+    private final ByteScanner quotedScanner;
+
+    private final ByteScanner lineScanner;
+
+    private MappedByteBuffer segment;
+
+    private long segmentStart;
+
+    // file position of the next byte copied to the window
+    private long readPosition;
+
+    private byte[] window = new byte[WINDOW_SIZE];
+
+    private int pos;
+
+    private int limit;
+
+    private long lineNumber;
+
+    private boolean skipped;
+
+    private boolean endOfFile;
+
+    // the last record ended with CR, so LF that follows belongs to it
+    private boolean cr;
+
+    private int numOfColumns = -1;
+
+    // cells of the current record, relative to the start of the record
+    private int[] cellStarts = new int[16];
+
+    private int[] cellEnds = new int[16];
+
+    private boolean[] cellEnclosed = new boolean[16];
+
+    private int cellCount;
+
+    /**
+     * Creates a reader for the byte range [start, end) of the file.
+     * The range must start at the beginning of a line.
+     *
+     * @param file the CSV file
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end)
+            throws IOException {
+        this(file, encoding, csvConfig, start, end, false);
+    }
+
+    /**
+     * Creates a reader for the byte range [start, end) of the file.
+     * The range must start at the beginning of a line.
+     *
+     * @param file the CSV file
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @param vectorized whether bytes are scanned with the Vector API if it is available
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end,
+            final boolean vectorized) throws IOException {
+        this(file, encoding, csvConfig, start, end, vectorized, CsvRecordLimits.NONE);
+    }
+
+    /**
+     * Creates a reader for the byte range [start, end) of the file with limits of the records.
+     * The range must start at the beginning of a line.
+     *
+     * @param file the CSV file
+     * @param encoding the file encoding
+     * @param csvConfig the CSV configuration
+     * @param start the first byte to read
+     * @param end the end of the range (exclusive), or Long.MAX_VALUE to read to the end of the file
+     * @param vectorized whether bytes are scanned with the Vector API if it is available
+     * @param limits the limits of the records
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end,
+            final boolean vectorized, final CsvRecordLimits limits) throws IOException {
+        csvConfig.validate();
+        maxRecordBytes = CsvRecordLimits.valueOf(limits.maxRecordBytes());
+        maxFieldBytes = CsvRecordLimits.valueOf(limits.maxFieldBytes());
+        maxColumns = CsvRecordLimits.valueOf(limits.maxColumns());
+        final Charset charset = Charset.forName(encoding);
+        separator = csvConfig.getSeparator();
+        quote = csvConfig.isQuoteDisabled() ? -1 : csvConfig.getQuote();
+        escape = csvConfig.isEscapeDisabled() ? -1 : csvConfig.getEscape();
+        skipLines = csvConfig.getSkipLines();
+        ignoreEmptyLines = csvConfig.isIgnoreEmptyLines();
+        ignoreLinePatterns = csvConfig.getIgnoreLinePatterns();
+        variableColumns = csvConfig.isVariableColumns();
+        decoder = new ValueDecoder(charset, csvConfig);
+        final int[] fieldTargets =
+                quote == -1 && escape != -1 ? new int[] { separator, CR, LF, escape } : new int[] { separator, CR, LF };
+        final int[] quotedTargets = escape != -1 && escape != quote ? new int[] { quote, escape } : new int[] { quote };
+        fieldScanner = vectorized ? ByteScanner.vector(fieldTargets) : ByteScanner.scalar(fieldTargets);
+        quotedScanner = vectorized ? ByteScanner.vector(quotedTargets) : ByteScanner.scalar(quotedTargets);
+        lineScanner = vectorized ? ByteScanner.vector(CR, LF) : ByteScanner.scalar(CR, LF);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.end = Math.min(end, channel.size());
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        readPosition = start;
+        if (start == 0 && StandardCharsets.UTF_8.equals(charset) && fill(0) != -1 && limit >= 3 && (window[0] & 0xff) == 0xef
+                && (window[1] & 0xff) == 0xbb && (window[2] & 0xff) == 0xbf) {
+            pos = 3;
+        }
+    }
+
+    @Override
+    public List<String> readValues() throws IOException {
+        if (endOfFile) {
+            return null;
+        }
+        if (!skipped) {
+            for (int i = 0; i < skipLines; i++) {
+                skipLine();
+                lineNumber++;
+            }
+            skipped = true;
+        }
+        while ((ignoreEmptyLines || ignoreLinePatterns != null) && isIgnoredLine()) {
+            skipLine();
+            lineNumber++;
+        }
+        return readRecord();
+    }
+
+    @Override
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public long getPosition() {
+        long position = readPosition - limit + pos;
+        if (cr) {
+            // the LF of CRLF belongs to the last record
+            if (pos < limit) {
+                return window[pos] == LF ? position + 1 : position;
+            }
+            if (position < end) {
+                final ByteBuffer buffer = ByteBuffer.allocate(1);
+                try {
+                    if (channel.read(buffer, position) == 1 && buffer.get(0) == LF) {
+                        position++;
+                    }
+                } catch (final IOException e) {
+                    return -1L;
+                }
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        window = null;
+        channel.close();
+    }
+
+    private List<String> readRecord() throws IOException {
+        consumeLf();
+        int recordStart = pos;
+        int tokenStart = pos;
+        cellCount = 0;
+        boolean inQuote = false;
+        boolean enclosed = false;
+        boolean escaped = false;
+        boolean separatorEscaped = false;
+        boolean blank = true;
+        byte[] bytes = window;
+        int i = pos;
+        while (true) {
+            if (i >= limit) {
+                // the window only grows for a record within the limits
+                if (i - recordStart > maxRecordBytes) {
+                    throw skipRecord(recordStart, "A CSV record exceeds " + maxRecordBytes + " bytes");
+                }
+                if (i - tokenStart > maxFieldBytes) {
+                    throw skipRecord(recordStart, "A CSV field exceeds " + maxFieldBytes + " bytes");
+                }
+                pos = i;
+                final int shift = fill(recordStart);
+                if (shift == -1) {
+                    addCell(recordStart, tokenStart, i, enclosed || escaped);
+                    endOfFile = true;
+                    break;
+                }
+                i -= shift;
+                tokenStart -= shift;
+                recordStart -= shift;
+                bytes = window;
+            }
+            if (!inQuote) {
+                // bytes after the first non-whitespace of a field only matter if they end the field
+                if (!separatorEscaped && (!blank || quote == -1)) {
+                    final int next = fieldScanner.indexOf(bytes, i, limit);
+                    if (next != i) {
+                        blank = false;
+                        i = next;
+                        continue;
+                    }
+                }
+            } else if (!escaped && quote != -1) {
+                final int next = quotedScanner.indexOf(bytes, i, limit);
+                if (next != i) {
+                    i = next;
+                    continue;
+                }
+            }
+            final int c = bytes[i] & 0xff;
+            if (separatorEscaped && c == separator) {
+                separatorEscaped = false;
+                blank = false;
+                i++;
+                continue;
+            }
+            separatorEscaped = false;
+            if (!inQuote) {
+                if (c == separator) {
+                    addCell(recordStart, tokenStart, i, enclosed || escaped);
+                    tokenStart = ++i;
+                    enclosed = false;
+                    escaped = false;
+                    blank = true;
+                    continue;
+                }
+                if (c == CR || c == LF) {
+                    addCell(recordStart, tokenStart, i, enclosed || escaped);
+                    cr = c == CR;
+                    i++;
+                    break;
+                }
+                if (quote != -1 && !enclosed && c == quote) {
+                    if (blank) {
+                        inQuote = true;
+                    }
+                } else if (quote == -1 && escape != -1 && c == escape) {
+                    separatorEscaped = true;
+                }
+                blank = blank && isWhitespace(c);
+            } else {
+                if (escape != -1 && quote == escape) {
+                    if (escaped) {
+                        if (c == separator) {
+                            addCell(recordStart, tokenStart, i, true);
+                            tokenStart = ++i;
+                            inQuote = false;
+                            enclosed = false;
+                            escaped = false;
+                            blank = true;
+                            continue;
+                        }
+                        if (c == CR || c == LF) {
+                            addCell(recordStart, tokenStart, i, true);
+                            cr = c == CR;
+                            i++;
+                            break;
+                        }
+                        if (c == escape) {
+                            escaped = false;
+                            i++;
+                            continue;
+                        }
+                    } else if (c == escape) {
+                        escaped = true;
+                        i++;
+                        continue;
+                    }
+                }
+                if (c == quote && !escaped) {
+                    inQuote = false;
+                    enclosed = true;
+                }
+                escaped = escape != -1 && c == escape;
+            }
+            i++;
+        }
+        if (i - recordStart > maxRecordBytes) {
+            throw skipRecord(recordStart, "A CSV record exceeds " + maxRecordBytes + " bytes");
+        }
+        pos = i;
+        lineNumber++;
+
+        final int recordEnd = i - recordStart;
+        final Record record = new Record(decoder, Arrays.copyOfRange(window, recordStart, recordStart + recordEnd),
+                Arrays.copyOf(cellStarts, cellCount), Arrays.copyOf(cellEnds, cellCount), Arrays.copyOf(cellEnclosed, cellCount));
+        if (endOfFile && cellCount == 1) {
+            final String value = record.get(0);
+            if (ignoreEmptyLines && value != null && isWhitespaces(value)) {
+                return null;
+            }
+            if (ignoreLinePatterns != null && value != null) {
+                for (final Pattern p : ignoreLinePatterns) {
+                    if (p != null && p.matcher(value).matches()) {
+                        return null;
+                    }
+                }
+            }
+        }
+        if (!variableColumns) {
+            if (numOfColumns >= 0 && numOfColumns != cellCount) {
+                throw new IOException(String.format("Invalid column count in CSV input on line %d.", lineNumber));
+            }
+            numOfColumns = cellCount;
+        }
+        return record;
+    }
+
+    private void addCell(final int recordStart, final int start, final int end, final boolean enclosed) throws IOException {
+        if (cellCount >= maxColumns) {
+            throw skipRecord(recordStart, "A CSV record exceeds " + maxColumns + " columns");
+        }
+        if (end - start > maxFieldBytes) {
+            throw skipRecord(recordStart, "A CSV field exceeds " + maxFieldBytes + " bytes");
+        }
+        if (cellCount == cellStarts.length) {
+            final int size = cellCount * 2;
+            cellStarts = Arrays.copyOf(cellStarts, size);
+            cellEnds = Arrays.copyOf(cellEnds, size);
+            cellEnclosed = Arrays.copyOf(cellEnclosed, size);
+        }
+        cellStarts[cellCount] = start - recordStart;
+        cellEnds[cellCount] = end - recordStart;
+        cellEnclosed[cellCount] = enclosed;
+        cellCount++;
+    }
+
+    /**
+     * Skips a record that exceeds a limit to the next physical line after its start.
+     *
+     * @param recordStart the window index of the record
+     * @param message the limit that the record exceeds
+     * @return the exception to throw for the record
+     */
+    private CsvRecordLimitException skipRecord(final int recordStart, final String message) throws IOException {
+        pos = recordStart;
+        cr = false;
+        lineNumber++;
+        endOfFile = !discardLine();
+        return new CsvRecordLimitException(message + ".", lineNumber);
+    }
+
+    /**
+     * Checks if the line at the current position is ignored by ignore_empty_lines or ignore_line_patterns.
+     * A line longer than the record limit is not ignored.
+     */
+    private boolean isIgnoredLine() throws IOException {
+        consumeLf();
+        final int lineEnd = findLineEnd();
+        if (lineEnd == -1) {
+            return false;
+        }
+        if (lineEnd == pos && pos >= limit) {
+            // end of file
+            return false;
+        }
+        if (ignoreEmptyLines) {
+            boolean ascii = true;
+            boolean whitespaces = true;
+            for (int i = pos; i < lineEnd && whitespaces; i++) {
+                final int c = window[i] & 0xff;
+                if (c >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+                whitespaces = Character.isWhitespace(c);
+            }
+            if (whitespaces && (ascii || isWhitespaces(decoder.decode(window, pos, lineEnd)))) {
+                return true;
+            }
+        }
+        if (ignoreLinePatterns != null) {
+            final String line = decoder.decode(window, pos, lineEnd);
+            for (final Pattern p : ignoreLinePatterns) {
+                if (p != null && p.matcher(line).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void skipLine() throws IOException {
+        consumeLf();
+        discardLine();
+    }
+
+    /**
+     * Moves the current position after the next CR or LF, discarding the bytes of the line from the window.
+     *
+     * @return false if the file ends without a line break
+     */
+    private boolean discardLine() throws IOException {
+        int i = lineScanner.indexOf(window, pos, limit);
+        while (i >= limit) {
+            pos = limit;
+            if (fill(pos) == -1) {
+                return false;
+            }
+            i = lineScanner.indexOf(window, pos, limit);
+        }
+        cr = window[i] == CR;
+        pos = i + 1;
+        return true;
+    }
+
+    /**
+     * Finds CR or LF from the current position, keeping the line in the window.
+     *
+     * @return the window index of the line break, the window limit if the file ends without a line break,
+     *         or -1 if the line exceeds the record limit
+     */
+    private int findLineEnd() throws IOException {
+        int i = lineScanner.indexOf(window, pos, limit);
+        while (i >= limit) {
+            if (i - pos > maxRecordBytes) {
+                return -1;
+            }
+            final int shift = fill(pos);
+            if (shift == -1) {
+                return limit;
+            }
+            i = lineScanner.indexOf(window, i - shift, limit);
+        }
+        return i;
+    }
+
+    private void consumeLf() throws IOException {
+        if (cr) {
+            cr = false;
+            if (pos >= limit && fill(pos) == -1) {
+                return;
+            }
+            if (window[pos] == LF) {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Reads more bytes into the window, discarding the bytes before keepFrom.
+     *
+     * @param keepFrom the first window index to keep
+     * @return the number of bytes the kept data moved, or -1 at the end of the range
+     */
+    private int fill(final int keepFrom) throws IOException {
+        if (readPosition >= end) {
+            return -1;
+        }
+        if (keepFrom > 0) {
+            System.arraycopy(window, keepFrom, window, 0, limit - keepFrom);
+            limit -= keepFrom;
+            pos -= keepFrom;
+        } else if (limit == window.length) {
+            if (window.length >= MAX_WINDOW_SIZE) {
+                throw new IOException("A CSV record exceeds " + MAX_WINDOW_SIZE + " bytes.");
+            }
+            window = Arrays.copyOf(window, (int) Math.min((long) window.length * 2, MAX_WINDOW_SIZE));
+        }
+        int size = (int) Math.min(window.length - limit, end - readPosition);
+        while (size > 0) {
+            if (segment == null || readPosition >= segmentStart + segment.capacity()) {
+                segmentStart = readPosition;
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, end - segmentStart));
+            }
+            final int length = (int) Math.min(size, segmentStart + segment.capacity() - readPosition);
+            segment.get((int) (readPosition - segmentStart), window, limit, length);
+            limit += length;
+            readPosition += length;
+            size -= length;
+        }
+        return keepFrom;
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c < 0x80 && Character.isWhitespace(c);
+    }
+
+    static boolean isWhitespaces(final CharSequence value) {
+        final int len = value.length();
+        for (int i = 0; i < len; i++) {
+            if (!Character.isWhitespace(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts the bytes of a cell into its value with the post-processing rules of the OrangeSignal CSV reader.
+     */
+    static class ValueDecoder {
+        private final Charset charset;
+
+        private final char quote;
+
+        private final String escapedQuote;
+
+        private final String escapedSeparator;
+
+        private final String separator;
+
+        private final boolean escapeDisabled;
+
+        private final boolean ignoreLeadingWhitespaces;
+
+        private final boolean ignoreTrailingWhitespaces;
+
+        private final String breakString;
+
+        private final String nullString;
+
+        private final boolean ignoreCaseNullString;
+
+        ValueDecoder(final Charset charset, final CsvConfig csvConfig) {
+            this.charset = charset;
+            quote = csvConfig.getQuote();
+            escapedQuote = new String(new char[] { csvConfig.getEscape(), csvConfig.getQuote() });
+            escapedSeparator = new String(new char[] { csvConfig.getEscape(), csvConfig.getSeparator() });
+            separator = String.valueOf(csvConfig.getSeparator());
+            escapeDisabled = csvConfig.isEscapeDisabled();
+            ignoreLeadingWhitespaces = csvConfig.isIgnoreLeadingWhitespaces();
+            ignoreTrailingWhitespaces = csvConfig.isIgnoreTrailingWhitespaces();
+            breakString = csvConfig.getBreakString();
+            nullString = csvConfig.getNullString();
+            ignoreCaseNullString = csvConfig.isIgnoreCaseNullString();
+        }
+
+        String decode(final byte[] bytes, final int start, final int end) {
+            return new String(bytes, start, end - start, charset);
+        }
+
+        String decodeValue(final byte[] bytes, final int start, final int end, final boolean quoted) {
+            String value = decode(bytes, start, end);
+            boolean enclosed = quoted;
+            if (enclosed) {
+                // not enclosed if there are characters after the last quote
+                final int i = value.lastIndexOf(quote) + 1;
+                if (i < value.length() && !isWhitespaces(value.substring(i + 1))) {
+                    enclosed = false;
+                }
+            }
+            if (ignoreLeadingWhitespaces || enclosed) {
+                value = value.stripLeading();
+            }
+            if (ignoreTrailingWhitespaces || enclosed) {
+                value = value.stripTrailing();
+            }
+            if (enclosed) {
+                if (value.length() >= 2) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                if (breakString != null) {
+                    value = value.replaceAll("\r\n|\r|\n", breakString);
+                }
+                if (!escapeDisabled) {
+                    value = value.replace(escapedQuote, String.valueOf(quote));
+                }
+            } else {
+                if (nullString != null && (ignoreCaseNullString ? nullString.equalsIgnoreCase(value) : nullString.equals(value))) {
+                    return null;
+                }
+                if (!escapeDisabled) {
+                    value = value.replace(escapedSeparator, separator);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Values of a record, decoded on first access.
+     */
+    static class Record extends AbstractList<String> implements RandomAccess {
+        private static final String NOT_DECODED = new String();
+
+        private final ValueDecoder decoder;
+
+        private final byte[] bytes;
+
+        private final int[] starts;
+
+        private final int[] ends;
+
+        private final boolean[] enclosed;
+
+        private final String[] values;
+
+        Record(final ValueDecoder decoder, final byte[] bytes, final int[] starts, final int[] ends, final boolean[] enclosed) {
+            this.decoder = decoder;
+            this.bytes = bytes;
+            this.starts = starts;
+            this.ends = ends;
+            this.enclosed = enclosed;
+            values = new String[starts.length];
+            Arrays.fill(values, NOT_DECODED);
+        }
+
+        @Override
+        public String get(final int index) {
+            String value = values[index];
+            if (value == NOT_DECODED) {
+                value = decoder.decodeValue(bytes, starts[index], ends[index], enclosed[index]);
+                values[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
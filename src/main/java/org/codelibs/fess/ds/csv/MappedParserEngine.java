@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * Parser engine that tokenizes memory-mapped files on bytes with {@link MappedCsvReader}.
+ * It supports ASCII-compatible encodings only.
+ */
+public class MappedParserEngine implements CsvParserEngine {
+
+    private final boolean vectorized;
+
+    /**
+     * Creates an engine that scans bytes one at a time.
+     */
+    public MappedParserEngine() {
+        this(false);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param vectorized whether bytes are scanned with the Vector API if it is available
+     */
+    public MappedParserEngine(final boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    @Override
+    public boolean isSupported(final String encoding, final CsvConfig csvConfig) {
+        return CsvFileSplitter.isSupported(encoding, csvConfig);
+    }
+
+    @Override
+    public CsvRecordReader open(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end)
+            throws IOException {
+        return new MappedCsvReader(file, encoding, csvConfig, start, end, vectorized);
+    }
+
+    @Override
+    public CsvRecordReader open(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end,
+            final CsvRecordLimits limits) throws IOException {
+        return new MappedCsvReader(file, encoding, csvConfig, start, end, vectorized, limits);
+    }
+}
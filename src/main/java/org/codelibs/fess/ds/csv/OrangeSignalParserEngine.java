@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import com.orangesignal.csv.CsvConfig;
+
+/**
+ * Default parser engine backed by the OrangeSignal CSV reader. It supports any encoding.
+ */
+public class OrangeSignalParserEngine implements CsvParserEngine {
+
+    @Override
+    public boolean isSupported(final String encoding, final CsvConfig csvConfig) {
+        return true;
+    }
+
+    @Override
+    public CsvRecordReader open(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end)
+            throws IOException {
+        return open(file, encoding, csvConfig, start, end, CsvRecordLimits.NONE);
+    }
+
+    @Override
+    public CsvRecordReader open(final File file, final String encoding, final CsvConfig csvConfig, final long start, final long end,
+            final CsvRecordLimits limits) throws IOException {
+        final InputStream in =
+                start == 0L && end == Long.MAX_VALUE ? new FileInputStream(file) : new FileRangeInputStream(file, start, end);
+        final CsvCountingInputStream countingStream = new CsvCountingInputStream(in);
+        return new OrangeSignalRecordReader(new BufferedReader(new InputStreamReader(countingStream, encoding)), csvConfig, countingStream,
+                limits);
+    }
+}
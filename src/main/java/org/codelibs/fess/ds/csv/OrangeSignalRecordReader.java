@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import com.orangesignal.csv.CsvConfig;
+import com.orangesignal.csv.CsvReader;
+
+/**
+ * {@link CsvRecordReader} backed by the OrangeSignal CSV reader.
+ * <p>
+ * The OrangeSignal CSV reader cannot check the size of a record while it tokenizes it, so the record limit bounds the characters
+ * that it reads with a {@link CsvBoundedReader}. A record that exceeds the record limit is skipped to the next physical line
+ * after the point where it exceeded the limit, and a new CSV reader continues from there. The columns and the field sizes,
+ * in characters, are checked on the parsed records.
+ * </p>
+ */
+public class OrangeSignalRecordReader implements CsvRecordReader {
+
+    private CsvReader csvReader;
+
+    private final CsvCountingInputStream countingStream;
+
+    private final CsvRecordLimits limits;
+
+    private final CsvBoundedReader boundedReader;
+
+    // configuration of the CSV readers that continue after a skipped record
+    private final CsvConfig resumeConfig;
+
+    // lines read by the previous CSV readers
+    private long lineOffset;
+
+    /**
+     * Creates a record reader.
+     *
+     * @param csvReader the CSV reader to read records from
+     */
+    public OrangeSignalRecordReader(final CsvReader csvReader) {
+        this(csvReader, null);
+    }
+
+    /**
+     * Creates a record reader that counts the bytes read from the file.
+     *
+     * @param csvReader the CSV reader to read records from
+     * @param countingStream the stream that the CSV reader reads, or null if bytes are not counted
+     */
+    public OrangeSignalRecordReader(final CsvReader csvReader, final CsvCountingInputStream countingStream) {
+        this.csvReader = csvReader;
+        this.countingStream = countingStream;
+        limits = CsvRecordLimits.NONE;
+        boundedReader = null;
+        resumeConfig = null;
+    }
+
+    /**
+     * Creates a record reader that checks the records against limits.
+     *
+     * @param reader the reader of the file
+     * @param csvConfig the CSV configuration
+     * @param countingStream the stream that the reader reads, or null if bytes are not counted
+     * @param limits the limits of the records
+     */
+    public OrangeSignalRecordReader(final Reader reader, final CsvConfig csvConfig, final CsvCountingInputStream countingStream,
+            final CsvRecordLimits limits) {
+        this.countingStream = countingStream;
+        this.limits = limits;
+        if (limits.maxRecordBytes() > 0) {
+            boundedReader = new CsvBoundedReader(reader, limits.maxRecordBytes());
+            resumeConfig = csvConfig.clone();
+            resumeConfig.setSkipLines(0);
+            csvReader = newCsvReader(csvConfig);
+        } else {
+            boundedReader = null;
+            resumeConfig = null;
+            csvReader = new CsvReader(reader, csvConfig);
+        }
+    }
+
+    private CsvReader newCsvReader(final CsvConfig csvConfig) {
+        // a buffer of one character does not read ahead of the records
+        return new CsvReader(boundedReader, 1, csvConfig);
+    }
+
+    @Override
+    public List<String> readValues() throws IOException {
+        if (boundedReader == null) {
+            return checkLimits(csvReader.readValues());
+        }
+        boundedReader.startRecord();
+        final long recordLineNumber = boundedReader.getLineCount() + 1;
+        final List<String> values = csvReader.readValues();
+        if (boundedReader.isExceeded()) {
+            boundedReader.skipLine();
+            lineOffset = boundedReader.getLineCount();
+            csvReader = newCsvReader(resumeConfig);
+            throw new CsvRecordLimitException("A CSV record exceeds " + limits.maxRecordBytes() + " characters.", recordLineNumber);
+        }
+        return checkLimits(values);
+    }
+
+    private List<String> checkLimits(final List<String> values) throws CsvRecordLimitException {
+        final String message = limits.check(values);
+        if (message != null) {
+            throw new CsvRecordLimitException(message + ".", getLineNumber());
+        }
+        return values;
+    }
+
+    @Override
+    public long getLineNumber() {
+        return lineOffset + csvReader.getLineNumber();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return countingStream != null ? countingStream.getCount() : -1L;
+    }
+
+    @Override
+    public void close() throws IOException {
+        csvReader.close();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Decompressor of zip archives, whose entries are passed to the handler in the order of the archive.
+ */
+public class ZipDecompressor implements CsvDecompressor {
+
+    @Override
+    public boolean isArchive() {
+        return true;
+    }
+
+    @Override
+    public void decompress(final File file, final EntryHandler handler) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE))) {
+            // the handler does not close the archive
+            final FilterInputStream entryIn = new FilterInputStream(in) {
+                @Override
+                public void close() {
+                }
+            };
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    handler.handle(entry.getName(), entryIn);
+                }
+            }
+        }
+    }
+}
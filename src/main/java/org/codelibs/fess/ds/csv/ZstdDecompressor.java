@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+
+/**
+ * Decompressor of zstd files with zstd-jni, which is available if its jar is in the class path of Fess.
+ */
+public class ZstdDecompressor implements CsvDecompressor {
+
+    private static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+    private final Constructor<?> constructor;
+
+    private ZstdDecompressor(final Constructor<?> constructor) {
+        this.constructor = constructor;
+    }
+
+    /**
+     * Creates a decompressor if zstd-jni is available.
+     *
+     * @return the decompressor, or null if zstd-jni is not in the class path
+     */
+    public static ZstdDecompressor create() {
+        try {
+            return new ZstdDecompressor(Class.forName(ZSTD_INPUT_STREAM).getConstructor(InputStream.class));
+        } catch (final ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void decompress(final File file, final EntryHandler handler) throws IOException {
+        final InputStream fileIn = new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE);
+        final InputStream zstdIn;
+        try {
+            zstdIn = (InputStream) constructor.newInstance(fileIn);
+        } catch (final InvocationTargetException e) {
+            fileIn.close();
+            throw e.getCause() instanceof final IOException ioe ? ioe : new IOException("Failed to open " + file.getAbsolutePath(), e);
+        } catch (final ReflectiveOperationException e) {
+            fileIn.close();
+            throw new IOException("Failed to open " + file.getAbsolutePath(), e);
+        }
+        try (InputStream in = new BufferedInputStream(zstdIn, BUFFER_SIZE)) {
+            handler.handle(null, in);
+        }
+    }
+}
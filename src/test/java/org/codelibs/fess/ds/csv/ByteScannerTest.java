@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.Random;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class ByteScannerTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_scalar() {
+        byte[] bytes = "abc,def\n".getBytes();
+        ByteScanner scanner = ByteScanner.scalar(',', '\n');
+        assertEquals(3, scanner.indexOf(bytes, 0, bytes.length));
+        assertEquals(7, scanner.indexOf(bytes, 4, bytes.length));
+        assertEquals(6, scanner.indexOf(bytes, 4, 6));
+        assertEquals(2, scanner.indexOf(bytes, 2, 2));
+    }
+
+    public void test_vector() {
+        Random random = new Random(1);
+        for (int n = 0; n < 200; n++) {
+            byte[] bytes = new byte[random.nextInt(300)];
+            for (int i = 0; i < bytes.length; i++) {
+                // mostly plain bytes, including non-ASCII bytes
+                bytes[i] = random.nextInt(40) == 0 ? (byte) ",\t\"\r\n".charAt(random.nextInt(5)) : (byte) (0x41 + random.nextInt(0xb0));
+            }
+            ByteScanner scalar = ByteScanner.scalar('\t', '\r', '\n', '"');
+            ByteScanner vector = ByteScanner.vector('\t', '\r', '\n', '"');
+            ByteScanner vector1 = ByteScanner.vector('"');
+            ByteScanner scalar1 = ByteScanner.scalar('"');
+            for (int from = 0; from < bytes.length; from += 1 + random.nextInt(20)) {
+                int to = from + random.nextInt(bytes.length - from + 1);
+                assertEquals(scalar.indexOf(bytes, from, to), vector.indexOf(bytes, from, to));
+                assertEquals(scalar1.indexOf(bytes, from, to), vector1.indexOf(bytes, from, to));
+            }
+        }
+    }
+
+    public void test_isVectorAvailable() {
+        // the vector scanner is only built by the vector profile
+        boolean built = ByteScanner.class.getResource("VectorByteScanner.class") != null;
+        assertEquals(built && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), ByteScanner.isVectorAvailable());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class ColumnReferenceScriptTest extends ContainerTestCase {
+
+    private static final CsvScript FALLBACK = paramMap -> "fallback";
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_parse() {
+        assertNotNull(ColumnReferenceScript.parse("name", FALLBACK));
+        assertNotNull(ColumnReferenceScript.parse(" cell1 ", FALLBACK));
+        assertNotNull(ColumnReferenceScript.parse("name + ' ' + cell2", FALLBACK));
+        assertNotNull(ColumnReferenceScript.parse("\"[\"+_id+\"]\"", FALLBACK));
+        assertNotNull(ColumnReferenceScript.parse("'a' + 'b'", FALLBACK));
+
+        assertNull(ColumnReferenceScript.parse("", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("'a'", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name.toUpperCase()", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name +", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name + + cell1", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name cell1", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name - cell1", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("Name", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("null", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("name + 'a\\'b'", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("\"${name}\" + cell1", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("'''a''' + cell1", FALLBACK));
+        assertNull(ColumnReferenceScript.parse("'a", FALLBACK));
+    }
+
+    public void test_evaluate() {
+        Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("name", "Taro");
+        paramMap.put("cell2", "");
+        paramMap.put("nullValue", null);
+        paramMap.put("number", 1);
+
+        assertEquals("Taro", ColumnReferenceScript.parse("name", FALLBACK).evaluate(paramMap));
+        assertEquals(1, ColumnReferenceScript.parse("number", FALLBACK).evaluate(paramMap));
+        assertNull(ColumnReferenceScript.parse("nullValue", FALLBACK).evaluate(paramMap));
+        assertEquals("fallback", ColumnReferenceScript.parse("missing", FALLBACK).evaluate(paramMap));
+
+        assertEquals("[Taro]", ColumnReferenceScript.parse("'[' + name + cell2 + \"]\"", FALLBACK).evaluate(paramMap));
+        assertEquals("fallback", ColumnReferenceScript.parse("name + missing", FALLBACK).evaluate(paramMap));
+        assertEquals("fallback", ColumnReferenceScript.parse("name + number", FALLBACK).evaluate(paramMap));
+        assertEquals("fallback", ColumnReferenceScript.parse("name + nullValue", FALLBACK).evaluate(paramMap));
+    }
+}
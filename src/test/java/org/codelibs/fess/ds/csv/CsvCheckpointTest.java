@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvCheckpointTest extends ContainerTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        tempDir = Files.createTempDirectory("csv_checkpoint").toFile();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : tempDir.listFiles()) {
+            file.delete();
+        }
+        tempDir.delete();
+        super.tearDown();
+    }
+
+    public void test_saveAndLoad() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "id,name\n1,a\n2,b\n");
+        File stateFile = new File(tempDir, "test.checkpoint");
+
+        CsvCheckpoint checkpoint = CsvCheckpoint.load(stateFile, csvFile);
+        assertNull(checkpoint.getRange(0L, Long.MAX_VALUE));
+        assertNull(checkpoint.getHeaderList());
+        assertFalse(checkpoint.isCompleted());
+
+        checkpoint.setHeaderList(List.of("id", "name"));
+        checkpoint.setRange(new CsvCheckpoint.Range(0L, 100L, 12L, 2L, false));
+        checkpoint.setRange(new CsvCheckpoint.Range(100L, Long.MAX_VALUE, -1L, 5L, true));
+        List<String> commitList = new ArrayList<>();
+        checkpoint.save(() -> commitList.add("commit"));
+        assertEquals(1, commitList.size());
+        assertTrue(stateFile.exists());
+
+        CsvCheckpoint loaded = CsvCheckpoint.load(stateFile, csvFile);
+        assertEquals(List.of("id", "name"), loaded.getHeaderList());
+        assertEquals(new CsvCheckpoint.Range(0L, 100L, 12L, 2L, false), loaded.getRange(0L, 100L));
+        assertEquals(new CsvCheckpoint.Range(100L, Long.MAX_VALUE, -1L, 5L, true), loaded.getRange(100L, Long.MAX_VALUE));
+        // a range with another end is another split of the file
+        assertNull(loaded.getRange(0L, 200L));
+        assertFalse(loaded.isCompleted());
+
+        loaded.complete();
+        loaded.save(() -> {});
+        assertTrue(CsvCheckpoint.load(stateFile, csvFile).isCompleted());
+
+        loaded.delete();
+        assertFalse(stateFile.exists());
+    }
+
+    public void test_load_changedFile() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "1,a\n");
+        File stateFile = new File(tempDir, "test.checkpoint");
+
+        CsvCheckpoint checkpoint = CsvCheckpoint.load(stateFile, csvFile);
+        checkpoint.setRange(new CsvCheckpoint.Range(0L, Long.MAX_VALUE, 4L, 1L, false));
+        checkpoint.save(() -> {});
+
+        Files.writeString(csvFile.toPath(), "1,a\n2,b\n");
+        assertNull(CsvCheckpoint.load(stateFile, csvFile).getRange(0L, Long.MAX_VALUE));
+    }
+
+    public void test_save_failedCommit() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "1,a\n");
+        File stateFile = new File(tempDir, "test.checkpoint");
+
+        CsvCheckpoint checkpoint = CsvCheckpoint.load(stateFile, csvFile);
+        checkpoint.setRange(new CsvCheckpoint.Range(0L, Long.MAX_VALUE, 4L, 1L, false));
+        try {
+            checkpoint.save(() -> {
+                throw new IllegalStateException("commit");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // the records are not committed
+        }
+        assertFalse(stateFile.exists());
+    }
+}
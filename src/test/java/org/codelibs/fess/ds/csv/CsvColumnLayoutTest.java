@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.Arrays;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvColumnLayoutTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_noHeader() {
+        CsvColumnLayout layout = new CsvColumnLayout(null);
+        assertNull(layout.getHeaderKey(0));
+        assertEquals("cell1", layout.getCellKey(0));
+        assertSame(layout.getCellKey(9), layout.getCellKey(9));
+        assertEquals("cell1000", layout.getCellKey(999));
+        assertEquals(0, layout.getColumnIndex("cell1", 1));
+        assertEquals(-1, layout.getColumnIndex("cell2", 1));
+        assertEquals(999, layout.getColumnIndex("cell1000", 1000));
+        assertEquals(-1, layout.getColumnIndex("cell1000", 999));
+        assertEquals(-1, layout.getColumnIndex("cell01", 1000));
+        assertEquals(-1, layout.getColumnIndex("cellx", 1000));
+        assertEquals(-1, layout.getColumnIndex(null, 1000));
+    }
+
+    public void test_header() {
+        CsvColumnLayout layout = new CsvColumnLayout(Arrays.asList("id", "", " ", "id", "cell1", null));
+        assertEquals("id", layout.getHeaderKey(0));
+        assertNull(layout.getHeaderKey(1));
+        assertNull(layout.getHeaderKey(2));
+        assertEquals("cell1", layout.getHeaderKey(4));
+        assertNull(layout.getHeaderKey(5));
+        assertNull(layout.getHeaderKey(6));
+
+        assertEquals(0, layout.getColumnIndex("id", 3));
+        assertEquals(3, layout.getColumnIndex("id", 4));
+        assertEquals(0, layout.getColumnIndex("cell1", 4));
+        assertEquals(4, layout.getColumnIndex("cell1", 5));
+        assertEquals(-1, layout.getColumnIndex("", 5));
+        assertEquals(-1, layout.getColumnIndex(" ", 5));
+        assertEquals(-1, layout.getColumnIndex("id", 0));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvCrawlMetricsTest extends ContainerTestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    private static class TestCrawlMetrics extends CsvCrawlMetrics {
+
+        long time = SECOND;
+
+        TestCrawlMetrics(final String name) {
+            super(name);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return time;
+        }
+    }
+
+    public void test_fileMetrics() {
+        TestCrawlMetrics metrics = new TestCrawlMetrics("test");
+        metrics.time = 0L;
+        CsvCrawlMetrics.FileMetrics file1 = metrics.openFile("/tmp/1.csv", 5000);
+        CsvCrawlMetrics.FileMetrics file2 = metrics.openFile("/tmp/2.csv", -1);
+        assertEquals(2, metrics.getActiveFiles().length);
+
+        for (int i = 0; i < 10; i++) {
+            file1.addRow(100);
+            file1.record(CsvCrawlMetrics.Stage.READ, 1000);
+            file1.record(CsvCrawlMetrics.Stage.STORE, 2000);
+        }
+        file2.addRow(0);
+        file2.record(CsvCrawlMetrics.Stage.CONVERT, 3000);
+        metrics.time = 2 * SECOND;
+
+        assertEquals(10L, file1.getRows());
+        assertEquals(1000L, file1.getBytes());
+        assertEquals(5.0, file1.getRowsPerSecond());
+        assertEquals(500.0, file1.getBytesPerSecond());
+        assertEquals(10L, file1.getHistogram(CsvCrawlMetrics.Stage.READ).getCount());
+        assertEquals(0L, file1.getHistogram(CsvCrawlMetrics.Stage.CONVERT).getCount());
+        assertEquals("/tmp/1.csv: 10 rows, 1000 of 5000 bytes (20.0%) in 2000 ms (5.0 rows/s, 500.0 bytes/s), ETA 8000 ms",
+                file1.toString());
+        assertTrue(file1.getStageSummaries()[2].startsWith("store: count=10, "));
+
+        assertEquals(11L, metrics.getRows());
+        assertEquals(1000L, metrics.getBytes());
+        assertEquals(5.5, metrics.getRowsPerSecond());
+        assertEquals(10L, metrics.getHistogram(CsvCrawlMetrics.Stage.READ).getCount());
+        assertEquals(1L, metrics.getHistogram(CsvCrawlMetrics.Stage.CONVERT).getCount());
+        assertEquals(3, metrics.getStageSummaries().length);
+
+        file1.finish();
+        file1.finish();
+        assertEquals(1L, metrics.getCompletedFiles());
+        assertEquals(1, metrics.getActiveFiles().length);
+        assertEquals("/tmp/2.csv: 1 rows, 0 bytes in 2000 ms (0.5 rows/s, 0.0 bytes/s)", metrics.getActiveFiles()[0]);
+    }
+
+    public void test_progress() {
+        TestCrawlMetrics metrics = new TestCrawlMetrics("test");
+        metrics.time = 0L;
+        CsvCrawlMetrics.FileMetrics file = metrics.openFile("/tmp/1.csv", 10000);
+        // the header and the records before a resume
+        file.skipBytes(1000);
+        assertEquals(1000L, file.getProgressBytes());
+        assertEquals(0.1, file.getProgress(), 0.0001);
+        assertEquals(-1L, file.getEtaMillis());
+
+        for (int i = 0; i < 10; i++) {
+            file.addRow(100);
+        }
+        metrics.time = SECOND;
+        // the average rate until the first sample
+        assertEquals(1000.0, file.getCurrentBytesPerSecond());
+        assertEquals(8000L, file.getEtaMillis());
+        file.sample();
+
+        for (int i = 0; i < 10; i++) {
+            file.addRow(200);
+        }
+        metrics.time = 2 * SECOND;
+        file.sample();
+        assertEquals(10.0, file.getCurrentRowsPerSecond());
+        assertEquals(2000.0, file.getCurrentBytesPerSecond());
+        assertEquals(1500.0, file.getBytesPerSecond());
+        assertEquals(0.4, file.getProgress(), 0.0001);
+        assertEquals(3000L, file.getEtaMillis());
+        assertEquals("/tmp/1.csv: 20 rows, 4000 of 10000 bytes (40.0%) in 2000 ms (10.0 rows/s, 2000.0 bytes/s), ETA 3000 ms",
+                file.toString());
+
+        file.setTotalBytes(-1);
+        assertEquals(-1.0, file.getProgress());
+        assertEquals(-1L, file.getEtaMillis());
+        file.finish();
+    }
+
+    public void test_startProgressReport() throws Exception {
+        java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(3);
+        CsvCrawlMetrics metrics = new CsvCrawlMetrics("test") {
+            @Override
+            protected void reportProgress() {
+                super.reportProgress();
+                latch.countDown();
+            }
+        };
+        CsvCrawlMetrics.FileMetrics file = metrics.openFile("/tmp/1.csv", 100);
+        file.addRow(10);
+        metrics.startProgressReport(10);
+        metrics.startProgressReport(10);
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            metrics.stopProgressReport();
+            metrics.stopProgressReport();
+        }
+        // the rows since the last sample
+        assertEquals(0.0, file.getCurrentRowsPerSecond());
+        file.finish();
+    }
+
+    public void test_register() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CsvCrawlMetrics metrics = new CsvCrawlMetrics("csv \"test\"");
+        assertTrue(metrics.register());
+        try {
+            ObjectName objectName = metrics.getObjectName();
+            assertEquals(ObjectName.quote("csv \"test\""), objectName.getKeyProperty("name"));
+            assertTrue(server.isRegistered(objectName));
+            metrics.openFile("/tmp/1.csv", -1).addRow(10);
+            assertEquals(1L, server.getAttribute(objectName, "Rows"));
+            assertEquals(10L, server.getAttribute(objectName, "Bytes"));
+
+            // a crawl of the same data config is not registered twice
+            CsvCrawlMetrics other = new CsvCrawlMetrics("csv \"test\"");
+            assertFalse(other.register());
+            assertNull(other.getObjectName());
+            other.unregister();
+            assertTrue(server.isRegistered(objectName));
+
+            metrics.unregister();
+            assertFalse(server.isRegistered(objectName));
+            assertNull(metrics.getObjectName());
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
@@ -21,6 +21,10 @@ import org.dbflute.utflute.lastadi.ContainerTestCase;
 public class CsvDataStoreTest extends ContainerTestCase {
     public CsvDataStore dataStore;
 
+    private java.util.Map<Object, String> statsKeyIdMap;
+
+    private volatile int commitCount;
+
     @Override
     protected String prepareConfigFile() {
         return "test_app.xml";
@@ -689,4 +693,1440 @@ public class CsvDataStoreTest extends ContainerTestCase {
         paramMap.put("has_header_line", "False");
         assertFalse(dataStore.hasHeaderLine(paramMap));
     }
+
+    public void test_getFileThreads_default() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+
+        assertEquals(1, dataStore.getFileThreads(paramMap));
+    }
+
+    public void test_getFileThreads_custom() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        paramMap.put("file_threads", "4");
+
+        assertEquals(4, dataStore.getFileThreads(paramMap));
+    }
+
+    public void test_getFileThreads_invalid() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+
+        paramMap.put("file_threads", "invalid");
+        assertEquals(1, dataStore.getFileThreads(paramMap));
+
+        paramMap.put("file_threads", "0");
+        assertEquals(1, dataStore.getFileThreads(paramMap));
+    }
+
+    public void test_storeData_file_threads() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_file_threads").toFile();
+        try {
+            for (int i = 0; i < 5; i++) {
+                StringBuilder buf = new StringBuilder("id,name\n");
+                for (int j = 0; j < (i + 1) * 10; j++) {
+                    buf.append(i).append('-').append(j).append(",name").append(j).append('\n');
+                }
+                java.nio.file.Files.writeString(new java.io.File(tempDir, "data" + i + ".csv").toPath(), buf.toString());
+            }
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("file_threads", "3");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+
+            assertEquals(150, docList.size());
+            java.util.Set<Object> titleSet = new java.util.HashSet<>();
+            docList.forEach(doc -> titleSet.add(doc.get("title")));
+            assertEquals(150, titleSet.size());
+            assertTrue(titleSet.contains("0-0"));
+            assertTrue(titleSet.contains("4-49"));
+            assertNull(paramMap.get(org.codelibs.fess.Constants.CRAWLER_STATS_KEY));
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_storeData_file_threads_stopped() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_file_threads").toFile();
+        try {
+            for (int i = 0; i < 3; i++) {
+                java.nio.file.Files.writeString(new java.io.File(tempDir, "data" + i + ".csv").toPath(), "a\nb\n");
+            }
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("file_threads", "2");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            dataStore.stop();
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+
+            assertEquals(0, docList.size());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_getSplitThreads_default() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(1, dataStore.getSplitThreads(paramMap));
+    }
+
+    public void test_getSplitThreads_custom() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        paramMap.put("split_threads", "8");
+        assertEquals(8, dataStore.getSplitThreads(paramMap));
+        paramMap.put("split_threads", "x");
+        assertEquals(1, dataStore.getSplitThreads(paramMap));
+    }
+
+    public void test_getSplitSize() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(64L * 1024 * 1024, dataStore.getSplitSize(paramMap));
+        paramMap.put("split_size", "1000");
+        assertEquals(1000L, dataStore.getSplitSize(paramMap));
+        paramMap.put("split_size", "x");
+        assertEquals(64L * 1024 * 1024, dataStore.getSplitSize(paramMap));
+    }
+
+    public void test_storeData_split_threads() throws Exception {
+        assertSplitThreads("orangesignal");
+        assertSplitThreads("mmap");
+    }
+
+    private void assertSplitThreads(String parserEngine) throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_split", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id,body\n");
+            for (int i = 0; i < 200; i++) {
+                if (i % 3 == 0) {
+                    buf.append(i).append(",\"line1\nline2, \"\"quoted\"\"\"\n");
+                } else {
+                    buf.append(i).append(",body").append(i).append('\n');
+                }
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("quote_disabled", "false");
+            paramMap.put("escape_character", "\"");
+            paramMap.put("escape_disabled", "false");
+            paramMap.put("split_threads", "4");
+            paramMap.put("split_size", "100");
+            paramMap.put("parser_engine", parserEngine);
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "body");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+
+            assertEquals(200, docList.size());
+            for (java.util.Map<String, Object> doc : docList) {
+                int id = Integer.parseInt((String) doc.get("title"));
+                if (id % 3 == 0) {
+                    assertEquals("line1\nline2, \"quoted\"", doc.get("content"));
+                } else {
+                    assertEquals("body" + id, doc.get("content"));
+                }
+                // the header is line 1
+                assertEquals(csvFile.getAbsolutePath() + "#" + (id + 2), statsKeyIdMap.get(doc.get("title")));
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getParserEngineName() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals("orangesignal", dataStore.getParserEngineName(paramMap));
+        paramMap.put("parser_engine", " MMAP ");
+        assertEquals("mmap", dataStore.getParserEngineName(paramMap));
+    }
+
+    public void test_storeData_mmap() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_mmap", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,\"a,b\"\n2,c\n\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("quote_disabled", "false");
+            paramMap.put("parser_engine", "mmap");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+
+            assertEquals(2, docList.size());
+            assertEquals("1", docList.get(0).get("title"));
+            assertEquals("a,b", docList.get(0).get("content"));
+            assertEquals("c", docList.get(1).get("content"));
+            assertEquals(csvFile.getAbsolutePath() + "#3", statsKeyIdMap.get("2"));
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_addParserEngine() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_engine", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "a\nb\n");
+            java.util.List<String> openList = new java.util.ArrayList<>();
+            dataStore.addParserEngine("Custom", new CsvParserEngine() {
+                @Override
+                public boolean isSupported(String encoding, com.orangesignal.csv.CsvConfig csvConfig) {
+                    return true;
+                }
+
+                @Override
+                public CsvRecordReader open(java.io.File file, String encoding, com.orangesignal.csv.CsvConfig csvConfig, long start,
+                        long end) throws java.io.IOException {
+                    openList.add(file.getName());
+                    return new OrangeSignalParserEngine().open(file, encoding, csvConfig, start, end);
+                }
+            });
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("parser_engine", "custom");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+            assertEquals(java.util.List.of(csvFile.getName()), openList);
+
+            // unknown engines fall back to the default engine
+            paramMap.put("parser_engine", "unknown");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+            assertEquals(1, openList.size());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_groovyScript() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_script", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,a\n2,b\n3\n");
+            org.codelibs.fess.script.ScriptEngineFactory scriptEngineFactory = new org.codelibs.fess.script.ScriptEngineFactory();
+            scriptEngineFactory.add("groovy", new org.codelibs.fess.script.groovy.GroovyEngine());
+            ComponentUtil.register(scriptEngineFactory, "scriptEngineFactory");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            java.util.Map<String, String> scriptMap = new java.util.LinkedHashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name + ':' + cell1 + ':' + csvfilename");
+            scriptMap.put("broken", "name +");
+            scriptMap.put("empty", "");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(3, docList.size());
+            assertEquals("1", docList.get(0).get("title"));
+            assertEquals("a:1:" + csvFile.getName(), docList.get(0).get("content"));
+            assertEquals("b:2:" + csvFile.getName(), docList.get(1).get("content"));
+            // the script fails without the name column, as before
+            assertFalse(docList.get(2).containsKey("content"));
+            assertFalse(docList.get(0).containsKey("broken"));
+            assertEquals("", docList.get(0).get("empty"));
+            // scripts that fail to compile are not cached
+            assertEquals(2, dataStore.scriptCache.size());
+
+            assertEquals(3, storeData(paramMap, scriptMap).size());
+            assertEquals(2, dataStore.scriptCache.size());
+
+            dataStore.scriptCacheSize = 1;
+            scriptMap.put("content", "name.toUpperCase()");
+            docList = storeData(paramMap, scriptMap);
+            assertEquals("A", docList.get(0).get("content"));
+            assertEquals(1, dataStore.scriptCache.size());
+        } finally {
+            ComponentUtil.register(new org.codelibs.fess.script.ScriptEngineFactory(), "scriptEngineFactory");
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_scriptWithoutCompiler() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_script", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "1,a\n");
+            org.codelibs.fess.script.ScriptEngineFactory scriptEngineFactory = new org.codelibs.fess.script.ScriptEngineFactory();
+            scriptEngineFactory.add("upper", (template, params) -> String.valueOf(params.get(template.trim())).toUpperCase());
+            ComponentUtil.register(scriptEngineFactory, "scriptEngineFactory");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("script_type", "upper");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", " cell2");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(1, docList.size());
+            assertEquals("A", docList.get(0).get("title"));
+            assertTrue(dataStore.scriptCache.isEmpty());
+        } finally {
+            ComponentUtil.register(new org.codelibs.fess.script.ScriptEngineFactory(), "scriptEngineFactory");
+            csvFile.delete();
+        }
+    }
+
+    public void test_getCheckpointInterval() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        paramMap.put("delete_old_docs", "false");
+        assertEquals(0L, dataStore.getCheckpointInterval(paramMap));
+        paramMap.put("checkpoint_interval", "1000");
+        assertEquals(1000L, dataStore.getCheckpointInterval(paramMap));
+        paramMap.put("checkpoint_interval", "x");
+        assertEquals(0L, dataStore.getCheckpointInterval(paramMap));
+
+        // the records before a checkpoint would be deleted by Fess
+        paramMap.put("checkpoint_interval", "1000");
+        paramMap.put("delete_old_docs", "true");
+        assertEquals(0L, dataStore.getCheckpointInterval(paramMap));
+    }
+
+    public void test_storeData_checkpoint_aborted() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_checkpoint", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id");
+            for (int i = 1; i <= 10; i++) {
+                buf.append('\n').append(i);
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+            dataStore = new CsvDataStore() {
+                @Override
+                protected void storeDocument(CsvFileContext context, org.codelibs.fess.entity.DataStoreParams rowParamMap,
+                        CsvDocument document) {
+                    if ("5".equals(document.dataMap().get("title"))) {
+                        context.abort();
+                        return;
+                    }
+                    super.storeDocument(context, rowParamMap, document);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("checkpoint_interval", "3");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            java.io.File checkpointFile = dataStore.getCheckpointFile(paramMap, csvFile);
+
+            // the crawl finishes, but the aborted file keeps its checkpoint
+            assertEquals(4, storeData(paramMap, scriptMap).size());
+            assertTrue(checkpointFile.exists());
+
+            dataStore = new CsvDataStore();
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(7, docList.size());
+            assertEquals("4", docList.get(0).get("title"));
+            assertFalse(checkpointFile.exists());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getCheckpointFile() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        java.io.File csvFile = new java.io.File("/data/csv/test.csv");
+        assertEquals(new java.io.File("/data/csv/.test.csv.checkpoint"), dataStore.getCheckpointFile(paramMap, csvFile));
+        paramMap.put("checkpoint_dir", "/var/fess");
+        java.io.File checkpointFile = dataStore.getCheckpointFile(paramMap, csvFile);
+        assertEquals(new java.io.File("/var/fess"), checkpointFile.getParentFile());
+        assertTrue(checkpointFile.getName().startsWith("test.csv."));
+        assertFalse(checkpointFile.equals(dataStore.getCheckpointFile(paramMap, new java.io.File("/data/csv2/test.csv"))));
+    }
+
+    public void test_storeData_checkpoint() throws Exception {
+        assertCheckpoint("orangesignal");
+        assertCheckpoint("mmap");
+    }
+
+    private void assertCheckpoint(String parserEngine) throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_checkpoint", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id,name\r\n");
+            for (int i = 1; i <= 10; i++) {
+                buf.append(i).append(",name").append(i).append("\r\n");
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("parser_engine", parserEngine);
+            paramMap.put("checkpoint_interval", "3");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name");
+            java.io.File checkpointFile = dataStore.getCheckpointFile(paramMap, csvFile);
+
+            // the crawl is stopped after 5 records
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap, 5);
+            assertEquals(5, docList.size());
+            assertTrue(checkpointFile.exists());
+            assertTrue(commitCount > 0);
+
+            dataStore = new CsvDataStore();
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(5, docList.size());
+            assertEquals("6", docList.get(0).get("title"));
+            assertEquals("name6", docList.get(0).get("content"));
+            assertEquals("10", docList.get(4).get("title"));
+            assertEquals(csvFile.getAbsolutePath() + "#7", statsKeyIdMap.get("6"));
+            assertFalse(checkpointFile.exists());
+
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(10, docList.size());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_pipeline() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_pipeline", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id,name\n");
+            for (int i = 1; i <= 200; i++) {
+                buf.append(i).append(",name").append(i).append('\n');
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("transform_threads", "4");
+            paramMap.put("pipeline_queue_size", "8");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(200, docList.size());
+            for (int i = 0; i < 200; i++) {
+                // stored in the order of the file
+                assertEquals(Integer.toString(i + 1), docList.get(i).get("title"));
+                assertEquals("name" + (i + 1), docList.get(i).get("content"));
+            }
+            assertEquals(csvFile.getAbsolutePath() + "#101", statsKeyIdMap.get("100"));
+
+            // the records in flight when the crawl stops are not covered by the checkpoint
+            paramMap.put("checkpoint_interval", "3");
+            paramMap.put("delete_old_docs", "false");
+            docList = storeData(paramMap, scriptMap, 5);
+            assertEquals(5, docList.size());
+            dataStore = new CsvDataStore();
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(195, docList.size());
+            assertEquals("6", docList.get(0).get("title"));
+            assertFalse(dataStore.getCheckpointFile(paramMap, csvFile).exists());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_storeBatch() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_batch", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id\n");
+            for (int i = 1; i <= 10; i++) {
+                buf.append(i).append('\n');
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("store_batch_size", "4");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(10, docList.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Integer.toString(i + 1), docList.get(i).get("title"));
+            }
+            // one stats key per batch
+            assertEquals(csvFile.getAbsolutePath() + "#2-5", statsKeyIdMap.get("1"));
+            assertEquals(csvFile.getAbsolutePath() + "#2-5", statsKeyIdMap.get("4"));
+            assertEquals(csvFile.getAbsolutePath() + "#6-9", statsKeyIdMap.get("5"));
+            assertEquals(csvFile.getAbsolutePath() + "#10-11", statsKeyIdMap.get("10"));
+
+            paramMap.put("transform_threads", "2");
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(10, docList.size());
+            assertEquals("10", docList.get(9).get("title"));
+            assertEquals(csvFile.getAbsolutePath() + "#10-11", statsKeyIdMap.get("10"));
+
+            // a batch is stored before a checkpoint is saved
+            paramMap.put("transform_threads", "0");
+            paramMap.put("checkpoint_interval", "3");
+            paramMap.put("delete_old_docs", "false");
+            docList = storeData(paramMap, scriptMap, 5);
+            assertEquals(6, docList.size());
+            assertEquals(csvFile.getAbsolutePath() + "#2-4", statsKeyIdMap.get("1"));
+            dataStore = new CsvDataStore();
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(4, docList.size());
+            assertEquals("7", docList.get(0).get("title"));
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getStoreBatchSize() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(1, dataStore.getStoreBatchSize(paramMap));
+        assertEquals(10L * 1024 * 1024, dataStore.getStoreBatchBytes(paramMap));
+        org.codelibs.fess.helper.CrawlerStatsHelper crawlerStatsHelper = new org.codelibs.fess.helper.CrawlerStatsHelper();
+        ComponentUtil.register(crawlerStatsHelper, "crawlerStatsHelper");
+        assertSame(crawlerStatsHelper, dataStore.getRowStatsHelper(paramMap, new java.io.File("test.csv")));
+        paramMap.put("store_batch_size", "100");
+        paramMap.put("store_batch_bytes", "1000");
+        assertEquals(100, dataStore.getStoreBatchSize(paramMap));
+        assertEquals(1000L, dataStore.getStoreBatchBytes(paramMap));
+        assertTrue(dataStore.getRowStatsHelper(paramMap, new java.io.File("test.csv")) instanceof CsvRowStatsHelper);
+        paramMap.put("store_batch_size", "x");
+        paramMap.put("store_batch_bytes", "x");
+        assertEquals(1, dataStore.getStoreBatchSize(paramMap));
+        assertEquals(10L * 1024 * 1024, dataStore.getStoreBatchBytes(paramMap));
+    }
+
+    public void test_getStatsMode() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        java.io.File csvFile = new java.io.File("test.csv");
+        org.codelibs.fess.helper.CrawlerStatsHelper crawlerStatsHelper = new org.codelibs.fess.helper.CrawlerStatsHelper();
+        ComponentUtil.register(crawlerStatsHelper, "crawlerStatsHelper");
+        assertEquals("row", dataStore.getStatsMode(paramMap));
+        assertEquals(100, dataStore.getStatsSampleRate(paramMap));
+        assertSame(crawlerStatsHelper, dataStore.getRowStatsHelper(paramMap, csvFile));
+
+        paramMap.put("stats_mode", "Sample");
+        paramMap.put("stats_sample_rate", "10");
+        assertEquals("sample", dataStore.getStatsMode(paramMap));
+        assertEquals(10, dataStore.getStatsSampleRate(paramMap));
+        assertEquals(10, ((CsvSampledStatsHelper) dataStore.getRowStatsHelper(paramMap, csvFile)).getSampleRate());
+
+        paramMap.put("stats_mode", "file");
+        assertTrue(dataStore.getRowStatsHelper(paramMap, csvFile) instanceof CsvFileStatsHelper);
+        paramMap.put("store_batch_size", "10");
+        assertTrue(dataStore.getRowStatsHelper(paramMap, csvFile) instanceof CsvFileStatsHelper);
+        paramMap.put("stats_mode", "row");
+        assertEquals(CsvRowStatsHelper.class, dataStore.getRowStatsHelper(paramMap, csvFile).getClass());
+
+        paramMap.put("stats_mode", "x");
+        paramMap.put("stats_sample_rate", "x");
+        assertEquals("row", dataStore.getStatsMode(paramMap));
+        assertEquals(100, dataStore.getStatsSampleRate(paramMap));
+    }
+
+    public void test_storeData_fileStats() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_stats", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "1\n2\n3\n");
+            java.util.List<CsvFileStatsHelper> statsHelperList = new java.util.ArrayList<>();
+            dataStore = new CsvDataStore() {
+                @Override
+                protected void finishRowStats(CsvFileContext context) {
+                    statsHelperList.add((CsvFileStatsHelper) context.getCrawlerStatsHelper());
+                    super.finishRowStats(context);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("stats_mode", "file");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(3, docList.size());
+            // the callback still gets the key of each row
+            assertEquals(csvFile.getAbsolutePath() + "#2", statsKeyIdMap.get("2"));
+            assertEquals(1, statsHelperList.size());
+            assertEquals(3L, statsHelperList.get(0).getCount(org.codelibs.fess.helper.CrawlerStatsHelper.StatsAction.FINISHED));
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_fileStats_batch() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_stats", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "1\n2\n3\n4\n5");
+            java.util.List<String> eventList = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+            org.codelibs.fess.helper.CrawlerStatsHelper recorder = new org.codelibs.fess.helper.CrawlerStatsHelper() {
+                @Override
+                public void begin(Object keyObj) {
+                    eventList.add("begin:" + ((StatsKeyObject) keyObj).getId());
+                }
+
+                @Override
+                public void record(Object keyObj, StatsAction action) {
+                    eventList.add(action.name().toLowerCase() + ":" + ((StatsKeyObject) keyObj).getId());
+                }
+
+                @Override
+                public void record(Object keyObj, String action) {
+                    eventList.add(action + ":" + ((StatsKeyObject) keyObj).getId());
+                }
+
+                @Override
+                public void done(Object keyObj) {
+                    eventList.add("done:" + ((StatsKeyObject) keyObj).getId());
+                }
+
+                @Override
+                public void discard(Object keyObj) {
+                    eventList.add("discard:" + ((StatsKeyObject) keyObj).getId());
+                }
+            };
+            java.util.List<org.codelibs.fess.helper.CrawlerStatsHelper> statsHelperList = new java.util.ArrayList<>();
+            dataStore = new CsvDataStore() {
+                @Override
+                protected org.codelibs.fess.helper.CrawlerStatsHelper getRowStatsHelper(org.codelibs.fess.entity.DataStoreParams paramMap,
+                        java.io.File csvFile) {
+                    // the batches would be recorded by the crawler stats helper if they did not go through the helper of the file
+                    ComponentUtil.register(recorder, "crawlerStatsHelper");
+                    return super.getRowStatsHelper(paramMap, csvFile);
+                }
+
+                @Override
+                protected void storeDocuments(CsvFileContext context, org.codelibs.fess.entity.DataStoreParams rowParamMap,
+                        java.util.List<CsvDocument> documentList) {
+                    statsHelperList.add(context.getCrawlerStatsHelper());
+                    super.storeDocuments(context, rowParamMap, documentList);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("stats_mode", "file");
+            paramMap.put("store_batch_size", "2");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            assertEquals(csvFile.getAbsolutePath() + "#1-2", statsKeyIdMap.get("1"));
+            // the file is recorded as one entry, and its batches are not recorded
+            String path = csvFile.getAbsolutePath();
+            assertEquals(java.util.List.of("begin:" + path, "finished:" + path, "done:" + path), eventList);
+            assertEquals(3, statsHelperList.size());
+            CsvFileStatsHelper statsHelper = (CsvFileStatsHelper) statsHelperList.get(0);
+            assertSame(statsHelper, statsHelperList.get(2));
+            assertEquals(5L, statsHelper.getRows());
+            assertEquals(5L, statsHelper.getCount(org.codelibs.fess.helper.CrawlerStatsHelper.StatsAction.FINISHED));
+
+            // only the sampled rows are recorded
+            eventList.clear();
+            paramMap.put("stats_mode", "sample");
+            paramMap.put("stats_sample_rate", "2");
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            java.util.List<String> expectedList = new java.util.ArrayList<>();
+            for (String line : new String[] { "#2", "#4" }) {
+                for (String action : new String[] { "begin:", "prepared:", "evaluated:", "finished:", "done:" }) {
+                    expectedList.add(action + path + line);
+                }
+            }
+            assertEquals(expectedList, eventList);
+
+            // only the batches are recorded
+            eventList.clear();
+            paramMap.put("stats_mode", "row");
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            assertEquals(java.util.List.of("begin:" + path + "#1-2", "finished:" + path + "#1-2", "done:" + path + "#1-2",
+                    "begin:" + path + "#3-4", "finished:" + path + "#3-4", "done:" + path + "#3-4", "begin:" + path + "#5-5",
+                    "finished:" + path + "#5-5", "done:" + path + "#5-5"), eventList);
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_recordLimits() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_limits", ".csv");
+        try {
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,title\n1,a\n\"2,runaway\n3,c\n4,d,extra\n5,eeeeee\n6,f");
+            java.util.List<String> failureList = new java.util.ArrayList<>();
+            ComponentUtil.register(new org.codelibs.fess.app.service.FailureUrlService() {
+                @Override
+                public org.codelibs.fess.opensearch.config.exentity.FailureUrl store(
+                        org.codelibs.fess.opensearch.config.exentity.CrawlingConfig crawlingConfig, String errorName, String url,
+                        Throwable e) {
+                    failureList.add(url + " " + e.getMessage());
+                    return null;
+                }
+            }, org.codelibs.fess.app.service.FailureUrlService.class.getCanonicalName());
+
+            for (String engine : new String[] { "orangesignal", "mmap" }) {
+                failureList.clear();
+                org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+                paramMap.put("files", csvFile.getAbsolutePath());
+                paramMap.put("has_header_line", "true");
+                paramMap.put("quote_disabled", "false");
+                paramMap.put("parser_engine", engine);
+                paramMap.put("max_record_bytes", "10");
+                paramMap.put("max_field_bytes", "5");
+                paramMap.put("max_columns", "2");
+                java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+                scriptMap.put("title", "id");
+
+                java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+                assertEquals(engine, java.util.List.of("1", "3", "6"), docList.stream().map(doc -> doc.get("title")).toList());
+                assertEquals(engine, csvFile.getAbsolutePath() + "#4", statsKeyIdMap.get("3"));
+                assertEquals(engine, csvFile.getAbsolutePath() + "#7", statsKeyIdMap.get("6"));
+                assertEquals(engine, 3, failureList.size());
+                assertTrue(engine + ": " + failureList,
+                        failureList.get(0).startsWith(csvFile.getAbsolutePath() + ":3 A CSV record exceeds 10"));
+                assertEquals(engine, csvFile.getAbsolutePath() + ":5 A CSV record exceeds 2 columns.", failureList.get(1));
+                assertEquals(engine, csvFile.getAbsolutePath() + ":6 A CSV field exceeds 5 bytes.", failureList.get(2));
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getRecordLimits() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(new CsvRecordLimits(64 * 1024 * 1024, 0, 0), dataStore.getRecordLimits(paramMap));
+
+        paramMap.put("max_record_bytes", "1000");
+        paramMap.put("max_field_bytes", "100");
+        paramMap.put("max_columns", "10");
+        assertEquals(new CsvRecordLimits(1000, 100, 10), dataStore.getRecordLimits(paramMap));
+
+        paramMap.put("max_record_bytes", "0");
+        paramMap.put("max_field_bytes", "-1");
+        paramMap.put("max_columns", "x");
+        assertEquals(CsvRecordLimits.NONE, dataStore.getRecordLimits(paramMap));
+        assertFalse(dataStore.getRecordLimits(paramMap).isLimited());
+    }
+
+    public void test_storeData_metrics() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_metrics", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id");
+            for (int i = 1; i <= 10; i++) {
+                buf.append('\n').append(i);
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            java.util.List<CsvCrawlMetrics> metricsList = new java.util.ArrayList<>();
+            java.util.List<Boolean> registeredList = new java.util.ArrayList<>();
+            dataStore = new CsvDataStore() {
+                @Override
+                protected void closeMetrics(org.codelibs.fess.entity.DataStoreParams paramMap) {
+                    CsvCrawlMetrics metrics = metricsMap.get(paramMap);
+                    metricsList.add(metrics);
+                    registeredList.add(java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                            .isRegistered(metrics.getObjectName()));
+                    super.closeMetrics(paramMap);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("parser_engine", "mmap");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(10, docList.size());
+            assertEquals(1, metricsList.size());
+            assertTrue(registeredList.get(0));
+            CsvCrawlMetrics metrics = metricsList.get(0);
+            assertNull(metrics.getObjectName());
+            assertTrue(dataStore.metricsMap.isEmpty());
+            assertEquals(1L, metrics.getCompletedFiles());
+            assertEquals(0, metrics.getActiveFiles().length);
+            assertEquals(10L, metrics.getRows());
+            // the records without the header line
+            assertEquals(csvFile.length() - 3, metrics.getBytes());
+            // and the read at the end of the file
+            assertEquals(11L, metrics.getHistogram(CsvCrawlMetrics.Stage.READ).getCount());
+            assertEquals(10L, metrics.getHistogram(CsvCrawlMetrics.Stage.CONVERT).getCount());
+            assertEquals(10L, metrics.getHistogram(CsvCrawlMetrics.Stage.STORE).getCount());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_progress() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_progress", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id,name");
+            for (int i = 1; i <= 2000; i++) {
+                buf.append('\n').append(i).append(",name").append(i);
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            java.util.List<CsvCrawlMetrics.FileMetrics> metricsList = new java.util.ArrayList<>();
+            dataStore = new CsvDataStore() {
+                @Override
+                protected void finishFileMetrics(CsvFileContext context) {
+                    metricsList.add(context.getMetrics());
+                    super.finishFileMetrics(context);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("progress_interval", "10");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            // bytes are counted by a counting stream under the default parser engine
+            assertEquals(2000, storeData(paramMap, scriptMap).size());
+            paramMap.put("parser_engine", "mmap");
+            assertEquals(2000, storeData(paramMap, scriptMap).size());
+            assertEquals(2, metricsList.size());
+            for (CsvCrawlMetrics.FileMetrics metrics : metricsList) {
+                assertEquals(csvFile.length(), metrics.getTotalBytes());
+                assertEquals(csvFile.length(), metrics.getProgressBytes());
+                assertEquals(1.0, metrics.getProgress());
+                assertEquals(0L, metrics.getEtaMillis());
+                assertEquals(2000L, metrics.getRows());
+                assertTrue(metrics.getBytes() > 0);
+            }
+            // the header line is not a record
+            assertEquals(csvFile.length() - 8, metricsList.get(1).getBytes());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getProgressInterval() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(60000L, dataStore.getProgressInterval(paramMap));
+        paramMap.put("progress_interval", "1000");
+        assertEquals(1000L, dataStore.getProgressInterval(paramMap));
+        paramMap.put("progress_interval", "0");
+        assertEquals(0L, dataStore.getProgressInterval(paramMap));
+        paramMap.put("progress_interval", "x");
+        assertEquals(60000L, dataStore.getProgressInterval(paramMap));
+    }
+
+    public void test_storeData_virtualThreads() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_virtual", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 1; i <= 100; i++) {
+                buf.append(i).append('\n');
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("virtual_threads", "true");
+            paramMap.put("max_concurrency", "16");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(100, docList.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(Integer.toString(i + 1), docList.get(i).get("title"));
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_getMaxConcurrency() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertFalse(dataStore.isVirtualThreads(paramMap));
+        assertEquals(1000, dataStore.getMaxConcurrency(paramMap));
+        java.util.concurrent.ExecutorService executor = dataStore.newTransformExecutor(paramMap, 2);
+        assertFalse(executor instanceof CsvVirtualThreadExecutor);
+        executor.shutdown();
+        paramMap.put("virtual_threads", "true");
+        paramMap.put("max_concurrency", "50");
+        assertTrue(dataStore.isVirtualThreads(paramMap));
+        assertEquals(50, dataStore.getMaxConcurrency(paramMap));
+        executor = dataStore.newTransformExecutor(paramMap, 2);
+        assertEquals(50, ((CsvVirtualThreadExecutor) executor).getMaxConcurrency());
+        executor.shutdown();
+        paramMap.put("max_concurrency", "x");
+        assertEquals(1000, dataStore.getMaxConcurrency(paramMap));
+    }
+
+    public void test_getTransformThreads() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertEquals(0, dataStore.getTransformThreads(paramMap));
+        assertEquals(1000, dataStore.getPipelineQueueSize(paramMap));
+        paramMap.put("transform_threads", "8");
+        paramMap.put("pipeline_queue_size", "0");
+        assertEquals(8, dataStore.getTransformThreads(paramMap));
+        assertEquals(1, dataStore.getPipelineQueueSize(paramMap));
+        paramMap.put("transform_threads", "x");
+        assertEquals(0, dataStore.getTransformThreads(paramMap));
+    }
+
+    public void test_storeData_checkpoint_split() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_checkpoint", ".csv");
+        try {
+            StringBuilder buf = new StringBuilder("id,name\n");
+            for (int i = 0; i < 200; i++) {
+                buf.append(i).append(",name").append(i).append('\n');
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("parser_engine", "mmap");
+            paramMap.put("split_threads", "4");
+            paramMap.put("split_size", "200");
+            paramMap.put("checkpoint_interval", "7");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            java.util.Set<Object> titleSet = new java.util.HashSet<>();
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap, 50);
+            docList.forEach(doc -> titleSet.add(doc.get("title")));
+            int size = docList.size();
+
+            dataStore = new CsvDataStore();
+            docList = storeData(paramMap, scriptMap);
+            docList.forEach(doc -> titleSet.add(doc.get("title")));
+            // each record is indexed once by either crawl
+            assertEquals(200, size + docList.size());
+            assertEquals(200, titleSet.size());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_incremental() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_incremental").toFile();
+        java.io.File manifestFile = java.io.File.createTempFile("csv_incremental", ".manifest");
+        try {
+            java.io.File file1 = new java.io.File(tempDir, "data1.csv");
+            java.io.File file2 = new java.io.File(tempDir, "data2.csv");
+            java.nio.file.Files.writeString(file1.toPath(), "a1\nb1\n");
+            java.nio.file.Files.writeString(file2.toPath(), "a2\nb2\nc2\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("incremental", "true");
+            paramMap.put("delete_old_docs", "false");
+            paramMap.put("manifest_file", manifestFile.getAbsolutePath());
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+
+            java.nio.file.Files.writeString(file1.toPath(), "a1\nb1\nc1\n");
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(3, docList.size());
+            assertEquals("c1", docList.get(2).get("title"));
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+
+            // the same size and modification time are only detected by the checksum
+            long lastModified = file2.lastModified();
+            java.nio.file.Files.writeString(file2.toPath(), "x2\nb2\nc2\n");
+            file2.setLastModified(lastModified);
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+            paramMap.put("fingerprint_checksum", "true");
+            // the saved fingerprints have no checksums
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+            java.nio.file.Files.writeString(file2.toPath(), "y2\nb2\nc2\n");
+            file2.setLastModified(lastModified);
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(3, docList.size());
+            assertEquals("y2", docList.get(0).get("title"));
+
+            paramMap.put("incremental", "false");
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+
+            // Fess would delete the documents of the skipped files, so all files are crawled
+            paramMap.put("incremental", "true");
+            paramMap.put("delete_old_docs", "true");
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+            manifestFile.delete();
+        }
+    }
+
+    public void test_storeData_delta() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_delta").toFile();
+        java.util.List<String> deletedList = new java.util.ArrayList<>();
+        dataStore = new CsvDataStore() {
+            @Override
+            protected void deleteDocuments(CsvFileContext context, java.util.List<String> urlList) {
+                deletedList.addAll(urlList);
+            }
+        };
+        dataStore.deltaDeleteBatchSize = 2;
+        try {
+            java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,a\n2,b\n3,c\n4,d\n5,e\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("delta_key_columns", "id");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.LinkedHashMap<>();
+            scriptMap.put("url", "id");
+            scriptMap.put("title", "name");
+
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            assertTrue(new java.io.File(tempDir, ".data.csv.delta").isFile());
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+            assertTrue(deletedList.isEmpty());
+
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,a\n2,B\n4,d\n6,f\n");
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(2, docList.size());
+            assertEquals("B", docList.get(0).get("title"));
+            assertEquals("6", docList.get(1).get("url"));
+            java.util.Collections.sort(deletedList);
+            assertEquals(java.util.List.of("3", "5"), deletedList);
+
+            deletedList.clear();
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+            assertTrue(deletedList.isEmpty());
+
+            // other script mappings index all rows again
+            scriptMap.put("content", "name");
+            assertEquals(4, storeData(paramMap, scriptMap).size());
+            assertTrue(deletedList.isEmpty());
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+            assertEquals(java.util.List.of(".data.csv.delta", ".data.csv.delta.urls", "data.csv"),
+                    java.util.Arrays.stream(tempDir.list()).sorted().toList());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_storeData_delta_urlReused() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_delta").toFile();
+        java.util.List<String> deletedList = new java.util.ArrayList<>();
+        dataStore = new CsvDataStore() {
+            @Override
+            protected void deleteDocuments(CsvFileContext context, java.util.List<String> urlList) {
+                deletedList.addAll(urlList);
+            }
+        };
+        try {
+            java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,a\n2,b\n3,c\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("delta_key_columns", "id");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.LinkedHashMap<>();
+            // the URL is not derived from the key column
+            scriptMap.put("url", "name");
+
+            assertEquals(3, storeData(paramMap, scriptMap).size());
+
+            // the document of "a" now belongs to the row 4, and "b" is kept by the unchanged row
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n2,b\n4,a\n5,b\n");
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(2, docList.size());
+            assertEquals(java.util.List.of("c"), deletedList);
+            assertEquals(java.util.List.of(".data.csv.delta", ".data.csv.delta.urls", "data.csv"),
+                    java.util.Arrays.stream(tempDir.list()).sorted().toList());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_getDeltaKeyColumns() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        paramMap.put("delete_old_docs", "false");
+        assertNull(dataStore.getDeltaKeyColumns(paramMap));
+        paramMap.put("delta_key_columns", " id , cell2,");
+        assertEquals(java.util.List.of("id", "cell2"), java.util.List.of(dataStore.getDeltaKeyColumns(paramMap)));
+        // Fess would delete the documents of unchanged rows
+        paramMap.put("delete_old_docs", "true");
+        assertNull(dataStore.getDeltaKeyColumns(paramMap));
+    }
+
+    public void test_storeData_follow() throws Exception {
+        assertFollow("orangesignal");
+        assertFollow("mmap");
+    }
+
+    private void assertFollow(String parserEngine) throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_follow").toFile();
+        try {
+            java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+            // the last record is still written
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,\"a\na\"\n2,b\n3,\"c");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("quote_disabled", "false");
+            paramMap.put("parser_engine", parserEngine);
+            paramMap.put("follow", "true");
+            paramMap.put("delete_old_docs", "false");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name");
+
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            assertEquals(2, docList.size());
+            assertEquals("a\na", docList.get(0).get("content"));
+            assertEquals("2", docList.get(1).get("title"));
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+
+            java.nio.file.Files.writeString(csvFile.toPath(), "\nc\"\n4,d\n", java.nio.file.StandardOpenOption.APPEND);
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(2, docList.size());
+            assertEquals("3", docList.get(0).get("title"));
+            assertEquals("c\nc", docList.get(0).get("content"));
+            assertEquals("d", docList.get(1).get("content"));
+            assertEquals(csvFile.getAbsolutePath() + "#4", statsKeyIdMap.get("3"));
+            assertEquals(csvFile.getAbsolutePath() + "#5", statsKeyIdMap.get("4"));
+
+            // truncated
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n5,e\n");
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(1, docList.size());
+            assertEquals("5", docList.get(0).get("title"));
+
+            // rotated to a new file that is larger than the position
+            java.io.File rotatedFile = new java.io.File(tempDir, "data.csv.1");
+            assertTrue(csvFile.renameTo(rotatedFile));
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n6,f\n7,g\n");
+            docList = storeData(paramMap, scriptMap);
+            assertEquals(2, docList.size());
+            assertEquals("6", docList.get(0).get("title"));
+            assertEquals(0, storeData(paramMap, scriptMap).size());
+
+            paramMap.put("follow", "false");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+
+            // old documents are deleted, so all records are read
+            paramMap.put("follow", "true");
+            paramMap.put("delete_old_docs", "true");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_getFollowInterval() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        paramMap.put("follow_interval", "1000");
+        assertEquals(0L, dataStore.getFollowInterval(paramMap));
+        paramMap.put("follow", "true");
+        assertEquals(0L, dataStore.getFollowInterval(paramMap));
+        paramMap.put("delete_old_docs", "false");
+        assertEquals(1000L, dataStore.getFollowInterval(paramMap));
+        paramMap.put("follow_interval", "x");
+        assertEquals(0L, dataStore.getFollowInterval(paramMap));
+    }
+
+    public void test_storeData_readInterval() throws Exception {
+        java.io.File csvFile = java.io.File.createTempFile("csv_read_interval", ".csv");
+        try {
+            // the blank record is not stored
+            java.nio.file.Files.writeString(csvFile.toPath(), "id,name\n1,a\n,\n2,b");
+            java.util.concurrent.atomic.AtomicInteger sleepCount = new java.util.concurrent.atomic.AtomicInteger();
+            dataStore = new CsvDataStore() {
+                @Override
+                protected void sleep(long interval) {
+                    assertEquals(1L, interval);
+                    sleepCount.incrementAndGet();
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", csvFile.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            paramMap.put("readInterval", "1");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+            assertEquals(3, sleepCount.get());
+
+            sleepCount.set(0);
+            paramMap.put("transform_threads", "2");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+            assertEquals(3, sleepCount.get());
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_storeData_throttled() throws Exception {
+        java.io.File tempFile = java.io.File.createTempFile("csv_throttled", ".csv");
+        try {
+            java.nio.file.Files.writeString(tempFile.toPath(), "a\nb\nc\nd\ne\nf\n");
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("files", tempFile.getAbsolutePath());
+            paramMap.put("max_docs_per_second", "20");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+
+            long startTime = System.nanoTime();
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+            // 6 documents at 20 docs/sec in batches of 2
+            assertTrue(System.nanoTime() - startTime >= java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(250));
+            assertTrue(dataStore.rateLimiterMap.isEmpty());
+
+            paramMap.put("max_docs_per_second", "0");
+            paramMap.put("max_bytes_per_second", "24");
+            paramMap.put("parser_engine", "mmap");
+            startTime = System.nanoTime();
+            assertEquals(6, storeData(paramMap, scriptMap).size());
+            assertTrue(System.nanoTime() - startTime >= java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(400));
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    public void test_createRateLimiter() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        assertNull(dataStore.createRateLimiter(paramMap));
+        paramMap.put("max_docs_per_second", "x");
+        assertNull(dataStore.createRateLimiter(paramMap));
+        paramMap.put("max_docs_per_second", "500");
+        CsvRateLimiter rateLimiter = dataStore.createRateLimiter(paramMap);
+        assertEquals(500.0, rateLimiter.getDocsPerSecond());
+        assertEquals(50, rateLimiter.getBatchSize());
+        assertFalse(rateLimiter.isBytesLimited());
+
+        assertTrue(dataStore.openRateLimiter(paramMap));
+        assertFalse(dataStore.openRateLimiter(paramMap));
+        dataStore.closeRateLimiter(paramMap);
+        assertTrue(dataStore.rateLimiterMap.isEmpty());
+    }
+
+    public void test_storeData_recursive() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_recursive").toFile();
+        java.io.File subDir = new java.io.File(tempDir, "2024-01");
+        try {
+            subDir.mkdir();
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "data1.csv").toPath(), "a1\nb1\n");
+            java.nio.file.Files.writeString(new java.io.File(subDir, "data2.csv").toPath(), "a2\nb2\nc2\n");
+            java.nio.file.Files.writeString(new java.io.File(subDir, "skip.csv").toPath(), "x\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "cell1");
+            assertEquals(2, storeData(paramMap, scriptMap).size());
+
+            paramMap.put("recursive", "true");
+            paramMap.put("exclude_globs", "skip.*");
+            dataStore.csvFileBatchSize = 1;
+            assertEquals(5, storeData(paramMap, scriptMap).size());
+            assertEquals(2, dataStore.getCsvFileList(paramMap).size());
+        } finally {
+            for (java.io.File file : subDir.listFiles()) {
+                file.delete();
+            }
+            subDir.delete();
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_getCsvFileList_isCsvFileOverridden() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_filter").toFile();
+        dataStore = new CsvDataStore() {
+            @Override
+            protected boolean isCsvFile(java.io.File parentFile, String filename, org.codelibs.fess.entity.DataStoreParams paramMap) {
+                return super.isCsvFile(parentFile, filename, paramMap) && !filename.startsWith("skip");
+            }
+        };
+        try {
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "data.csv").toPath(), "a\n");
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "skip.csv").toPath(), "x\n");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            java.util.List<java.io.File> fileList = dataStore.getCsvFileList(paramMap);
+            assertEquals(1, fileList.size());
+            assertEquals("data.csv", fileList.get(0).getName());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_storeData_compressed() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_compressed").toFile();
+        try {
+            java.io.File gzFile = new java.io.File(tempDir, "data1.csv.gz");
+            // two gzip members
+            try (java.io.OutputStream out = java.nio.file.Files.newOutputStream(gzFile.toPath())) {
+                for (String content : new String[] { "id,name\n1,a\n", "2,b\n" }) {
+                    java.util.zip.GZIPOutputStream gzipOut = new java.util.zip.GZIPOutputStream(out);
+                    gzipOut.write(content.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                    gzipOut.finish();
+                }
+            }
+            java.io.File zipFile = new java.io.File(tempDir, "data2.zip");
+            try (java.util.zip.ZipOutputStream zipOut =
+                    new java.util.zip.ZipOutputStream(java.nio.file.Files.newOutputStream(zipFile.toPath()))) {
+                for (String[] entry : new String[][] { { "x/3.csv", "id,name\n3,c\n" }, { "readme.txt", "id,name\n0,z\n" },
+                        { "4.tsv", "id,name\n4,d\n5,e\n" } }) {
+                    zipOut.putNextEntry(new java.util.zip.ZipEntry(entry[0]));
+                    zipOut.write(entry[1].getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                    zipOut.closeEntry();
+                }
+            }
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "data3.txt.gz").toPath(), "x");
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("has_header_line", "true");
+            java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+            scriptMap.put("title", "id");
+            scriptMap.put("content", "name");
+            java.util.List<java.util.Map<String, Object>> docList = storeData(paramMap, scriptMap);
+            java.util.Set<Object> titleSet = new java.util.TreeSet<>();
+            docList.forEach(doc -> titleSet.add(doc.get("title")));
+            assertEquals(java.util.Set.of("1", "2", "3", "4", "5"), titleSet);
+            assertEquals(gzFile.getAbsolutePath() + "#3", statsKeyIdMap.get("2"));
+            assertEquals(zipFile.getAbsolutePath() + "!/x/3.csv#2", statsKeyIdMap.get("3"));
+            assertEquals(zipFile.getAbsolutePath() + "!/4.tsv#3", statsKeyIdMap.get("5"));
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    public void test_hasCsvFileSuffix() {
+        assertTrue(dataStore.hasCsvFileSuffix("data.csv"));
+        assertTrue(dataStore.hasCsvFileSuffix("data.CSV.GZ"));
+        assertTrue(dataStore.hasCsvFileSuffix("data.zip"));
+        assertFalse(dataStore.hasCsvFileSuffix("data.txt.gz"));
+        assertFalse(dataStore.hasCsvFileSuffix("data.gz"));
+    }
+
+    public void test_getManifestFile() {
+        org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+        org.codelibs.fess.opensearch.config.exentity.DataConfig dataConfig = new org.codelibs.fess.opensearch.config.exentity.DataConfig();
+        assertNull(dataStore.getManifestFile(dataConfig, paramMap));
+        assertNull(dataStore.loadManifest(dataConfig, paramMap, java.util.Map.of(), java.util.Map.of()));
+        paramMap.put("manifest_file", "/var/fess/csv.manifest");
+        assertEquals(new java.io.File("/var/fess/csv.manifest"), dataStore.getManifestFile(dataConfig, paramMap));
+    }
+
+    public void test_getManifestConfigHash() {
+        java.util.Map<String, String> scriptMap = java.util.Map.of("title", "cell1");
+        java.util.Map<String, Object> defaultDataMap = new java.util.HashMap<>();
+        defaultDataMap.put("boost", 1.0f);
+        defaultDataMap.put("role", new String[] { "Rguest" });
+        defaultDataMap.put("created", new java.util.Date(1000L));
+        defaultDataMap.put("segment", "20250101000000");
+        long hash = dataStore.getManifestConfigHash(scriptMap, defaultDataMap);
+
+        // the fields of the crawl time are ignored
+        java.util.Map<String, Object> nextDataMap = new java.util.HashMap<>(defaultDataMap);
+        nextDataMap.put("role", new String[] { "Rguest" });
+        nextDataMap.put("created", new java.util.Date(2000L));
+        nextDataMap.put("segment", "20250102000000");
+        assertEquals(hash, dataStore.getManifestConfigHash(scriptMap, nextDataMap));
+
+        nextDataMap.put("boost", 2.0f);
+        assertFalse(hash == dataStore.getManifestConfigHash(scriptMap, nextDataMap));
+        assertFalse(hash == dataStore.getManifestConfigHash(java.util.Map.of("title", "cell2"), defaultDataMap));
+    }
+
+    private java.util.List<java.util.Map<String, Object>> storeData(org.codelibs.fess.entity.DataStoreParams paramMap,
+            java.util.Map<String, String> scriptMap) {
+        return storeData(paramMap, scriptMap, 0);
+    }
+
+    private java.util.List<java.util.Map<String, Object>> storeData(org.codelibs.fess.entity.DataStoreParams paramMap,
+            java.util.Map<String, String> scriptMap, int stopSize) {
+        org.codelibs.fess.helper.CrawlerStatsHelper crawlerStatsHelper = new org.codelibs.fess.helper.CrawlerStatsHelper() {
+            @Override
+            protected long getCurrentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+        crawlerStatsHelper.init();
+        ComponentUtil.register(crawlerStatsHelper, "crawlerStatsHelper");
+
+        java.util.List<java.util.Map<String, Object>> docList = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        statsKeyIdMap = new java.util.concurrent.ConcurrentHashMap<>();
+        commitCount = 0;
+        org.codelibs.fess.ds.callback.IndexUpdateCallback callback = new org.codelibs.fess.ds.callback.IndexUpdateCallback() {
+            @Override
+            public void store(org.codelibs.fess.entity.DataStoreParams params, java.util.Map<String, Object> dataMap) {
+                docList.add(dataMap);
+                if (stopSize > 0 && docList.size() >= stopSize) {
+                    dataStore.stop();
+                }
+                Object statsKey = params.get(org.codelibs.fess.Constants.CRAWLER_STATS_KEY);
+                if (dataMap.get("title") != null
+                        && statsKey instanceof org.codelibs.fess.helper.CrawlerStatsHelper.StatsKeyObject keyObject) {
+                    statsKeyIdMap.put(dataMap.get("title"), keyObject.getId());
+                }
+            }
+
+            @Override
+            public long getDocumentSize() {
+                return docList.size();
+            }
+
+            @Override
+            public long getExecuteTime() {
+                return 0;
+            }
+
+            @Override
+            public void commit() {
+                commitCount++;
+            }
+        };
+        dataStore.storeData(new org.codelibs.fess.opensearch.config.exentity.DataConfig(), callback, paramMap, scriptMap,
+                new java.util.HashMap<>());
+        return docList;
+    }
 }
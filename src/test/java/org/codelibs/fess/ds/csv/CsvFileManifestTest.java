@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvFileManifestTest extends ContainerTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        tempDir = Files.createTempDirectory("csv_manifest").toFile();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : tempDir.listFiles()) {
+            file.delete();
+        }
+        tempDir.delete();
+        super.tearDown();
+    }
+
+    public void test_fingerprint() throws Exception {
+        File file = new File(tempDir, "test.csv");
+        Files.writeString(file.toPath(), "a,b\n");
+
+        CsvFileManifest.Fingerprint fingerprint = CsvFileManifest.Fingerprint.of(file, false);
+        assertEquals(4L, fingerprint.size());
+        assertEquals(file.lastModified(), fingerprint.lastModified());
+        assertNull(fingerprint.checksum());
+
+        CsvFileManifest.Fingerprint checksum = CsvFileManifest.Fingerprint.of(file, true);
+        assertNotNull(checksum.checksum());
+        assertEquals(checksum, CsvFileManifest.Fingerprint.of(file, true));
+        Files.writeString(file.toPath(), "a,c\n");
+        assertFalse(checksum.checksum().equals(CsvFileManifest.Fingerprint.of(file, true).checksum()));
+    }
+
+    public void test_saveAndLoad() throws Exception {
+        File manifestFile = new File(tempDir, "sub/test.manifest");
+        File file1 = new File(tempDir, "data1.csv");
+        File file2 = new File(tempDir, "data2.csv");
+        File file3 = new File(tempDir, "data3.csv");
+        CsvFileManifest.Fingerprint fingerprint1 = new CsvFileManifest.Fingerprint(10L, 1000L, "abc");
+        CsvFileManifest.Fingerprint fingerprint2 = new CsvFileManifest.Fingerprint(20L, 2000L, null);
+
+        CsvFileManifest manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertFalse(manifest.isUnchanged(file1, fingerprint1));
+        assertFalse(manifest.isUnchanged(file2, fingerprint2));
+        assertFalse(manifest.isUnchanged(file3, fingerprint2));
+        manifest.update(file1);
+        manifest.update(file2);
+        // data3.csv is not indexed
+        manifest.save();
+
+        manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertTrue(manifest.isUnchanged(file1, fingerprint1));
+        assertTrue(manifest.isUnchanged(file2, fingerprint2));
+        assertFalse(manifest.isUnchanged(file3, fingerprint2));
+        assertFalse(manifest.isUnchanged(file2, new CsvFileManifest.Fingerprint(20L, 2001L, null)));
+        manifest.save();
+
+        // files that are not in the crawl are dropped
+        manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertTrue(manifest.isUnchanged(file1, fingerprint1));
+        manifest.save();
+        assertFalse(CsvFileManifest.load(manifestFile, 1L).isUnchanged(file2, fingerprint2));
+    }
+
+    public void test_retainSavedFiles() throws Exception {
+        File manifestFile = new File(tempDir, "test.manifest");
+        File file1 = new File(tempDir, "data1.csv");
+        File file2 = new File(tempDir, "data2.csv");
+        File file3 = new File(tempDir, "data3.csv");
+        CsvFileManifest.Fingerprint fingerprint = new CsvFileManifest.Fingerprint(10L, 1000L, null);
+        CsvFileManifest.Fingerprint changed = new CsvFileManifest.Fingerprint(11L, 1001L, null);
+
+        CsvFileManifest manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertFalse(manifest.isUnchanged(file1, fingerprint));
+        assertFalse(manifest.isUnchanged(file2, fingerprint));
+        manifest.update(file1);
+        manifest.update(file2);
+        manifest.save();
+
+        // a crawl of data2.csv and data3.csv keeps data1.csv
+        manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertFalse(manifest.isUnchanged(file2, changed));
+        assertFalse(manifest.isUnchanged(file3, fingerprint));
+        manifest.update(file3);
+        manifest.retainSavedFiles();
+        manifest.save();
+
+        manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertTrue(manifest.isUnchanged(file1, fingerprint));
+        assertTrue(manifest.isUnchanged(file3, fingerprint));
+        // data2.csv is changed and not indexed
+        assertFalse(manifest.isUnchanged(file2, fingerprint));
+        assertFalse(manifest.isUnchanged(file2, changed));
+    }
+
+    public void test_load_configChanged() throws Exception {
+        File manifestFile = new File(tempDir, "test.manifest");
+        File file = new File(tempDir, "data.csv");
+        CsvFileManifest.Fingerprint fingerprint = new CsvFileManifest.Fingerprint(10L, 1000L, null);
+
+        CsvFileManifest manifest = CsvFileManifest.load(manifestFile, 1L);
+        assertFalse(manifest.isUnchanged(file, fingerprint));
+        manifest.update(file);
+        manifest.save();
+
+        assertTrue(CsvFileManifest.load(manifestFile, 1L).isUnchanged(file, fingerprint));
+        assertFalse(CsvFileManifest.load(manifestFile, 2L).isUnchanged(file, fingerprint));
+    }
+}
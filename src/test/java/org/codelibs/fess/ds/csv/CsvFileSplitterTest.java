@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+import com.orangesignal.csv.CsvConfig;
+import com.orangesignal.csv.CsvReader;
+
+public class CsvFileSplitterTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_isSupported() {
+        CsvConfig csvConfig = new CsvConfig();
+        assertTrue(CsvFileSplitter.isSupported("UTF-8", csvConfig));
+        assertTrue(CsvFileSplitter.isSupported("ISO-8859-1", csvConfig));
+        assertTrue(CsvFileSplitter.isSupported("EUC-JP", csvConfig));
+        assertTrue(CsvFileSplitter.isSupported("windows-1252", csvConfig));
+        assertFalse(CsvFileSplitter.isSupported("Shift_JIS", csvConfig));
+        assertFalse(CsvFileSplitter.isSupported("UTF-16", csvConfig));
+        assertFalse(CsvFileSplitter.isSupported("unknown-encoding", csvConfig));
+
+        csvConfig.setSeparator('、');
+        assertFalse(CsvFileSplitter.isSupported("UTF-8", csvConfig));
+    }
+
+    public void test_split_simple() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buf.append(i).append(",value").append(i).append('\n');
+        }
+        assertChunks(buf.toString(), new CsvConfig(), false, 50);
+    }
+
+    public void test_split_quoted() throws Exception {
+        StringBuilder buf = new StringBuilder("id,body\r\n");
+        for (int i = 0; i < 100; i++) {
+            switch (i % 4) {
+            case 0 -> buf.append(i).append(",\"a\nb\r\nc\"\r\n");
+            case 1 -> buf.append(i).append(",\"x,\"\"\ny\"\"\"\n");
+            case 2 -> buf.append(i).append(", \"z\"\r");
+            default -> buf.append(i).append(",plain\n");
+            }
+        }
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+        csvConfig.setEscape('"');
+        csvConfig.setEscapeDisabled(false);
+        assertChunks(buf.toString(), csvConfig, true, 20);
+        assertChunks(buf.toString(), csvConfig, true, 1);
+    }
+
+    public void test_split_escape() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buf.append(i).append(",\"a\\\"\nb\",c\\\n");
+        }
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+        csvConfig.setEscapeDisabled(false);
+        assertChunks(buf.toString(), csvConfig, false, 30);
+    }
+
+    public void test_split_skipLines() throws Exception {
+        StringBuilder buf = new StringBuilder("# comment\n\"skipped\n");
+        buf.append("id,name\n");
+        for (int i = 0; i < 50; i++) {
+            buf.append(i).append(",name").append(i).append('\n');
+        }
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+        csvConfig.setSkipLines(2);
+        assertChunks(buf.toString(), csvConfig, true, 1);
+    }
+
+    public void test_split_stop() throws Exception {
+        File file = File.createTempFile("csv_splitter", ".csv");
+        try {
+            Files.writeString(file.toPath(), "a\nb\nc\nd\n");
+            List<CsvFileSplitter.Chunk> chunkList = new ArrayList<>();
+            int size = new CsvFileSplitter(new CsvConfig(), false).split(file, 1, chunk -> {
+                chunkList.add(chunk);
+                return chunkList.size() < 2;
+            });
+            assertEquals(2, size);
+            assertEquals(2, chunkList.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void test_findRecordEnd() throws Exception {
+        File file = File.createTempFile("csv_splitter", ".csv");
+        try {
+            CsvConfig csvConfig = new CsvConfig();
+            csvConfig.setQuoteDisabled(false);
+            csvConfig.setSkipLines(1);
+            CsvFileSplitter splitter = new CsvFileSplitter(csvConfig, true);
+            // the last record has an open quote
+            Files.writeString(file.toPath(), "# comment\nid,name\n1,\"a\r\nb\"\r\n2,\"c\n");
+            assertEquals(new CsvFileSplitter.RecordEnd(28L, 3L), splitter.findRecordEnd(file, 0L));
+            assertEquals(new CsvFileSplitter.RecordEnd(28L, 1L), splitter.findRecordEnd(file, 18L));
+            assertEquals(new CsvFileSplitter.RecordEnd(28L, 0L), splitter.findRecordEnd(file, 28L));
+
+            // CR may be followed by LF
+            Files.writeString(file.toPath(), "# comment\nid,name\n1,a\r");
+            assertEquals(new CsvFileSplitter.RecordEnd(18L, 2L), splitter.findRecordEnd(file, 0L));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertChunks(String content, CsvConfig csvConfig, boolean hasHeaderLine, long chunkSize) throws Exception {
+        File file = File.createTempFile("csv_splitter", ".csv");
+        try {
+            Files.writeString(file.toPath(), content);
+            List<String> expected = new ArrayList<>();
+            try (CsvReader csvReader = new CsvReader(
+                    new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)), csvConfig)) {
+                if (hasHeaderLine) {
+                    csvReader.readValues();
+                }
+                List<String> list;
+                while ((list = csvReader.readValues()) != null) {
+                    if (!isEmptyRecord(list)) {
+                        expected.add(csvReader.getLineNumber() + ":" + list);
+                    }
+                }
+            }
+
+            List<CsvFileSplitter.Chunk> chunkList = new ArrayList<>();
+            int size = new CsvFileSplitter(csvConfig, hasHeaderLine).split(file, chunkSize, chunkList::add);
+            assertEquals(size, chunkList.size());
+            assertTrue(size > 1);
+            assertEquals(0L, chunkList.get(0).start());
+            assertEquals(file.length(), chunkList.get(size - 1).end());
+
+            CsvConfig chunkConfig = csvConfig.clone();
+            chunkConfig.setSkipLines(0);
+            List<String> actual = new ArrayList<>();
+            for (CsvFileSplitter.Chunk chunk : chunkList) {
+                if (chunk.index() > 0) {
+                    assertEquals(chunkList.get(chunk.index() - 1).end(), chunk.start());
+                }
+                try (CsvReader csvReader = new CsvReader(new BufferedReader(new InputStreamReader(
+                        new FileRangeInputStream(file, chunk.start(), chunk.end()), StandardCharsets.UTF_8)),
+                        chunk.index() == 0 ? csvConfig : chunkConfig)) {
+                    if (chunk.index() == 0 && hasHeaderLine) {
+                        csvReader.readValues();
+                    }
+                    List<String> list;
+                    while ((list = csvReader.readValues()) != null) {
+                        if (!isEmptyRecord(list)) {
+                            actual.add(chunk.lineNumber() + csvReader.getLineNumber() + ":" + list);
+                        }
+                    }
+                }
+            }
+            assertEquals(expected, actual);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private boolean isEmptyRecord(List<String> list) {
+        return list.size() == 1 && (list.get(0) == null || list.get(0).isEmpty());
+    }
+}
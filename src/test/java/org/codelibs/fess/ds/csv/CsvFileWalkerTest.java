@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvFileWalkerTest extends ContainerTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        tempDir = Files.createTempDirectory("csv_walker").toFile();
+        long time = System.currentTimeMillis() - 100000;
+        for (String path : new String[] { "a.csv", "b.txt", "2024-01/c.csv", "2024-01/d.csv", "2024-02/e.csv", "tmp/f.csv",
+                "2024-02/deep/g.csv" }) {
+            File file = new File(tempDir, path);
+            file.getParentFile().mkdirs();
+            Files.writeString(file.toPath(), path);
+            file.setLastModified(time -= 1000);
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        deleteAll(tempDir);
+        super.tearDown();
+    }
+
+    private void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    public void test_walk() throws Exception {
+        assertEquals(List.of("a.csv"), walk(new CsvFileWalker(new String[0], new String[0], false, 10)));
+        assertEquals(List.of("2024-01/c.csv", "2024-01/d.csv", "2024-02/deep/g.csv", "2024-02/e.csv", "a.csv", "tmp/f.csv"),
+                walk(new CsvFileWalker(new String[0], new String[0], true, 10)));
+    }
+
+    public void test_walk_globs() throws Exception {
+        assertEquals(List.of("2024-01/c.csv", "2024-01/d.csv"),
+                walk(new CsvFileWalker(new String[] { "2024-01/*.csv" }, new String[0], true, 10)));
+        assertEquals(List.of("2024-02/deep/g.csv", "2024-02/e.csv"),
+                walk(new CsvFileWalker(new String[] { "2024-02/**" }, new String[0], true, 10)));
+        assertEquals(List.of("2024-01/c.csv", "2024-02/e.csv", "a.csv"),
+                walk(new CsvFileWalker(new String[0], new String[] { "tmp", "deep", "d.*" }, true, 10)));
+    }
+
+    public void test_walk_batches() throws Exception {
+        List<List<File>> batchList = new ArrayList<>();
+        CsvFileWalker walker = new CsvFileWalker(new String[0], new String[0], true, 4);
+        assertEquals(6, walker.walk(tempDir.toPath(), (path, attributes) -> path.toString().endsWith(".csv"), batchList::add));
+        assertEquals(2, batchList.size());
+        assertEquals(4, batchList.get(0).size());
+        assertEquals(2, batchList.get(1).size());
+        // a batch is sorted by the modification time
+        for (List<File> fileList : batchList) {
+            for (int i = 1; i < fileList.size(); i++) {
+                assertTrue(fileList.get(i - 1).lastModified() <= fileList.get(i).lastModified());
+            }
+        }
+
+        batchList.clear();
+        walker = new CsvFileWalker(new String[0], new String[0], true, 2);
+        assertEquals(2, walker.walk(tempDir.toPath(), (path, attributes) -> path.toString().endsWith(".csv"), fileList -> {
+            batchList.add(fileList);
+            return false;
+        }));
+        assertEquals(1, batchList.size());
+    }
+
+    public void test_isIncluded() {
+        CsvFileWalker walker = new CsvFileWalker(new String[] { "2024-*/*.csv" }, new String[] { "tmp", "d.*" }, true, 10);
+        Path dir = tempDir.toPath();
+        assertTrue(walker.isIncluded(dir, dir.resolve("2024-01/a.csv")));
+        assertFalse(walker.isIncluded(dir, dir.resolve("a.csv")));
+        assertFalse(walker.isIncluded(dir, dir.resolve("2024-01/d.csv")));
+        assertTrue(walker.isExcludedDirectory(dir, dir.resolve("tmp")));
+        assertFalse(walker.isExcludedDirectory(dir, dir.resolve("2024-01")));
+        assertFalse(walker.isExcludedDirectory(dir, dir));
+        assertTrue(walker.isRecursive());
+        assertFalse(new CsvFileWalker(new String[0], new String[0], false, 10).isRecursive());
+    }
+
+    private List<String> walk(CsvFileWalker walker) throws Exception {
+        TreeSet<String> pathSet = new TreeSet<>();
+        walker.walk(tempDir.toPath(), (path, attributes) -> path.toString().endsWith(".csv"), fileList -> {
+            for (File file : fileList) {
+                pathSet.add(tempDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+            }
+            return true;
+        });
+        return new ArrayList<>(pathSet);
+    }
+}
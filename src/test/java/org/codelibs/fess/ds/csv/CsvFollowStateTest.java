@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvFollowStateTest extends ContainerTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        tempDir = Files.createTempDirectory("csv_follow").toFile();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : tempDir.listFiles()) {
+            file.delete();
+        }
+        tempDir.delete();
+        super.tearDown();
+    }
+
+    public void test_saveAndLoad() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "id,name\n1,a\n");
+        File stateFile = new File(tempDir, "test.follow");
+
+        CsvFollowState state = CsvFollowState.load(stateFile, csvFile);
+        assertEquals(0L, state.getPosition());
+        assertEquals(0L, state.getLineNumber());
+        assertNull(state.getHeaderList());
+
+        state.advance(12L, 2L, List.of("id", "name"));
+        state.save();
+        Files.writeString(csvFile.toPath(), "2,b\n", StandardOpenOption.APPEND);
+
+        CsvFollowState loaded = CsvFollowState.load(stateFile, csvFile);
+        assertEquals(12L, loaded.getPosition());
+        assertEquals(2L, loaded.getLineNumber());
+        assertEquals(List.of("id", "name"), loaded.getHeaderList());
+    }
+
+    public void test_load_truncated() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "1,a\n2,b\n");
+        File stateFile = new File(tempDir, "test.follow");
+
+        CsvFollowState state = CsvFollowState.load(stateFile, csvFile);
+        state.advance(8L, 2L, null);
+        state.save();
+
+        Files.writeString(csvFile.toPath(), "1,a\n");
+        assertEquals(0L, CsvFollowState.load(stateFile, csvFile).getPosition());
+
+        // rewritten with other records, so the position is not after a line break
+        Files.writeString(csvFile.toPath(), "10,aa\n20,bb\n");
+        assertEquals(0L, CsvFollowState.load(stateFile, csvFile).getPosition());
+    }
+
+    public void test_load_rotated() throws Exception {
+        File csvFile = new File(tempDir, "test.csv");
+        Files.writeString(csvFile.toPath(), "1,a\n");
+        File stateFile = new File(tempDir, "test.follow");
+
+        CsvFollowState state = CsvFollowState.load(stateFile, csvFile);
+        state.advance(4L, 1L, null);
+        state.save();
+        assertEquals(4L, CsvFollowState.load(stateFile, csvFile).getPosition());
+
+        if (CsvFollowState.getFileKey(csvFile).isEmpty()) {
+            // the file system has no file keys
+            return;
+        }
+        assertTrue(csvFile.renameTo(new File(tempDir, "test.csv.1")));
+        Files.writeString(csvFile.toPath(), "2,b\n3,c\n");
+        assertEquals(0L, CsvFollowState.load(stateFile, csvFile).getPosition());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvLatencyHistogramTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_empty() {
+        CsvLatencyHistogram histogram = new CsvLatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMeanNanos());
+        assertEquals(0L, histogram.getPercentileNanos(99));
+        assertEquals(0L, histogram.getMaxNanos());
+    }
+
+    public void test_record() {
+        CsvLatencyHistogram histogram = new CsvLatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000000);
+        }
+        histogram.record(-1);
+        assertEquals(101L, histogram.getCount());
+        assertEquals(10090000L, histogram.getTotalNanos());
+        assertEquals(1000000L, histogram.getMaxNanos());
+        assertEquals(99900L, histogram.getMeanNanos());
+        // upper bounds of the power-of-two buckets
+        assertEquals(1023L, histogram.getPercentileNanos(50));
+        assertEquals(1023L, histogram.getPercentileNanos(90));
+        assertEquals(1000000L, histogram.getPercentileNanos(99));
+        assertEquals(0L, histogram.getPercentileNanos(0));
+        assertEquals("count=101, total=10090us, mean=99us, p50=1us, p90=1us, p99=1000us, max=1000us", histogram.toString());
+    }
+
+    public void test_record_concurrently() throws Exception {
+        CsvLatencyHistogram histogram = new CsvLatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000L, histogram.getCount());
+        assertEquals(9999L, histogram.getMaxNanos());
+        assertEquals(4L * 9999 * 10000 / 2, histogram.getTotalNanos());
+    }
+}
@@ -602,4 +602,244 @@ public class CsvListDataStoreTest extends ContainerTestCase {
             tempDir.delete();
         }
     }
+
+    public void test_isCsvFile_done_marker() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_marker").toFile();
+        java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+        java.io.File markerFile = new java.io.File(tempDir, "data.csv.done");
+        try {
+            csvFile.createNewFile();
+            csvFile.setLastModified(System.currentTimeMillis() - 20000);
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("done_marker_suffix", ".done");
+
+            assertEquals(markerFile, dataStore.getDoneMarkerFile(paramMap, csvFile));
+            assertFalse(dataStore.isCsvFile(tempDir, "data.csv", paramMap));
+            markerFile.createNewFile();
+            assertTrue(dataStore.isCsvFile(tempDir, "data.csv", paramMap));
+            assertFalse(dataStore.isCsvFile(tempDir, "data.csv.done", paramMap));
+        } finally {
+            csvFile.delete();
+            markerFile.delete();
+            tempDir.delete();
+        }
+    }
+
+    public void test_getReadyFiles() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_ready").toFile();
+        java.io.File oldFile = new java.io.File(tempDir, "old.csv");
+        java.io.File newFile = new java.io.File(tempDir, "new.csv");
+        try {
+            oldFile.createNewFile();
+            oldFile.setLastModified(System.currentTimeMillis() - 20000);
+            newFile.createNewFile();
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("timestamp_margin", "10000");
+
+            java.util.Map<java.io.File, Long> pendingMap = new java.util.LinkedHashMap<>();
+            pendingMap.put(oldFile, System.currentTimeMillis() - 20000);
+            pendingMap.put(newFile, System.currentTimeMillis() - 20000);
+            pendingMap.put(new java.io.File(tempDir, "deleted.csv"), 0L);
+            assertEquals(java.util.List.of(oldFile), dataStore.getReadyFiles(pendingMap, paramMap));
+            assertEquals(java.util.Set.of(newFile), pendingMap.keySet());
+
+            // a recent event is not quiescent
+            oldFile.setLastModified(System.currentTimeMillis() - 20000);
+            pendingMap.put(oldFile, System.currentTimeMillis());
+            assertTrue(dataStore.getReadyFiles(pendingMap, paramMap).isEmpty());
+        } finally {
+            oldFile.delete();
+            newFile.delete();
+            tempDir.delete();
+        }
+    }
+
+    public void test_watchCsvFiles() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_watch").toFile();
+        java.util.List<java.io.File> storedList = new java.util.concurrent.CopyOnWriteArrayList<>();
+        dataStore = new CsvListDataStore() {
+            @Override
+            protected void storeCsvFiles(org.codelibs.fess.opensearch.config.exentity.DataConfig dataConfig,
+                    org.codelibs.fess.ds.callback.IndexUpdateCallback callback, org.codelibs.fess.entity.DataStoreParams paramMap,
+                    java.util.Map<String, String> scriptMap, java.util.Map<String, Object> defaultDataMap,
+                    java.util.List<java.io.File> csvFileList) {
+                storedList.addAll(csvFileList);
+                stop();
+            }
+        };
+        dataStore.watchPollInterval = 100L;
+        java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+        java.io.File markerFile = new java.io.File(tempDir, "data.csv.done");
+        try {
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("done_marker_suffix", ".done");
+            Thread thread = new Thread(() -> dataStore.watchCsvFiles(null, null, paramMap, java.util.Map.of(), java.util.Map.of()));
+            thread.start();
+            Thread.sleep(500L);
+            java.nio.file.Files.writeString(csvFile.toPath(), "a,b\n");
+            Thread.sleep(500L);
+            assertTrue(storedList.isEmpty());
+
+            markerFile.createNewFile();
+            thread.join(30000L);
+            assertFalse(thread.isAlive());
+            assertEquals(java.util.List.of(csvFile), storedList);
+        } finally {
+            dataStore.stop();
+            csvFile.delete();
+            markerFile.delete();
+            tempDir.delete();
+        }
+    }
+
+    public void test_watchCsvFiles_filtered() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_watch").toFile();
+        java.util.List<java.io.File> storedList = new java.util.concurrent.CopyOnWriteArrayList<>();
+        dataStore = new CsvListDataStore() {
+            @Override
+            protected boolean isCsvFile(java.io.File parentFile, String filename, org.codelibs.fess.entity.DataStoreParams paramMap) {
+                return !"ignored.csv".equals(filename) && super.isCsvFile(parentFile, filename, paramMap);
+            }
+
+            @Override
+            protected void storeCsvFiles(org.codelibs.fess.opensearch.config.exentity.DataConfig dataConfig,
+                    org.codelibs.fess.ds.callback.IndexUpdateCallback callback, org.codelibs.fess.entity.DataStoreParams paramMap,
+                    java.util.Map<String, String> scriptMap, java.util.Map<String, Object> defaultDataMap,
+                    java.util.List<java.io.File> csvFileList) {
+                storedList.addAll(csvFileList);
+                if (storedList.stream().anyMatch(file -> "data.csv".equals(file.getName()))) {
+                    stop();
+                }
+            }
+        };
+        dataStore.watchPollInterval = 100L;
+        java.io.File excludedDir = new java.io.File(tempDir, "skipdir");
+        java.io.File subDir = new java.io.File(tempDir, "2024");
+        try {
+            excludedDir.mkdir();
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("directories", tempDir.getAbsolutePath());
+            paramMap.put("recursive", "true");
+            paramMap.put("exclude_globs", "skip*");
+            paramMap.put("timestamp_margin", "0");
+            Thread thread = new Thread(() -> dataStore.watchCsvFiles(null, null, paramMap, java.util.Map.of(), java.util.Map.of()));
+            thread.start();
+            Thread.sleep(500L);
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "skip.csv").toPath(), "a,b\n");
+            java.nio.file.Files.writeString(new java.io.File(excludedDir, "data.csv").toPath(), "a,b\n");
+            java.nio.file.Files.writeString(new java.io.File(tempDir, "ignored.csv").toPath(), "a,b\n");
+            Thread.sleep(500L);
+            assertTrue(storedList.isEmpty());
+
+            // a new subdirectory is watched
+            subDir.mkdir();
+            Thread.sleep(500L);
+            java.io.File csvFile = new java.io.File(subDir, "data.csv");
+            java.nio.file.Files.writeString(csvFile.toPath(), "a,b\n");
+            thread.join(30000L);
+            assertFalse(thread.isAlive());
+            assertEquals(java.util.List.of(csvFile), storedList);
+            // the excluded files are left in place
+            assertTrue(new java.io.File(tempDir, "skip.csv").isFile());
+            assertTrue(new java.io.File(excludedDir, "data.csv").isFile());
+        } finally {
+            dataStore.stop();
+            for (java.io.File dir : new java.io.File[] { excludedDir, subDir, tempDir }) {
+                java.io.File[] files = dir.listFiles();
+                if (files != null) {
+                    for (java.io.File file : files) {
+                        file.delete();
+                    }
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    public void test_processCsv_checkpoint_aborted() throws Exception {
+        java.io.File tempDir = java.nio.file.Files.createTempDirectory("csv_list_checkpoint").toFile();
+        java.io.File csvFile = new java.io.File(tempDir, "data.csv");
+        try {
+            StringBuilder buf = new StringBuilder("id");
+            for (int i = 1; i <= 10; i++) {
+                buf.append('\n').append(i);
+            }
+            java.nio.file.Files.writeString(csvFile.toPath(), buf.toString());
+            dataStore = new CsvListDataStore() {
+                @Override
+                protected void storeDocument(CsvFileContext context, org.codelibs.fess.entity.DataStoreParams rowParamMap,
+                        CsvDocument document) {
+                    if ("5".equals(document.dataMap().get("title"))) {
+                        context.abort();
+                        return;
+                    }
+                    super.storeDocument(context, rowParamMap, document);
+                }
+            };
+
+            org.codelibs.fess.entity.DataStoreParams paramMap = new org.codelibs.fess.entity.DataStoreParams();
+            paramMap.put("has_header_line", "true");
+            paramMap.put("checkpoint_interval", "3");
+            paramMap.put("delete_old_docs", "false");
+            java.io.File checkpointFile = dataStore.getCheckpointFile(paramMap, csvFile);
+
+            // the aborted file is kept with its checkpoint
+            java.util.List<java.util.Map<String, Object>> docList = processCsv(paramMap, csvFile);
+            assertEquals(4, docList.size());
+            assertTrue(csvFile.exists());
+            assertTrue(checkpointFile.exists());
+
+            dataStore = new CsvListDataStore();
+            docList = processCsv(paramMap, csvFile);
+            assertEquals(7, docList.size());
+            assertEquals("4", docList.get(0).get("title"));
+            assertFalse(csvFile.exists());
+            assertFalse(checkpointFile.exists());
+        } finally {
+            for (java.io.File file : tempDir.listFiles()) {
+                file.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    private java.util.List<java.util.Map<String, Object>> processCsv(org.codelibs.fess.entity.DataStoreParams paramMap,
+            java.io.File csvFile) {
+        org.codelibs.fess.helper.CrawlerStatsHelper crawlerStatsHelper = new org.codelibs.fess.helper.CrawlerStatsHelper() {
+            @Override
+            protected long getCurrentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+        crawlerStatsHelper.init();
+        ComponentUtil.register(crawlerStatsHelper, "crawlerStatsHelper");
+
+        java.util.List<java.util.Map<String, Object>> docList = new java.util.ArrayList<>();
+        org.codelibs.fess.ds.callback.IndexUpdateCallback callback = new org.codelibs.fess.ds.callback.IndexUpdateCallback() {
+            @Override
+            public void store(org.codelibs.fess.entity.DataStoreParams params, java.util.Map<String, Object> dataMap) {
+                docList.add(dataMap);
+            }
+
+            @Override
+            public long getDocumentSize() {
+                return docList.size();
+            }
+
+            @Override
+            public long getExecuteTime() {
+                return 0;
+            }
+
+            @Override
+            public void commit() {
+            }
+        };
+        java.util.Map<String, String> scriptMap = new java.util.HashMap<>();
+        scriptMap.put("title", "id");
+        dataStore.processCsv(new org.codelibs.fess.opensearch.config.exentity.DataConfig(), callback, paramMap, scriptMap,
+                new java.util.HashMap<>(), dataStore.buildCsvConfig(paramMap), csvFile, 0L, "UTF-8", true);
+        return docList;
+    }
 }
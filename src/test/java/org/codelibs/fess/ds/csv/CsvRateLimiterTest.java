@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvRateLimiterTest extends ContainerTestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    private static class TestRateLimiter extends CsvRateLimiter {
+
+        long time;
+
+        TestRateLimiter(final double docsPerSecond, final double bytesPerSecond, final boolean adaptive) {
+            super(docsPerSecond, bytesPerSecond, adaptive);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return time;
+        }
+    }
+
+    public void test_reserve_docs() {
+        TestRateLimiter rateLimiter = new TestRateLimiter(1000, 0, false);
+        assertEquals(100, rateLimiter.getBatchSize());
+        assertFalse(rateLimiter.isBytesLimited());
+
+        // a second of burst
+        rateLimiter.time = 10 * SECOND;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0L, rateLimiter.reserve(100, 1000000));
+        }
+        assertEquals(SECOND / 10, rateLimiter.reserve(100, 0));
+        assertEquals(SECOND / 5, rateLimiter.reserve(100, 0));
+
+        rateLimiter.time += SECOND / 5;
+        assertEquals(SECOND / 10, rateLimiter.reserve(100, 0));
+    }
+
+    public void test_reserve_bytes() {
+        TestRateLimiter rateLimiter = new TestRateLimiter(0, 1000, false);
+        assertEquals(100, rateLimiter.getBatchSize());
+        assertTrue(rateLimiter.isBytesLimited());
+
+        rateLimiter.time = 10 * SECOND;
+        assertEquals(0L, rateLimiter.reserve(1000000, 1000));
+        assertEquals(SECOND / 2, rateLimiter.reserve(1, 500));
+        assertEquals(SECOND * 3 / 2, rateLimiter.reserve(1, 1000));
+    }
+
+    public void test_getBatchSize() {
+        assertEquals(1, new CsvRateLimiter(5, 0, false).getBatchSize());
+        assertEquals(10, new CsvRateLimiter(100, 0, false).getBatchSize());
+        assertEquals(1000, new CsvRateLimiter(1000000, 0, false).getBatchSize());
+    }
+
+    public void test_recordLatency() {
+        TestRateLimiter rateLimiter = new TestRateLimiter(1000, 0, true);
+        rateLimiter.time = SECOND;
+        rateLimiter.recordLatency(1000000);
+        assertEquals(1000.0, rateLimiter.getDocsPerSecond());
+
+        // slow stores lower the rate once a second
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.recordLatency(10000000);
+        }
+        assertEquals(1000.0, rateLimiter.getDocsPerSecond());
+        rateLimiter.time += SECOND;
+        rateLimiter.recordLatency(10000000);
+        assertEquals(800.0, rateLimiter.getDocsPerSecond(), 0.001);
+        rateLimiter.time += SECOND;
+        rateLimiter.recordLatency(10000000);
+        assertEquals(640.0, rateLimiter.getDocsPerSecond(), 0.001);
+        assertEquals(64, rateLimiter.getBatchSize());
+
+        // the rate recovers up to the configured rate
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.recordLatency(1000000);
+        }
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.time += SECOND;
+            rateLimiter.recordLatency(1000000);
+        }
+        assertEquals(1000.0, rateLimiter.getDocsPerSecond());
+
+        TestRateLimiter fixedRateLimiter = new TestRateLimiter(1000, 0, false);
+        fixedRateLimiter.recordLatency(1000000);
+        fixedRateLimiter.time += SECOND;
+        fixedRateLimiter.recordLatency(10000000);
+        assertEquals(1000.0, fixedRateLimiter.getDocsPerSecond());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvRecordPipelineTest extends ContainerTestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void test_order() throws Exception {
+        List<Integer> resultList = new ArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try (CsvRecordPipeline<Integer, Integer> pipeline = new CsvRecordPipeline<>("test", executor, 5, i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return i * 10;
+        }, i -> {
+            resultList.add(i);
+            inFlight.decrementAndGet();
+        })) {
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit(i);
+            }
+            pipeline.finish();
+        }
+        assertEquals(100, resultList.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 10, resultList.get(i).intValue());
+        }
+        assertTrue(maxInFlight.get() <= 5);
+    }
+
+    public void test_transformFailure() throws Exception {
+        List<Integer> resultList = new ArrayList<>();
+        try (CsvRecordPipeline<Integer, Integer> pipeline = new CsvRecordPipeline<>("test", executor, 2, i -> {
+            if (i == 3) {
+                throw new IllegalStateException("transform");
+            }
+            return i;
+        }, resultList::add)) {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    pipeline.submit(i);
+                }
+                pipeline.finish();
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("transform", e.getMessage());
+            }
+        }
+        assertEquals(List.of(0, 1, 2), resultList);
+    }
+
+    public void test_consumerFailure() throws Exception {
+        try (CsvRecordPipeline<Integer, Integer> pipeline = new CsvRecordPipeline<>("test", executor, 2, i -> i, i -> {
+            throw new IllegalStateException("store");
+        })) {
+            pipeline.submit(1);
+            pipeline.finish();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("store", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvRowHashTableTest extends ContainerTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        tempDir = Files.createTempDirectory("csv_row_hash").toFile();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : tempDir.listFiles()) {
+            file.delete();
+        }
+        tempDir.delete();
+        super.tearDown();
+    }
+
+    public void test_putAndGet() throws Exception {
+        File file = new File(tempDir, "table");
+        try (CsvRowHashTable table = CsvRowHashTable.create(file, 123L, 456L, 0)) {
+            assertEquals(1024, table.getCapacity());
+            assertEquals(-1, table.indexOf(1L));
+            table.put(1L, 10L, 100L);
+            table.put(0L, 20L, 200L);
+            table.put(-1L, 30L, 300L);
+            table.put(1L, 11L, 101L);
+            assertEquals(3, table.size());
+            assertEquals(11L, table.getRowHash(table.indexOf(1L)));
+            assertEquals(101L, table.getValue(table.indexOf(1L)));
+            assertEquals(20L, table.getRowHash(table.indexOf(0L)));
+            assertEquals(300L, table.getValue(table.indexOf(-1L)));
+            assertEquals(-1, table.indexOf(2L));
+            table.force();
+        }
+
+        try (CsvRowHashTable table = CsvRowHashTable.open(file)) {
+            assertEquals(123L, table.getConfigHash());
+            assertEquals(456L, table.getGeneration());
+            assertEquals(3, table.size());
+            assertEquals(11L, table.getRowHash(table.indexOf(1L)));
+            assertEquals(20L, table.getRowHash(table.indexOf(0L)));
+            try {
+                table.put(2L, 1L, 1L);
+                fail();
+            } catch (IllegalStateException e) {
+                // read-only
+            }
+        }
+    }
+
+    public void test_grow() throws Exception {
+        File file = new File(tempDir, "table");
+        try (CsvRowHashTable table = CsvRowHashTable.create(file, 1L, 2L, 0)) {
+            for (long i = 0; i < 5000; i++) {
+                table.put(i * 0x5851f42d4c957f2dL + 1, i, -i);
+            }
+            assertEquals(5000, table.size());
+            assertEquals(16384, table.getCapacity());
+            assertEquals(1L, table.getConfigHash());
+            assertEquals(2L, table.getGeneration());
+            for (long i = 0; i < 5000; i++) {
+                int slot = table.indexOf(i * 0x5851f42d4c957f2dL + 1);
+                assertEquals(i, table.getRowHash(slot));
+                assertEquals(-i, table.getValue(slot));
+            }
+            table.force();
+        }
+        assertEquals(List.of("table"), List.of(tempDir.list()));
+        try (CsvRowHashTable table = CsvRowHashTable.open(file)) {
+            assertEquals(5000, table.size());
+        }
+    }
+
+    public void test_open_invalid() throws Exception {
+        File file = new File(tempDir, "table");
+        Files.writeString(file.toPath(), "not a table");
+        try {
+            CsvRowHashTable.open(file);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
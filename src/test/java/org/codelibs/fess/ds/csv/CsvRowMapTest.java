@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvRowMapTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_noHeader() {
+        assertSameMap(null, Arrays.asList("a", null, "c"));
+        assertSameMap(null, Arrays.asList());
+    }
+
+    public void test_header() {
+        List<String> headerList = Arrays.asList("name", "", "csvfile", "cell1", " ", "name", "param");
+        assertSameMap(headerList, Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h"));
+        assertSameMap(headerList, Arrays.asList("a", "b", "c", "d"));
+        assertSameMap(headerList, Arrays.asList("a"));
+    }
+
+    public void test_wideRecord() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < CsvColumnLayout.MIN_COLUMNS + 10; i++) {
+            values.add("v" + i);
+        }
+        assertSameMap(Arrays.asList("a", "b"), values);
+        CsvRowMap rowMap = new CsvRowMap(newBaseMap(), new CsvColumnLayout(null), values);
+        assertEquals("v" + CsvColumnLayout.MIN_COLUMNS, rowMap.get("cell" + (CsvColumnLayout.MIN_COLUMNS + 1)));
+        assertNull(rowMap.get("cell" + (CsvColumnLayout.MIN_COLUMNS + 11)));
+    }
+
+    public void test_get() {
+        CsvRowMap rowMap = new CsvRowMap(newBaseMap(), new CsvColumnLayout(Arrays.asList("name", "cell3")), Arrays.asList("a", null, "c"));
+        assertEquals("a", rowMap.get("name"));
+        assertEquals("a", rowMap.get("cell1"));
+        assertEquals("", rowMap.get("cell2"));
+        assertEquals("c", rowMap.get("cell3"));
+        assertNull(rowMap.get("cell4"));
+        assertNull(rowMap.get("cell01"));
+        assertNull(rowMap.get("cell"));
+        assertNull(rowMap.get("cell99999999999"));
+        assertEquals("value", rowMap.get("param"));
+        assertTrue(rowMap.containsKey("cell3"));
+        assertFalse(rowMap.containsKey("cell4"));
+        assertFalse(rowMap.containsKey(null));
+        assertNull(rowMap.get(1));
+    }
+
+    public void test_put() {
+        List<String> headerList = Arrays.asList("name");
+        List<String> values = Arrays.asList("a", "b");
+        CsvRowMap rowMap = new CsvRowMap(newBaseMap(), new CsvColumnLayout(headerList), values);
+        Map<String, Object> expected = newExpectedMap(headerList, values);
+        assertEquals(expected, rowMap);
+
+        assertEquals("a", rowMap.put("name", "x"));
+        expected.put("name", "x");
+        assertNull(rowMap.put("crawlingContext", "context"));
+        expected.put("crawlingContext", "context");
+        assertEquals("value", rowMap.put("param", null));
+        expected.put("param", null);
+        assertEquals("x", rowMap.get("name"));
+        assertNull(rowMap.get("param"));
+        assertTrue(rowMap.containsKey("param"));
+        assertEquals(expected, rowMap);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(rowMap.keySet()));
+    }
+
+    public void test_remove() {
+        List<String> headerList = Arrays.asList("name");
+        List<String> values = Arrays.asList("a", "b");
+        Map<String, Object> baseMap = newBaseMap();
+        CsvRowMap rowMap = new CsvRowMap(baseMap, new CsvColumnLayout(headerList), values);
+        Map<String, Object> expected = newExpectedMap(headerList, values);
+
+        assertNull(rowMap.put("title", "t"));
+        expected.put("title", "t");
+        assertEquals("a", rowMap.remove("name"));
+        expected.remove("name");
+        assertEquals("value", rowMap.remove("param"));
+        expected.remove("param");
+        assertNull(rowMap.remove("cell9"));
+        assertFalse(rowMap.containsKey("name"));
+        assertNull(rowMap.get("param"));
+        assertEquals(expected, rowMap);
+
+        // the views write through
+        rowMap.keySet().remove("cell2");
+        expected.remove("cell2");
+        rowMap.entrySet().iterator().next().setValue("/tmp/other.csv");
+        expected.put("csvfile", "/tmp/other.csv");
+        assertEquals("/tmp/other.csv", rowMap.get("csvfile"));
+        assertEquals("t", rowMap.put("title", "x"));
+        expected.put("title", "x");
+        assertEquals(expected, rowMap);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(rowMap.keySet()));
+
+        rowMap.clear();
+        assertTrue(rowMap.isEmpty());
+        assertNull(rowMap.get("cell1"));
+        // the base map is shared by the records of the file
+        assertEquals(newBaseMap(), baseMap);
+    }
+
+    private void assertSameMap(List<String> headerList, List<String> values) {
+        CsvRowMap rowMap = new CsvRowMap(newBaseMap(), new CsvColumnLayout(headerList), values);
+        Map<String, Object> expected = newExpectedMap(headerList, values);
+        assertEquals(expected, rowMap);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(rowMap.keySet()));
+        assertEquals(expected.size(), rowMap.size());
+        for (String key : expected.keySet()) {
+            assertTrue(key, rowMap.containsKey(key));
+            assertEquals(key, expected.get(key), rowMap.get(key));
+        }
+    }
+
+    private Map<String, Object> newBaseMap() {
+        Map<String, Object> baseMap = new LinkedHashMap<>();
+        baseMap.put("param", "value");
+        baseMap.put("csvfile", "/tmp/test.csv");
+        baseMap.put("csvfilename", "test.csv");
+        return baseMap;
+    }
+
+    // the map that CsvDataStore built for each record before CsvRowMap
+    private Map<String, Object> newExpectedMap(List<String> headerList, List<String> values) {
+        Map<String, Object> map = new LinkedHashMap<>(newBaseMap());
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i) != null ? values.get(i) : "";
+            if (headerList != null && headerList.size() > i && !headerList.get(i).isBlank()) {
+                map.put(headerList.get(i), value);
+            }
+            map.put("cell" + (i + 1), value);
+        }
+        return map;
+    }
+}
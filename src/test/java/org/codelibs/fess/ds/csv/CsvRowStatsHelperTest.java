@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.fess.helper.CrawlerStatsHelper;
+import org.codelibs.fess.helper.CrawlerStatsHelper.StatsAction;
+import org.codelibs.fess.helper.CrawlerStatsHelper.StatsKeyObject;
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvRowStatsHelperTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    private static class RecordingStatsHelper extends CrawlerStatsHelper {
+
+        final List<String> eventList = new ArrayList<>();
+
+        @Override
+        public void begin(final Object keyObj) {
+            eventList.add("begin:" + ((StatsKeyObject) keyObj).getId());
+        }
+
+        @Override
+        public void record(final Object keyObj, final StatsAction action) {
+            eventList.add(action.name().toLowerCase() + ":" + ((StatsKeyObject) keyObj).getId());
+        }
+
+        @Override
+        public void done(final Object keyObj) {
+            eventList.add("done:" + ((StatsKeyObject) keyObj).getId());
+        }
+
+        @Override
+        public void discard(final Object keyObj) {
+            eventList.add("discard:" + ((StatsKeyObject) keyObj).getId());
+        }
+    }
+
+    private static void processRow(final CrawlerStatsHelper statsHelper, final StatsKeyObject statsKey, final StatsAction result) {
+        statsHelper.begin(statsKey);
+        statsHelper.record(statsKey, StatsAction.PREPARED);
+        statsHelper.record(statsKey, result);
+        statsHelper.done(statsKey);
+    }
+
+    public void test_statsKey() {
+        CsvStatsKeyObject statsKey = new CsvStatsKeyObject("/tmp/test.csv", 12);
+        assertEquals("/tmp/test.csv", statsKey.getPath());
+        assertEquals(12L, statsKey.getLineNumber());
+        assertEquals("/tmp/test.csv#12", statsKey.getId());
+        assertSame(statsKey.getId(), statsKey.getId());
+        assertEquals("/tmp/test.csv#12", statsKey.getUrl());
+        statsKey.setUrl("http://example.com/12");
+        assertEquals("http://example.com/12", statsKey.getUrl());
+    }
+
+    public void test_batchStatsKey() {
+        CsvBatchStatsKeyObject statsKey = new CsvBatchStatsKeyObject("/tmp/test.csv", 2, 11);
+        assertEquals("/tmp/test.csv", statsKey.getPath());
+        assertEquals(2L, statsKey.getFirstLineNumber());
+        assertEquals(11L, statsKey.getLastLineNumber());
+        assertEquals("/tmp/test.csv#2-11", statsKey.getId());
+        assertSame(statsKey.getId(), statsKey.getId());
+        assertEquals("/tmp/test.csv#2-11", statsKey.getUrl());
+    }
+
+    public void test_rowStatsHelper() {
+        RecordingStatsHelper recorder = new RecordingStatsHelper();
+        CsvRowStatsHelper statsHelper = new CsvRowStatsHelper(recorder);
+        processRow(statsHelper, new CsvStatsKeyObject("a.csv", 1), StatsAction.FINISHED);
+        statsHelper.discard(new CsvStatsKeyObject("a.csv", 2));
+        assertTrue(recorder.eventList.isEmpty());
+
+        // failures are always recorded
+        processRow(statsHelper, new CsvStatsKeyObject("a.csv", 3), StatsAction.EXCEPTION);
+        processRow(statsHelper, new CsvStatsKeyObject("a.csv", 4), StatsAction.ACCESS_EXCEPTION);
+        assertEquals(List.of("begin:a.csv#3", "exception:a.csv#3", "done:a.csv#3", "begin:a.csv#4", "access_exception:a.csv#4",
+                "done:a.csv#4"), recorder.eventList);
+
+        // batches are recorded instead of rows
+        recorder.eventList.clear();
+        processRow(statsHelper, new CsvBatchStatsKeyObject("a.csv", 1, 5), StatsAction.FINISHED);
+        assertEquals(List.of("begin:a.csv#1-5", "prepared:a.csv#1-5", "finished:a.csv#1-5", "done:a.csv#1-5"), recorder.eventList);
+    }
+
+    public void test_sampledStatsHelper() {
+        RecordingStatsHelper recorder = new RecordingStatsHelper();
+        CsvSampledStatsHelper statsHelper = new CsvSampledStatsHelper(recorder, 3);
+        assertEquals(3, statsHelper.getSampleRate());
+        for (int i = 1; i <= 6; i++) {
+            processRow(statsHelper, new CsvStatsKeyObject("a.csv", i), i == 4 ? StatsAction.EXCEPTION : StatsAction.FINISHED);
+        }
+        assertEquals(List.of("begin:a.csv#3", "prepared:a.csv#3", "finished:a.csv#3", "done:a.csv#3", //
+                "begin:a.csv#4", "exception:a.csv#4", "done:a.csv#4", //
+                "begin:a.csv#6", "prepared:a.csv#6", "finished:a.csv#6", "done:a.csv#6"), recorder.eventList);
+
+        // other keys are not sampled
+        recorder.eventList.clear();
+        processRow(statsHelper, new StatsKeyObject("a.csv#1-5"), StatsAction.FINISHED);
+        assertEquals(4, recorder.eventList.size());
+
+        // batches are not recorded with sampled rows
+        recorder.eventList.clear();
+        processRow(statsHelper, new CsvBatchStatsKeyObject("a.csv", 1, 5), StatsAction.FINISHED);
+        assertTrue(recorder.eventList.isEmpty());
+
+        assertEquals(1, new CsvSampledStatsHelper(recorder, 0).getSampleRate());
+    }
+
+    public void test_fileStatsHelper() {
+        RecordingStatsHelper recorder = new RecordingStatsHelper();
+        CsvFileStatsHelper statsHelper = new CsvFileStatsHelper(recorder, "a.csv");
+        // nothing is recorded for a file without rows
+        statsHelper.finish();
+        assertTrue(recorder.eventList.isEmpty());
+
+        for (int i = 1; i <= 5; i++) {
+            processRow(statsHelper, new CsvStatsKeyObject("a.csv", i), i == 2 ? StatsAction.EXCEPTION : StatsAction.FINISHED);
+        }
+        // batches are not recorded with aggregated rows
+        processRow(statsHelper, new CsvBatchStatsKeyObject("a.csv", 1, 5), StatsAction.FINISHED);
+        statsHelper.discard(new CsvBatchStatsKeyObject("a.csv", 1, 5));
+        CsvStatsKeyObject discardedKey = new CsvStatsKeyObject("a.csv", 6);
+        statsHelper.begin(discardedKey);
+        statsHelper.discard(discardedKey);
+        statsHelper.done(discardedKey);
+        assertEquals(List.of("begin:a.csv", "begin:a.csv#2", "exception:a.csv#2", "done:a.csv#2"), recorder.eventList);
+
+        statsHelper.finish();
+        statsHelper.finish();
+        assertEquals(List.of("begin:a.csv", "begin:a.csv#2", "exception:a.csv#2", "done:a.csv#2", "finished:a.csv", "done:a.csv"),
+                recorder.eventList);
+        assertEquals(6L, statsHelper.getRows());
+        assertEquals(5L, statsHelper.getCount(StatsAction.PREPARED));
+        assertEquals(4L, statsHelper.getCount(StatsAction.FINISHED));
+        assertEquals(1L, statsHelper.getCount(StatsAction.EXCEPTION));
+        assertEquals(1L, statsHelper.getDiscarded());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class CsvVirtualThreadExecutorTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_execute() throws Exception {
+        CsvVirtualThreadExecutor executor = new CsvVirtualThreadExecutor("test", 10);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger virtualCount = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (Thread.currentThread().isVirtual()) {
+                    virtualCount.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+        assertEquals(0, executor.getActiveCount());
+        assertEquals(200, virtualCount.get());
+        assertTrue(maxRunning.get() <= 10);
+
+        try {
+            executor.execute(() -> {});
+            fail();
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    public void test_shutdownNow() throws Exception {
+        CsvVirtualThreadExecutor executor = new CsvVirtualThreadExecutor("test", 2);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                // interrupted by shutdownNow
+            }
+        });
+        started.await();
+        assertEquals(1, executor.getActiveCount());
+        assertFalse(executor.awaitTermination(10, TimeUnit.MILLISECONDS));
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    public void test_TaskExecutor() throws Exception {
+        CsvFileListIndexUpdateCallback.TaskExecutor executor = new CsvFileListIndexUpdateCallback.TaskExecutor(1);
+        executor.useVirtualThreads(100);
+        AtomicInteger virtualCount = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                if (Thread.currentThread().isVirtual()) {
+                    virtualCount.incrementAndGet();
+                }
+            });
+        }
+        executor.awaitIdle();
+        assertEquals(50, virtualCount.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    public void test_TaskExecutor_useVirtualThreads_afterExecute() throws Exception {
+        CsvFileListIndexUpdateCallback.TaskExecutor executor = new CsvFileListIndexUpdateCallback.TaskExecutor(1);
+        executor.execute(() -> {});
+        executor.awaitIdle();
+        try {
+            executor.useVirtualThreads(100);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
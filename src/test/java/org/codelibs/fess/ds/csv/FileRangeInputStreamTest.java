@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+public class FileRangeInputStreamTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_read_range() throws Exception {
+        File file = File.createTempFile("range", ".txt");
+        try {
+            Files.writeString(file.toPath(), "0123456789");
+            try (FileRangeInputStream in = new FileRangeInputStream(file, 2, 6)) {
+                assertEquals("2345", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                assertEquals(6L, in.getPosition());
+                assertEquals(-1, in.read());
+            }
+            try (FileRangeInputStream in = new FileRangeInputStream(file, 7, Long.MAX_VALUE)) {
+                assertEquals('7', in.read());
+                assertEquals(1L, in.skip(1));
+                assertEquals("9", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                assertEquals(0L, in.skip(10));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.dbflute.utflute.lastadi.ContainerTestCase;
+
+import com.orangesignal.csv.CsvConfig;
+import com.orangesignal.csv.CsvReader;
+
+public class MappedCsvReaderTest extends ContainerTestCase {
+
+    @Override
+    protected String prepareConfigFile() {
+        return "test_app.xml";
+    }
+
+    @Override
+    protected boolean isSuppressTestCaseTransaction() {
+        return true;
+    }
+
+    public void test_default() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        assertSameRecords("a,b,c\n1,2,3\n", csvConfig);
+        assertSameRecords("a,b,c\n1,2,3", csvConfig);
+        assertSameRecords("a,\"b,c\"\n\n ,x\r\n1\r2", csvConfig);
+        assertSameRecords("", csvConfig);
+        assertSameRecords("\n", csvConfig);
+        assertSameRecords("日本語,テキスト\néàü,ok\n", csvConfig);
+    }
+
+    public void test_quoted() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+        assertSameRecords("\"a,b\",\"c\nd\", \"e\" ,\"f\"x,g\"h\"\n\"unterminated,x\n", csvConfig);
+        assertSameRecords("\"a\\\"b\",c\n", csvConfig);
+
+        csvConfig.setEscapeDisabled(false);
+        assertSameRecords("\"a\\\"b\",\"c\\\\\",d\n\"x\\\ny\"\n", csvConfig);
+
+        csvConfig.setEscape('"');
+        assertSameRecords("\"a\"\"b\",\"c\"\"\"\n\"d\"\r\n\"e\"\"\r\nf\"\r\n\"g\",\"\"\n\"", csvConfig);
+    }
+
+    public void test_escapedSeparator() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setEscapeDisabled(false);
+        assertSameRecords("a\\,b,c\\d,e\\\n\\,\n", csvConfig);
+    }
+
+    public void test_options() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+        csvConfig.setBreakString("<br>");
+        csvConfig.setNullString("NULL");
+        csvConfig.setIgnoreLeadingWhitespaces(true);
+        csvConfig.setIgnoreTrailingWhitespaces(true);
+        csvConfig.setIgnoreEmptyLines(true);
+        csvConfig.setIgnoreLinePatterns(Pattern.compile("^#.*"));
+        csvConfig.setSkipLines(2);
+        assertSameRecords("skip1\nskip2\n  a , NULL ,\"x\ny\"\n\n   \n# comment\n#\n\"NULL\",null\n\n", csvConfig);
+
+        csvConfig.setNullString("null", true);
+        assertSameRecords("NULL,Null,x\n", csvConfig);
+    }
+
+    public void test_skipLines_exceedsFile() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setSkipLines(5);
+        assertSameRecords("a\nb\n", csvConfig);
+    }
+
+    public void test_ignoreEmptyLines_crlf() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setIgnoreEmptyLines(true);
+        List<String> records = readRecords("a\r\n\r\nb\r\n", csvConfig, 0, Long.MAX_VALUE);
+        assertEquals(List.of("1:[a]", "3:[b]"), records);
+    }
+
+    public void test_bom() throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            Files.write(file.toPath(), new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf, 'a', ',', 'b' });
+            try (MappedCsvReader reader = new MappedCsvReader(file, "UTF-8", new CsvConfig(), 0, Long.MAX_VALUE)) {
+                assertEquals(List.of("a", "b"), reader.readValues());
+                assertNull(reader.readValues());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void test_range() throws Exception {
+        String content = "a,1\nb,2\nc,3\n";
+        assertEquals(List.of("1:[b, 2]", "2:[c, 3]", "3:[]"), readRecords(content, new CsvConfig(), 4, 12));
+        assertEquals(List.of("1:[b, 2]", "2:[]"), readRecords(content, new CsvConfig(), 4, 8));
+    }
+
+    public void test_wideRecord() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int row = 0; row < 100; row++) {
+            for (int i = 0; i < 50; i++) {
+                if (i > 0) {
+                    buf.append('\t');
+                }
+                buf.append(i % 7 == 0 ? "\"q\tq\"" : "value" + row + "_" + i + " text");
+            }
+            buf.append(row % 2 == 0 ? "\n" : "\r\n");
+        }
+        CsvConfig csvConfig = new CsvConfig('\t');
+        assertSameRecords(buf.toString(), csvConfig);
+        csvConfig.setQuoteDisabled(false);
+        assertSameRecords(buf.toString(), csvConfig);
+    }
+
+    public void test_largeRecord() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            buf.append(i).append(',').append("x".repeat(1500000)).append('\n');
+        }
+        assertSameRecords(buf.toString(), new CsvConfig());
+    }
+
+    public void test_lazyValues() throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            Files.writeString(file.toPath(), "a,b,c\n");
+            try (MappedCsvReader reader = new MappedCsvReader(file, "UTF-8", new CsvConfig(), 0, Long.MAX_VALUE)) {
+                List<String> values = reader.readValues();
+                assertEquals(3, values.size());
+                assertSame(values.get(1), values.get(1));
+                assertEquals("c", values.get(2));
+                assertEquals(1L, reader.getLineNumber());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void test_getPosition() throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            String content = "a,1\r\n\"b\r\n\",2\r\nc,3";
+            Files.writeString(file.toPath(), content);
+            CsvConfig csvConfig = new CsvConfig();
+            csvConfig.setQuoteDisabled(false);
+            List<Long> positionList = new ArrayList<>();
+            try (MappedCsvReader reader = new MappedCsvReader(file, "UTF-8", csvConfig, 0, Long.MAX_VALUE)) {
+                while (reader.readValues() != null) {
+                    positionList.add(reader.getPosition());
+                }
+            }
+            assertEquals(List.of(5L, 14L, (long) content.length()), positionList);
+            // a reader opened at a position reads the following records
+            assertEquals(List.of("1:[c, 3]"), readRecords(file, csvConfig, 14L, Long.MAX_VALUE));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertSameRecords(String content, CsvConfig csvConfig) throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            Files.writeString(file.toPath(), content);
+            List<String> expected = new ArrayList<>();
+            try (CsvReader csvReader = new CsvReader(
+                    new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), Charset.forName("UTF-8"))),
+                    csvConfig.clone())) {
+                List<String> list;
+                while ((list = csvReader.readValues()) != null) {
+                    expected.add(csvReader.getLineNumber() + ":" + list);
+                }
+            }
+            assertEquals(expected, readRecords(file, csvConfig, 0, Long.MAX_VALUE));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void test_limits() throws Exception {
+        CsvConfig csvConfig = new CsvConfig();
+        csvConfig.setQuoteDisabled(false);
+
+        // a quote that is never closed is skipped to the line after it
+        assertEquals(List.of("1:[a, b]", "2:A CSV record exceeds 20 bytes.", "3:[c, d]", "4:[e, f]", "5:[g, h]", "6:[i, j]", "7:[k, l]"),
+                readLimitedRecords("a,b\n\"open,x\nc,d\r\ne,f\ng,h\ni,j\nk,l", csvConfig, new CsvRecordLimits(20, 0, 0)));
+        assertEquals(List.of("1:[a, b]", "2:A CSV record exceeds 20 bytes."),
+                readLimitedRecords("a,b\n\"open,xxxxxxxxxxxxxxxxxxxxxxxx", csvConfig, new CsvRecordLimits(20, 0, 0)));
+        // the next line of a skipped record is read as a record
+        assertEquals(List.of("1:A CSV field exceeds 4 bytes.", "2:[ab, 2]", "3:A CSV field exceeds 4 bytes.", "4:[bcd\", 3]", "5:[cd, 4]"),
+                readLimitedRecords("abcdef,1\nab,2\n\"a\nbcd\",3\ncd,4", csvConfig, new CsvRecordLimits(0, 4, 0)));
+        assertEquals(List.of("1:A CSV record exceeds 2 columns.", "2:[d, e]"),
+                readLimitedRecords("a,b,c\nd,e", csvConfig, new CsvRecordLimits(0, 0, 2)));
+
+        // the window does not grow beyond the record limit
+        StringBuilder buf = new StringBuilder("a,b\n\"open,x\n");
+        for (int i = 0; i < 500000; i++) {
+            buf.append(i).append(",x\n");
+        }
+        buf.append("end,x");
+        List<String> records = readLimitedRecords(buf.toString(), csvConfig, new CsvRecordLimits(1024 * 1024, 0, 0));
+        assertEquals(500003, records.size());
+        assertEquals("2:A CSV record exceeds 1048576 bytes.", records.get(1));
+        assertEquals("3:[0, x]", records.get(2));
+        assertEquals("500003:[end, x]", records.get(500002));
+    }
+
+    private List<String> readRecords(String content, CsvConfig csvConfig, long start, long end) throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            Files.writeString(file.toPath(), content);
+            return readRecords(file, csvConfig, start, end);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private List<String> readRecords(File file, CsvConfig csvConfig, long start, long end) throws Exception {
+        List<String> actual = readRecords(file, csvConfig, start, end, false);
+        assertEquals(actual, readRecords(file, csvConfig, start, end, true));
+        return actual;
+    }
+
+    private List<String> readRecords(File file, CsvConfig csvConfig, long start, long end, boolean vectorized) throws Exception {
+        List<String> actual = new ArrayList<>();
+        try (MappedCsvReader reader = new MappedCsvReader(file, "UTF-8", csvConfig, start, end, vectorized)) {
+            List<String> list;
+            while ((list = reader.readValues()) != null) {
+                actual.add(reader.getLineNumber() + ":" + list);
+            }
+        }
+        return actual;
+    }
+
+    private List<String> readLimitedRecords(String content, CsvConfig csvConfig, CsvRecordLimits limits) throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        try {
+            Files.writeString(file.toPath(), content);
+            List<String> actual = readLimitedRecords(file, csvConfig, limits, false);
+            assertEquals(actual, readLimitedRecords(file, csvConfig, limits, true));
+            return actual;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private List<String> readLimitedRecords(File file, CsvConfig csvConfig, CsvRecordLimits limits, boolean vectorized)
+            throws Exception {
+        List<String> actual = new ArrayList<>();
+        try (MappedCsvReader reader = new MappedCsvReader(file, "UTF-8", csvConfig, 0, Long.MAX_VALUE, vectorized, limits)) {
+            while (true) {
+                try {
+                    List<String> list = reader.readValues();
+                    if (list == null) {
+                        break;
+                    }
+                    actual.add(reader.getLineNumber() + ":" + list);
+                } catch (CsvRecordLimitException e) {
+                    actual.add(e.getLineNumber() + ":" + e.getMessage());
+                }
+            }
+        }
+        return actual;
+    }
+}
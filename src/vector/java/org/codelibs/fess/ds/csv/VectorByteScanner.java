@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.ds.csv;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ByteScanner} that compares a vector of bytes (32 or 64 bytes on AVX2 or AVX-512) at a time.
+ * This class links jdk.incubator.vector, so it is only compiled by the vector profile, and is loaded by {@link ByteScanner#vector(int...)}
+ * through reflection.
+ */
+class VectorByteScanner extends ByteScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte target0;
+
+    private final byte target1;
+
+    private final byte target2;
+
+    private final byte target3;
+
+    VectorByteScanner(final int[] targets) {
+        // unused targets repeat the first one, so that every block is compared with 4 bytes
+        target0 = (byte) targets[0];
+        target1 = (byte) targets[Math.min(1, targets.length - 1)];
+        target2 = (byte) targets[Math.min(2, targets.length - 1)];
+        target3 = (byte) targets[Math.min(3, targets.length - 1)];
+    }
+
+    @Override
+    public int indexOf(final byte[] bytes, final int from, final int to) {
+        int i = from;
+        final int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            final ByteVector v = ByteVector.fromArray(SPECIES, bytes, i);
+            final VectorMask<Byte> mask = v.eq(target0).or(v.eq(target1)).or(v.eq(target2)).or(v.eq(target3));
+            if (mask.anyTrue()) {
+                return i + mask.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            final byte b = bytes[i];
+            if (b == target0 || b == target1 || b == target2 || b == target3) {
+                return i;
+            }
+        }
+        return to;
+    }
+}